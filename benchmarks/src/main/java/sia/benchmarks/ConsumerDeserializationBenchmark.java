@@ -0,0 +1,77 @@
+package sia.benchmarks;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import sia.pairschallenge.repository.Product;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+import sia.productevent.serialization.ProductEventDeserializer;
+import sia.productevent.serialization.ProductEventSerializer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Десериализация пачки сообщений в kafkaConsumer, ns/op на пачку: ErrorHandlingDeserializer
+ * с делегатом {@link ProductEventDeserializer}, как в настройках spring.kafka.consumer приложения.
+ * Размер пачки соответствует spring.kafka.consumer.max-poll-records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsumerDeserializationBenchmark {
+
+    private static final String TOPIC = "product-events";
+
+    @Param({"500"})
+    private int batchSize;
+
+    private ErrorHandlingDeserializer<ProductEvent> deserializer;
+
+    private byte[][] messages;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        deserializer = new ErrorHandlingDeserializer<>();
+        deserializer.configure(Map.of(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS,
+                ProductEventDeserializer.class.getName()), false);
+
+        ProductEventSerializer serializer = new ProductEventSerializer();
+        messages = new byte[batchSize][];
+        for (int i = 0; i < batchSize; i++) {
+            Product product = StandIns.product(i + 1, 64);
+            messages[i] = serializer.serialize(TOPIC, new ProductEvent(ProductEventType.UPDATED, product.getId(),
+                    product.getName(), product.getDescription(), product.getPrice(), product.getQuantity(),
+                    product.getCreatedAt(), product.getUpdatedAt()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deserializer.close();
+    }
+
+    @Benchmark
+    public void deserializeBatch(Blackhole blackhole) {
+        for (byte[] message : messages) {
+            blackhole.consume(deserializer.deserialize(TOPIC, new RecordHeaders(), message));
+        }
+    }
+}
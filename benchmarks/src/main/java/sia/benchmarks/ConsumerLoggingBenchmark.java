@@ -0,0 +1,116 @@
+package sia.benchmarks;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sia.pairschallenge.repository.Product;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Пропускная способность слушателя kafkaConsumer (событий в секунду) в зависимости от логирования
+ * каждого события. Цикл повторяет Consumer.listenProductEvents для пачки из 500 событий.
+ * <ul>
+ *     <li>mode: sync - прежний log4j2.xml (синхронный File со сбросом после каждой строки),
+ *     async - текущий (AsyncRoot и RollingRandomAccessFile);</li>
+ *     <li>message: concat-info - прежняя склейка строки с toString на INFO, parameterized-info -
+ *     параметризованное сообщение на INFO, parameterized-debug - текущее параметризованное сообщение
+ *     на DEBUG при уровне INFO.</li>
+ * </ul>
+ * Переполнение буфера асинхронного логгера здесь блокирует поток, а не отбрасывает события,
+ * поэтому async показывает устойчивую скорость записи, а не скорость постановки в очередь;
+ * выигрыш async виден при нескольких ядрах и потоках слушателя (-t 3 по spring.kafka.listener.concurrency).
+ * Выделение памяти на событие - с профилировщиком -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ConsumerLoggingBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"sync", "async"})
+    private String mode;
+
+    @Param({"concat-info", "parameterized-info", "parameterized-debug"})
+    private String message;
+
+    private Path logDir;
+
+    private LoggerContext context;
+
+    private Logger logger;
+
+    private ProductEvent[] events;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        logDir = Files.createTempDirectory("consumer-logging-benchmark");
+        System.setProperty("bench.log.dir", logDir.toString());
+        System.setProperty("log4j2.asyncQueueFullPolicy", "Default");
+        context = Configurator.initialize("consumer-logging-benchmark", "classpath:log4j2-bench-" + mode + ".xml");
+        logger = context.getLogger("sia.kafkaconsumer.Consumer");
+
+        events = new ProductEvent[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Product product = StandIns.product(i + 1, 64);
+            events[i] = new ProductEvent(ProductEventType.UPDATED, product.getId(), product.getName(),
+                    product.getDescription(), product.getPrice(), product.getQuantity(),
+                    product.getCreatedAt(), product.getUpdatedAt());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Configurator.shutdown(context);
+        try (Stream<Path> files = Files.walk(logDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void consumeBatch() {
+        switch (message) {
+            case "concat-info" -> {
+                for (ProductEvent event : events) {
+                    logger.info("Сообщение получено: " + event.toString());
+                }
+            }
+            case "parameterized-info" -> {
+                for (ProductEvent event : events) {
+                    logger.info("Сообщение получено: {}", event);
+                }
+            }
+            default -> {
+                for (ProductEvent event : events) {
+                    logger.debug("Сообщение получено: {}", event);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package sia.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import sia.pairschallenge.redis.ProductRedisSerializer;
+import sia.pairschallenge.repository.Product;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+import sia.productevent.serialization.ProductEventSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация продукта на горячих путях основного приложения, ns/op:
+ * <ul>
+ *     <li>запись productCache - {@link ProductRedisSerializer}, и JSON с типом для остальных кэшей
+ *     (GenericJackson2JsonRedisSerializer, как в RedisConfig);</li>
+ *     <li>событие outbox - JSON через ObjectMapper при записи и чтении ретранслятором;</li>
+ *     <li>сообщение Kafka - {@link ProductEventSerializer}, как в KafkaProducerConfig.</li>
+ * </ul>
+ * descriptionLength задает длину описания: длинные описания productCache хранит сжатыми.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductSerializationBenchmark {
+
+    private static final String TOPIC = "product-events";
+
+    @Param({"64", "2048"})
+    private int descriptionLength;
+
+    private final ProductRedisSerializer cacheSerializer = new ProductRedisSerializer(512);
+
+    private final ProductEventSerializer kafkaSerializer = new ProductEventSerializer();
+
+    private GenericJackson2JsonRedisSerializer jsonCacheSerializer;
+
+    private ObjectMapper objectMapper;
+
+    private Product product;
+
+    private ProductEvent event;
+
+    private byte[] cacheEntry;
+
+    private byte[] jsonCacheEntry;
+
+    private String outboxPayload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        jsonCacheSerializer = new GenericJackson2JsonRedisSerializer(new ObjectMapper().registerModule(new JavaTimeModule()));
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        product = StandIns.product(104_729, descriptionLength);
+        event = new ProductEvent(ProductEventType.UPDATED, product.getId(), product.getName(), product.getDescription(),
+                product.getPrice(), product.getQuantity(), product.getCreatedAt(), product.getUpdatedAt());
+        cacheEntry = cacheSerializer.serialize(product);
+        jsonCacheEntry = jsonCacheSerializer.serialize(product);
+        outboxPayload = objectMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public byte[] cacheEntrySerialize() {
+        return cacheSerializer.serialize(product);
+    }
+
+    @Benchmark
+    public Product cacheEntryDeserialize() {
+        return cacheSerializer.deserialize(cacheEntry);
+    }
+
+    @Benchmark
+    public byte[] jsonCacheEntrySerialize() {
+        return jsonCacheSerializer.serialize(product);
+    }
+
+    @Benchmark
+    public Object jsonCacheEntryDeserialize() {
+        return jsonCacheSerializer.deserialize(jsonCacheEntry);
+    }
+
+    @Benchmark
+    public String outboxPayloadWrite() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public ProductEvent outboxPayloadRead() throws JsonProcessingException {
+        return objectMapper.readValue(outboxPayload, ProductEvent.class);
+    }
+
+    @Benchmark
+    public byte[] kafkaMessageSerialize() {
+        return kafkaSerializer.serialize(TOPIC, event);
+    }
+}
@@ -0,0 +1,130 @@
+package sia.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+import sia.pairschallenge.redis.HotKeyTracker;
+import sia.pairschallenge.redis.ProductChangeChannel;
+import sia.pairschallenge.redis.ProductRedisSerializer;
+import sia.pairschallenge.redis.TwoTierCacheManager;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.search.ProductSearchIndex;
+import sia.pairschallenge.service.impl.ProductServiceImpl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пути чтения и записи {@link ProductServiceImpl}, собранного так же, как в приложении
+ * (двухуровневый кэш, аренда загрузки, outbox, поисковый индекс), но поверх заменителей из {@link StandIns}.
+ * Результат показывает стоимость кода сервиса без сети: чтение с попаданием в L1,
+ * пакетное чтение, чтение с промахом кэша и запись.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductServiceBenchmark {
+
+    @Param({"10000"})
+    private int products;
+
+    @Param({"100"})
+    private int batchSize;
+
+    private ProductServiceImpl productService;
+
+    private ProductSearchIndex searchIndex;
+
+    private TwoTierCacheManager cacheManager;
+
+    private List<Integer> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Map<Integer, Product> table = new ConcurrentHashMap<>();
+        for (int id = 1; id <= products; id++) {
+            table.put(id, StandIns.product(id, 64));
+        }
+        cacheManager = new TwoTierCacheManager(StandIns.remoteCacheManager(new ProductRedisSerializer(512)),
+                new StandIns.PublishOnlyRedisTemplate(), new SimpleMeterRegistry(), "cache-invalidation",
+                products, Duration.ofMinutes(10), Duration.ofSeconds(10), 1.0, Duration.ofMillis(50));
+        searchIndex = new ProductSearchIndex(new ByteBuffersDirectory());
+        productService = new ProductServiceImpl(StandIns.productRepository(table), StandIns.outboxEventRepository(),
+                new ObjectMapper().findAndRegisterModules(), cacheManager,
+                new TransactionTemplate(StandIns.transactionManager()), new StandIns.LocalCacheLoadLease(),
+                searchIndex, new StandIns.NoInventoryCounters(), new HotKeyTracker(new StandIns.PublishOnlyRedisTemplate(),
+                        ProductServiceImpl.PRODUCT_CACHE, 10000, Duration.ofMinutes(30)),
+                new ProductChangeChannel(new StandIns.PublishOnlyRedisTemplate(), "product-changes"));
+
+        batch = new ArrayList<>();
+        for (int id = 1; id <= batchSize; id++) {
+            batch.add(id);
+        }
+        productService.findAllById(batch);
+        productService.findById(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        searchIndex.close();
+    }
+
+    @Benchmark
+    public Product findByIdCached() {
+        return productService.findById(1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Product findByIdCachedContended() {
+        return productService.findById(1 + ThreadLocalRandom.current().nextInt(batchSize));
+    }
+
+    @Benchmark
+    public List<Product> findAllByIdCached() {
+        return productService.findAllById(batch);
+    }
+
+    /**
+     * Промах обоих уровней кэша: перед чтением запись сбрасывается, поэтому в замер входят
+     * сброс, загрузка из репозитория и запись в L1 и L2.
+     */
+    @Benchmark
+    public Product findByIdAfterEvict() {
+        int id = 1 + ThreadLocalRandom.current().nextInt(products);
+        cacheManager.getCache(ProductServiceImpl.PRODUCT_CACHE).evict(id);
+        return productService.findById(id);
+    }
+
+    @Benchmark
+    public Product update() {
+        int id = 1 + ThreadLocalRandom.current().nextInt(products);
+        Product product = StandIns.product(id, 64);
+        product.setQuantity(ThreadLocalRandom.current().nextInt(1000));
+        return productService.update(id, product);
+    }
+}
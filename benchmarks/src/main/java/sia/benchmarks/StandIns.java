@@ -0,0 +1,283 @@
+package sia.benchmarks;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import sia.pairschallenge.redis.CacheLoadLease;
+import sia.pairschallenge.redis.InventoryCounters;
+import sia.pairschallenge.redis.ProductRedisSerializer;
+import sia.pairschallenge.repository.OutboxEventRepository;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.repository.ProductRepository;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заменители внешних систем, работающие в памяти процесса, чтобы бенчмарки сервиса и кэша
+ * запускались без Postgres и Redis и измеряли только код приложения.
+ * <p>
+ * Заменители повторяют то, что влияет на стоимость горячего пути: репозиторий возвращает копии
+ * продуктов, как Hibernate материализует строки, а L2-кэш хранит продукты в байтах
+ * через {@link ProductRedisSerializer}, как Redis. Сетевые задержки не моделируются.
+ */
+final class StandIns {
+
+    private StandIns() {
+    }
+
+    /**
+     * Репозиторий продуктов поверх карты. Поддерживает только методы, которые вызывает ProductServiceImpl
+     * на путях чтения и записи.
+     *
+     * @param table Таблица продуктов по идентификатору.
+     * @return Репозиторий продуктов.
+     */
+    static ProductRepository productRepository(Map<Integer, Product> table) {
+        AtomicInteger sequence = new AtomicInteger(table.keySet().stream().mapToInt(Integer::intValue).max().orElse(0));
+        return (ProductRepository) Proxy.newProxyInstance(ProductRepository.class.getClassLoader(),
+                new Class<?>[]{ProductRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Optional.ofNullable(table.get((Integer) args[0])).map(StandIns::copy);
+                    case "findAllById" -> {
+                        List<Product> found = new ArrayList<>();
+                        for (Object id : (Iterable<?>) args[0]) {
+                            Product product = table.get((Integer) id);
+                            if (product != null) {
+                                found.add(copy(product));
+                            }
+                        }
+                        yield found;
+                    }
+                    case "save", "saveAndFlush" -> save(table, sequence, (Product) args[0]);
+                    case "saveAll", "saveAllAndFlush" -> {
+                        List<Product> saved = new ArrayList<>();
+                        for (Object product : (Iterable<?>) args[0]) {
+                            saved.add(save(table, sequence, (Product) product));
+                        }
+                        yield saved;
+                    }
+                    case "delete" -> table.remove(((Product) args[0]).getId());
+                    case "deleteAllByIdInBatch" -> {
+                        ((Iterable<?>) args[0]).forEach(table::remove);
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryProductRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Репозиторий outbox, который принимает события и ничего не хранит: ретрансляция в Kafka
+     * в бенчмарках сервиса не участвует.
+     *
+     * @return Репозиторий событий outbox.
+     */
+    static OutboxEventRepository outboxEventRepository() {
+        return (OutboxEventRepository) Proxy.newProxyInstance(OutboxEventRepository.class.getClassLoader(),
+                new Class<?>[]{OutboxEventRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "save", "saveAll" -> args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "DiscardingOutboxEventRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Менеджер транзакций без базы данных: транзакции начинаются и фиксируются без работы.
+     *
+     * @return Менеджер транзакций.
+     */
+    static PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+
+    /**
+     * Менеджер кэшей-заменителей Redis: значения хранятся сериализованными.
+     *
+     * @param serializer Сериализатор продуктов productCache.
+     * @return Менеджер кэшей для L2.
+     */
+    static ConcurrentMapCacheManager remoteCacheManager(ProductRedisSerializer serializer) {
+        return new ConcurrentMapCacheManager() {
+            @Override
+            protected Cache createConcurrentMapCache(String name) {
+                return new SerializedMapCache(name, serializer);
+            }
+        };
+    }
+
+    static Product product(int id, int descriptionLength) {
+        String description = "Активное шумоподавление, до 30 часов работы, зарядный кейс с USB-C. "
+                .repeat(descriptionLength / 64 + 1).substring(0, descriptionLength);
+        return new Product(id, "Беспроводные наушники " + id, description, new BigDecimal("12990.00"), 250,
+                LocalDateTime.now().minusDays(30), LocalDateTime.now());
+    }
+
+    private static Product save(Map<Integer, Product> table, AtomicInteger sequence, Product product) {
+        Product stored = copy(product);
+        if (stored.getId() == 0) {
+            stored.setId(sequence.incrementAndGet());
+        }
+        stored.setUpdatedAt(LocalDateTime.now());
+        table.put(stored.getId(), stored);
+        return copy(stored);
+    }
+
+    private static Product copy(Product product) {
+        return new Product(product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                product.getQuantity(), product.getCreatedAt(), product.getUpdatedAt());
+    }
+
+    /**
+     * Шаблон Redis, который только принимает публикации инвалидации.
+     */
+    static class PublishOnlyRedisTemplate extends StringRedisTemplate {
+
+        @Override
+        public Long convertAndSend(String channel, Object message) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Аренда загрузки, которая всегда достается текущему инстансу (инстанс один).
+     */
+    static class LocalCacheLoadLease extends CacheLoadLease {
+
+        LocalCacheLoadLease() {
+            super(new PublishOnlyRedisTemplate(), Duration.ofSeconds(2), Duration.ofMillis(500));
+        }
+
+        @Override
+        public String tryAcquire(String cacheName, Object key) {
+            return "local";
+        }
+
+        @Override
+        public void release(String cacheName, Object key, String token) {
+        }
+    }
+
+    /**
+     * Остатки без Redis: в бенчмарках сервиса продуктов резервирований нет, сбрасывать нечего.
+     */
+    static class NoInventoryCounters extends InventoryCounters {
+
+        NoInventoryCounters() {
+            super(new PublishOnlyRedisTemplate(), Duration.ofMinutes(10), Duration.ofSeconds(30));
+        }
+
+        @Override
+        public void reset(Collection<Integer> ids) {
+        }
+    }
+
+    /**
+     * Кэш в памяти, который хранит продукты в байтах, как кэш Redis.
+     */
+    private static class SerializedMapCache extends AbstractValueAdaptingCache {
+
+        private static final byte[] NULL_VALUE = new byte[0];
+
+        private final String name;
+
+        private final ProductRedisSerializer serializer;
+
+        private final ConcurrentMap<Object, byte[]> store = new ConcurrentHashMap<>();
+
+        SerializedMapCache(String name, ProductRedisSerializer serializer) {
+            super(true);
+            this.name = name;
+            this.serializer = serializer;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return store;
+        }
+
+        @Override
+        protected Object lookup(Object key) {
+            byte[] bytes = store.get(key);
+            if (bytes == null) {
+                return null;
+            }
+            return bytes.length == 0 ? toStoreValue(null) : serializer.deserialize(bytes);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            ValueWrapper value = get(key);
+            if (value != null) {
+                return (T) value.get();
+            }
+            try {
+                T loaded = valueLoader.call();
+                put(key, loaded);
+                return loaded;
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            store.put(key, value == null ? NULL_VALUE : serializer.serialize((Product) value));
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            byte[] existing = store.putIfAbsent(key, value == null ? NULL_VALUE : serializer.serialize((Product) value));
+            return existing == null ? null : toValueWrapper(existing.length == 0 ? toStoreValue(null)
+                    : serializer.deserialize(existing));
+        }
+
+        @Override
+        public void evict(Object key) {
+            store.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            store.clear();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package sia.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import sia.pairschallenge.redis.ProductRedisSerializer;
+import sia.pairschallenge.redis.TwoTierCache;
+import sia.pairschallenge.redis.TwoTierCacheManager;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.service.impl.ProductServiceImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции {@link TwoTierCache} над productCache: чтение одной и нескольких записей с попаданием в L1
+ * и запись, которая сериализует продукт для L2 и публикует инвалидацию (публикация здесь без сети).
+ * Стоимость чтения из L2 без сети совпадает с cacheEntryDeserialize в {@link ProductSerializationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TwoTierCacheBenchmark {
+
+    @Param({"10000"})
+    private int entries;
+
+    @Param({"100"})
+    private int batchSize;
+
+    private TwoTierCache cache;
+
+    private Product product;
+
+    private List<Integer> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TwoTierCacheManager cacheManager = new TwoTierCacheManager(
+                StandIns.remoteCacheManager(new ProductRedisSerializer(512)), new StandIns.PublishOnlyRedisTemplate(),
+                new SimpleMeterRegistry(), "cache-invalidation", entries, Duration.ofMinutes(10),
+                Duration.ofSeconds(10), 1.0, Duration.ofMillis(50));
+        cache = (TwoTierCache) cacheManager.getCache(ProductServiceImpl.PRODUCT_CACHE);
+        for (int id = 1; id <= entries; id++) {
+            cache.put(id, StandIns.product(id, 64));
+        }
+        product = StandIns.product(1, 64);
+        batch = new ArrayList<>();
+        for (int id = 1; id <= batchSize; id++) {
+            batch.add(id);
+        }
+    }
+
+    @Benchmark
+    public Cache.ValueWrapper getLocalHit() {
+        return cache.get(1 + ThreadLocalRandom.current().nextInt(entries));
+    }
+
+    @Benchmark
+    public Map<Object, Cache.ValueWrapper> getAllLocalHits() {
+        return cache.getAll(batch);
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(1 + ThreadLocalRandom.current().nextInt(entries), product);
+    }
+}
@@ -1,27 +1,78 @@
 package sia.kafkaconsumer;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 import sia.productevent.event.ProductEvent;
 
+import java.util.List;
+
 /**
- * Класс Consumer, который слушает сообщения из Kafka-топика "product-events" и логирует их.
+ * Класс Consumer, который слушает сообщения из Kafka-топика "product-events" и логирует их на уровне DEBUG.
  * Этот класс использует аннотацию @KafkaListener для определения топика и группы для потребления сообщений.
+ * Сообщения читаются пакетами (spring.kafka.listener.type=batch), число потоков задается
+ * spring.kafka.listener.concurrency, смещения фиксируются вручную после обработки всего пакета.
  */
 @Service
 public class Consumer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Consumer.class);
 
+    private final Counter consumedEvents;
+
+    private final Counter failedEvents;
+
+    private final DistributionSummary batchSize;
+
+    private final Timer batchTime;
+
+    /**
+     * Конструктор для регистрации метрик обработки.
+     *
+     * @param meterRegistry Реестр метрик.
+     */
+    public Consumer(MeterRegistry meterRegistry) {
+        this.consumedEvents = Counter.builder("product.events.consumed")
+                .description("Обработанные события продуктов")
+                .register(meterRegistry);
+        this.failedEvents = Counter.builder("product.events.failed")
+                .description("События продуктов, которые не удалось десериализовать")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("product.events.batch.size")
+                .description("Количество событий в пакете")
+                .register(meterRegistry);
+        this.batchTime = Timer.builder("product.events.batch.time")
+                .description("Время обработки пакета событий")
+                .register(meterRegistry);
+    }
+
     /**
      * Слушает новые сообщения о событиях продуктов в Kafka-топике "product-events".
      *
-     * @param message сообщение типа ProductEvent, полученное из Kafka-топика.
+     * @param messages пакет сообщений типа ProductEvent, полученный из Kafka-топика.
+     *                 Сообщение, которое не удалось десериализовать, приходит как null.
+     * @param acknowledgment подтверждение, фиксирующее смещения всего пакета.
      */
     @KafkaListener(topics = "product-events", groupId = "product-events-listener")
-    public void listenNewEmployee(ProductEvent message) {
-        LOGGER.info("Сообщение получено: " + message.toString());
+    public void listenProductEvents(List<ProductEvent> messages, Acknowledgment acknowledgment) {
+        batchTime.record(() -> {
+            for (ProductEvent message : messages) {
+                if (message == null) {
+                    failedEvents.increment();
+                    continue;
+                }
+                // Параметризованное сообщение: при выключенном DEBUG строка не собирается и toString не вызывается
+                LOGGER.debug("Сообщение получено: {}", message);
+                consumedEvents.increment();
+            }
+        });
+        batchSize.record(messages.size());
+        acknowledgment.acknowledge();
     }
-}
\ No newline at end of file
+}
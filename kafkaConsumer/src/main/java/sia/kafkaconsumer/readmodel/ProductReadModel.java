@@ -0,0 +1,175 @@
+package sia.kafkaconsumer.readmodel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Материализованное представление каталога, построенное из событий топика "product-events".
+ * Хранит последнее состояние каждого продукта в памяти по его идентификатору.
+ * <p>
+ * Применение событий идемпотентно: событие пропускается, если его смещение уже было применено
+ * для своей партиции или если у продукта уже есть более новая версия (по полю version).
+ * Событие удаления несет версию удаленной строки, поэтому при равных версиях удаление побеждает:
+ * повторно доставленное изменение не воскрешает удаленный продукт.
+ * Поэтому повторная доставка (outbox дает at-least-once) и повторное чтение после
+ * восстановления из снимка не портят состояние. По updatedAt сравниваются только события
+ * без версии, записанные до ее появления: часы инстансов расходятся, и у изменений в одну
+ * миллисекунду updatedAt может совпадать.
+ * <p>
+ * Состояние периодически сохраняется в снимок на диск вместе со смещениями партиций,
+ * при перезапуске снимок загружается, и чтение продолжается со следующих смещений.
+ */
+@Component
+public class ProductReadModel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductReadModel.class);
+
+    private final Map<Integer, ProductEvent> products = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> appliedOffsets = new ConcurrentHashMap<>();
+
+    private final ObjectMapper objectMapper;
+
+    private final Path snapshotPath;
+
+    /**
+     * Конструктор представления. Загружает снимок, если он есть.
+     *
+     * @param objectMapper ObjectMapper для записи и чтения снимка.
+     * @param snapshotPath Путь к файлу снимка.
+     */
+    public ProductReadModel(ObjectMapper objectMapper,
+                            @Value("${read-model.snapshot-path:data/product-read-model.json}") Path snapshotPath) {
+        this.objectMapper = objectMapper;
+        this.snapshotPath = snapshotPath;
+        restore();
+    }
+
+    /**
+     * Применяет событие к представлению.
+     *
+     * @param event Событие продукта.
+     * @param partition Партиция в формате "topic-partition".
+     * @param offset Смещение события в партиции.
+     * @return true, если событие изменило представление.
+     */
+    public boolean apply(ProductEvent event, String partition, long offset) {
+        Long applied = appliedOffsets.get(partition);
+        if (applied != null && offset <= applied) {
+            return false;
+        }
+
+        boolean[] changed = new boolean[1];
+        products.compute(event.getId(), (id, current) -> {
+            if (current != null && isOlder(event, current)) {
+                return current;
+            }
+            changed[0] = true;
+            return event;
+        });
+        // Партицию обрабатывает один поток, поэтому смещения по ней растут монотонно
+        appliedOffsets.put(partition, offset);
+        return changed[0];
+    }
+
+    /**
+     * Находит продукт по идентификатору.
+     *
+     * @param id Идентификатор продукта.
+     * @return Последнее состояние продукта, или пусто, если продукт не найден или удален.
+     */
+    public Optional<ProductEvent> findById(int id) {
+        return Optional.ofNullable(products.get(id))
+                .filter(product -> product.getType() != ProductEventType.DELETED);
+    }
+
+    /**
+     * Возвращает смещение последнего примененного события партиции.
+     *
+     * @param partition Партиция в формате "topic-partition".
+     * @return Смещение, или пусто, если из партиции еще ничего не применено.
+     */
+    public Optional<Long> appliedOffset(String partition) {
+        return Optional.ofNullable(appliedOffsets.get(partition));
+    }
+
+    /**
+     * Сохраняет снимок представления на диск.
+     * Смещения копируются до продуктов: в снимок могут попасть события новее сохраненных
+     * смещений, но не наоборот, поэтому после восстановления ни одно событие не теряется,
+     * а повторно прочитанные применяются идемпотентно.
+     * Файл записывается во временный и затем атомарно переименовывается.
+     */
+    @Scheduled(fixedDelayString = "${read-model.snapshot-interval-ms:60000}",
+            initialDelayString = "${read-model.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        Map<String, Long> offsets = new HashMap<>(appliedOffsets);
+        if (offsets.isEmpty()) {
+            return;
+        }
+        List<ProductEvent> state = new ArrayList<>(products.values());
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "read-model", ".tmp");
+            objectMapper.writeValue(temp.toFile(), new Snapshot(offsets, state));
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("Read model snapshot saved: {} products, offsets {}", state.size(), offsets);
+        } catch (IOException e) {
+            LOGGER.error("Unable to save read model snapshot to {}", snapshotPath, e);
+        }
+    }
+
+    private void restore() {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        try {
+            Snapshot snapshot = objectMapper.readValue(snapshotPath.toFile(), Snapshot.class);
+            snapshot.products().forEach(product -> products.put(product.getId(), product));
+            appliedOffsets.putAll(snapshot.offsets());
+            LOGGER.info("Read model restored from snapshot: {} products, offsets {}",
+                    products.size(), appliedOffsets);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read read model snapshot " + snapshotPath, e);
+        }
+    }
+
+    private static boolean isOlder(ProductEvent event, ProductEvent current) {
+        if (event.getVersion() != null && current.getVersion() != null) {
+            int order = Long.compare(event.getVersion(), current.getVersion());
+            if (order != 0) {
+                return order < 0;
+            }
+            return current.getType() == ProductEventType.DELETED;
+        }
+        if (event.getUpdatedAt() == null || current.getUpdatedAt() == null) {
+            return false;
+        }
+        return event.getUpdatedAt().isBefore(current.getUpdatedAt());
+    }
+
+    /**
+     * Снимок представления: смещения партиций и состояние продуктов.
+     */
+    record Snapshot(Map<String, Long> offsets, List<ProductEvent> products) {
+    }
+}
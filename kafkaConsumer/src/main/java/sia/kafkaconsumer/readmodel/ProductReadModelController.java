@@ -0,0 +1,40 @@
+package sia.kafkaconsumer.readmodel;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import sia.productevent.event.ProductEvent;
+
+/**
+ * Read-only API поверх {@link ProductReadModel}.
+ * Путь совпадает с API основного приложения, так что чтение по идентификатору
+ * можно перенаправить на экземпляры kafkaConsumer, не обращаясь к Postgres.
+ */
+@RestController
+@RequestMapping("/api/products")
+public class ProductReadModelController {
+
+    private final ProductReadModel readModel;
+
+    /**
+     * Конструктор контроллера.
+     *
+     * @param readModel Представление каталога.
+     */
+    public ProductReadModelController(ProductReadModel readModel) {
+        this.readModel = readModel;
+    }
+
+    /**
+     * Возвращает последнее известное состояние продукта.
+     *
+     * @param id Идентификатор продукта.
+     * @return Продукт, или 404, если продукт не найден или удален.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ProductEvent> findById(@PathVariable("id") int id) {
+        return ResponseEntity.of(readModel.findById(id));
+    }
+}
@@ -0,0 +1,70 @@
+package sia.kafkaconsumer.readmodel;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+import sia.productevent.event.ProductEvent;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Слушатель, который строит {@link ProductReadModel} из топика "product-events".
+ * <p>
+ * Каждому экземпляру нужен весь каталог, поэтому у каждого своя группа потребителей
+ * (read-model.group-id, по умолчанию уникальная) и он читает все партиции.
+ * Позиция чтения определяется снимком представления, а не зафиксированными смещениями группы:
+ * при назначении партиции чтение продолжается со смещения после снимка,
+ * а для партиций без снимка топик перечитывается с начала.
+ */
+@Component
+public class ProductReadModelListener implements ConsumerSeekAware {
+
+    private final ProductReadModel readModel;
+
+    /**
+     * Конструктор слушателя.
+     *
+     * @param readModel Представление, к которому применяются события.
+     */
+    public ProductReadModelListener(ProductReadModel readModel) {
+        this.readModel = readModel;
+    }
+
+    /**
+     * Применяет пакет событий к представлению.
+     *
+     * @param messages пакет событий. Событие, которое не удалось десериализовать, приходит как null.
+     * @param topics топики событий пакета.
+     * @param partitions партиции событий пакета.
+     * @param offsets смещения событий пакета.
+     * @param acknowledgment подтверждение, фиксирующее смещения всего пакета.
+     */
+    @KafkaListener(topics = "product-events", groupId = "${read-model.group-id}")
+    public void listen(List<ProductEvent> messages,
+                       @Header(KafkaHeaders.RECEIVED_TOPIC) List<String> topics,
+                       @Header(KafkaHeaders.RECEIVED_PARTITION) List<Integer> partitions,
+                       @Header(KafkaHeaders.OFFSET) List<Long> offsets,
+                       Acknowledgment acknowledgment) {
+        for (int i = 0; i < messages.size(); i++) {
+            ProductEvent message = messages.get(i);
+            if (message != null) {
+                readModel.apply(message, new TopicPartition(topics.get(i), partitions.get(i)).toString(), offsets.get(i));
+            }
+        }
+        acknowledgment.acknowledge();
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        for (TopicPartition partition : assignments.keySet()) {
+            readModel.appliedOffset(partition.toString()).ifPresentOrElse(
+                    offset -> callback.seek(partition.topic(), partition.partition(), offset + 1),
+                    () -> callback.seekToBeginning(partition.topic(), partition.partition()));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package sia.kafkaconsumer.readmodel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductReadModelTest {
+
+    private static final String PARTITION = "product-events-0";
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void skipsAlreadyAppliedOffsetsAndOlderVersions() {
+        ProductReadModel readModel = new ProductReadModel(objectMapper, dir.resolve("snapshot.json"));
+
+        assertTrue(readModel.apply(event(ProductEventType.CREATED, "v1", CREATED), PARTITION, 0));
+        assertTrue(readModel.apply(event(ProductEventType.UPDATED, "v2", CREATED.plusMinutes(1)), PARTITION, 1));
+        // Повторная доставка уже примененного смещения
+        assertFalse(readModel.apply(event(ProductEventType.CREATED, "v1", CREATED), PARTITION, 0));
+        // Повторная отправка старого события из outbox с новым смещением
+        assertFalse(readModel.apply(event(ProductEventType.CREATED, "v1", CREATED), PARTITION, 2));
+
+        assertEquals("v2", readModel.findById(1).orElseThrow().getName());
+        assertEquals(Optional.of(2L), readModel.appliedOffset(PARTITION));
+    }
+
+    @Test
+    void deletedProductIsNotFoundAndNotResurrectedByOlderUpdate() {
+        ProductReadModel readModel = new ProductReadModel(objectMapper, dir.resolve("snapshot.json"));
+
+        readModel.apply(event(ProductEventType.CREATED, "v1", CREATED), PARTITION, 0);
+        readModel.apply(event(ProductEventType.DELETED, "v2", CREATED.plusMinutes(1)), PARTITION, 1);
+        readModel.apply(event(ProductEventType.UPDATED, "v1", CREATED), PARTITION, 2);
+
+        assertTrue(readModel.findById(1).isEmpty());
+    }
+
+    @Test
+    void redeliveredUpdateDoesNotResurrectDeletedProductByVersion() {
+        ProductReadModel readModel = new ProductReadModel(objectMapper, dir.resolve("snapshot.json"));
+        // updatedAt удаления не новее изменения: порядок определяет только версия
+        LocalDateTime sameMoment = CREATED.plusMinutes(1);
+
+        assertTrue(readModel.apply(event(ProductEventType.CREATED, "v0", CREATED, 0L), PARTITION, 0));
+        assertTrue(readModel.apply(event(ProductEventType.UPDATED, "v1", sameMoment, 1L), PARTITION, 1));
+        assertTrue(readModel.apply(event(ProductEventType.DELETED, "v1", sameMoment, 1L), PARTITION, 2));
+        // Повторная отправка изменения из outbox с новым смещением
+        assertFalse(readModel.apply(event(ProductEventType.UPDATED, "v1", sameMoment, 1L), PARTITION, 3));
+        assertFalse(readModel.apply(event(ProductEventType.CREATED, "v0", CREATED, 0L), PARTITION, 4));
+
+        assertTrue(readModel.findById(1).isEmpty());
+    }
+
+    @Test
+    void ordersByVersionRatherThanUpdatedAt() {
+        ProductReadModel readModel = new ProductReadModel(objectMapper, dir.resolve("snapshot.json"));
+
+        readModel.apply(event(ProductEventType.UPDATED, "v2", CREATED, 2L), PARTITION, 0);
+        // Часы другого инстанса спешат: updatedAt новее, но версия старше
+        assertFalse(readModel.apply(event(ProductEventType.UPDATED, "v1", CREATED.plusHours(1), 1L), PARTITION, 1));
+
+        assertEquals("v2", readModel.findById(1).orElseThrow().getName());
+    }
+
+    @Test
+    void restoresStateAndOffsetsFromSnapshot() {
+        Path snapshot = dir.resolve("snapshot.json");
+        ProductReadModel readModel = new ProductReadModel(objectMapper, snapshot);
+        readModel.apply(event(ProductEventType.CREATED, "v1", CREATED), PARTITION, 41);
+        readModel.snapshot();
+
+        ProductReadModel restored = new ProductReadModel(objectMapper, snapshot);
+
+        assertEquals("v1", restored.findById(1).orElseThrow().getName());
+        assertEquals(Optional.of(41L), restored.appliedOffset(PARTITION));
+        assertFalse(restored.apply(event(ProductEventType.CREATED, "v1", CREATED), PARTITION, 41));
+    }
+
+    private static ProductEvent event(ProductEventType type, String name, LocalDateTime updatedAt) {
+        return new ProductEvent(type, 1, name, "description", BigDecimal.TEN, 5, CREATED, updatedAt);
+    }
+
+    private static ProductEvent event(ProductEventType type, String name, LocalDateTime updatedAt, long version) {
+        ProductEvent event = event(type, name, updatedAt);
+        event.setVersion(version);
+        return event;
+    }
+}
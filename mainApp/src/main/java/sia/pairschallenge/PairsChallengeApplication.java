@@ -3,9 +3,11 @@ package sia.pairschallenge;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = "sia")
 @EnableJpaAuditing
+@EnableScheduling
 public class PairsChallengeApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,160 @@
+package sia.pairschallenge.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фильтр, который ограничивает число одновременно обрабатываемых запросов к API, чтобы всплеск нагрузки
+ * не исчерпал пул соединений с бд (а за ним буфер продюсера Kafka) и не замедлил все остальные запросы.
+ * <p>
+ * Чтения (GET, HEAD, OPTIONS) и записи ограничиваются отдельно: записи всегда идут в бд, поэтому
+ * load-shedding.max-concurrent-writes должно быть меньше пула соединений, а чтения в основном отдаются из кэша.
+ * Если load-shedding.max-concurrent-reads не задано, чтений допускается столько, чтобы их промахи кэша
+ * (доля load-shedding.read-miss-ratio) в среднем умещались в соединения, оставшиеся от записей.
+ * Запрос, которому не досталось место за load-shedding.queue-timeout, сразу получает 503 с Retry-After.
+ * Для асинхронных запросов (выгрузка) место освобождается, когда контроллер вернул управление,
+ * а не когда закончилась запись ответа.
+ * Решения публикуются метрикой load.shedding.requests с группой (read, write) и результатом (admitted, shed),
+ * число обрабатываемых запросов - load.shedding.in.flight.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 11)
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+
+    private final PathPattern path;
+
+    private final long queueTimeoutNanos;
+
+    private final Group reads;
+
+    private final Group writes;
+
+    /**
+     * Конструктор фильтра.
+     *
+     * @param meterRegistry Реестр метрик.
+     * @param enabled Включено ли ограничение.
+     * @param path Шаблон пути запросов, которые ограничиваются.
+     * @param maxConcurrentReads Сколько чтений обрабатывается одновременно; 0 - по пулу соединений.
+     * @param maxConcurrentWrites Сколько записей обрабатывается одновременно.
+     * @param queueTimeout Сколько запрос ждет места, прежде чем получить 503.
+     * @param dbPoolSize Размер пула соединений с бд.
+     * @param readMissRatio Ожидаемая доля чтений, которые идут в бд мимо кэша.
+     */
+    public LoadSheddingFilter(MeterRegistry meterRegistry,
+                              @Value("${load-shedding.enabled:true}") boolean enabled,
+                              @Value("${load-shedding.path:/api/**}") String path,
+                              @Value("${load-shedding.max-concurrent-reads:0}") int maxConcurrentReads,
+                              @Value("${load-shedding.max-concurrent-writes:16}") int maxConcurrentWrites,
+                              @Value("${load-shedding.queue-timeout:100ms}") Duration queueTimeout,
+                              @Value("${spring.datasource.hikari.maximum-pool-size:10}") int dbPoolSize,
+                              @Value("${load-shedding.read-miss-ratio:0.05}") double readMissRatio) {
+        this.enabled = enabled;
+        this.path = PathPatternParser.defaultInstance.parse(path);
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.reads = new Group(meterRegistry, "read", maxConcurrentReads > 0 ? maxConcurrentReads
+                : readLimit(dbPoolSize, maxConcurrentWrites, readMissRatio));
+        this.writes = new Group(meterRegistry, "write", maxConcurrentWrites);
+    }
+
+    /**
+     * Число одновременных чтений, при котором их промахи кэша в среднем занимают соединения,
+     * оставшиеся от записей (не меньше одного).
+     */
+    static int readLimit(int dbPoolSize, int maxConcurrentWrites, double readMissRatio) {
+        int readConnections = Math.max(1, dbPoolSize - maxConcurrentWrites);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, readConnections / Math.min(1.0, readMissRatio)));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !path.matches(
+                PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length())));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Group group = isRead(request) ? reads : writes;
+        boolean acquired;
+        try {
+            acquired = group.permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            group.shed.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Server is overloaded, retry later");
+            return;
+        }
+        group.admitted.increment();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            group.permits.release();
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+
+    /**
+     * Места для одной группы запросов и ее метрики.
+     */
+    private static class Group {
+
+        private final Semaphore permits;
+
+        private final Counter admitted;
+
+        private final Counter shed;
+
+        Group(MeterRegistry meterRegistry, String name, int maxConcurrent) {
+            this.permits = new Semaphore(maxConcurrent);
+            this.admitted = requests(meterRegistry, name, "admitted");
+            this.shed = requests(meterRegistry, name, "shed");
+            Gauge.builder("load.shedding.in.flight", permits, p -> maxConcurrent - p.availablePermits())
+                    .description("Запросы к API, которые обрабатываются сейчас")
+                    .tag("group", name)
+                    .register(meterRegistry);
+        }
+
+        private static Counter requests(MeterRegistry meterRegistry, String group, String result) {
+            return Counter.builder("load.shedding.requests")
+                    .description("Запросы к API с ограничением одновременной обработки")
+                    .tag("group", group)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -1,16 +1,48 @@
 package sia.pairschallenge.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.repository.ProductPatch;
+import sia.pairschallenge.service.InsufficientStockException;
+import sia.pairschallenge.service.ProductImportService.ImportResult;
+import sia.pairschallenge.service.impl.InventoryServiceImpl;
+import sia.pairschallenge.service.impl.ProductImportServiceImpl;
 import sia.pairschallenge.service.impl.ProductServiceImpl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.List;
 
 /**
  * Контроллер для управления продуктами.
  * Предоставляет REST API для создания, получения, обновления и удаления продуктов.
+ * <p>
+ * Ответы с одним продуктом содержат ETag с его версией. Если клиент передает ее в If-Match при изменении,
+ * а продукт успели изменить, возвращается 412 и изменение не применяется.
+ * <p>
+ * Чтения продуктов поддерживают условные запросы: если ETag из If-None-Match совпадает с текущим,
+ * возвращается 304 без тела (проверку выполняет Spring MVC по ETag ответа, тело при этом не сериализуется).
+ * Списки получают слабый ETag по идентификаторам и версиям продуктов: сильный ETag не дал бы Tomcat
+ * сжимать ответ (server.compression). Заголовок Cache-Control задается products.http-cache.max-age.
  */
 @RestController
 @RequestMapping("/api/products")
@@ -18,13 +50,35 @@ public class MainController {
 
     private final ProductServiceImpl productService;
 
+    private final ProductImportServiceImpl productImportService;
+
+    private final InventoryServiceImpl inventoryService;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${products.batch.max-size:10000}")
+    private int batchMaxSize;
+
+    @Value("${products.page.max-size:1000}")
+    private int pageMaxSize;
+
+    @Value("${products.http-cache.max-age:0s}")
+    private Duration httpCacheMaxAge;
+
     /**
      * Конструктор для инициализации контроллера с сервисом продуктов.
      *
      * @param productService Сервис для работы с продуктами.
+     * @param productImportService Сервис потокового импорта продуктов.
+     * @param inventoryService Сервис резервирования остатков.
+     * @param objectMapper ObjectMapper приложения для потоковой выгрузки.
      */
-    public MainController(ProductServiceImpl productService) {
+    public MainController(ProductServiceImpl productService, ProductImportServiceImpl productImportService,
+                          InventoryServiceImpl inventoryService, ObjectMapper objectMapper) {
         this.productService = productService;
+        this.productImportService = productImportService;
+        this.inventoryService = inventoryService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -35,35 +89,92 @@ public class MainController {
      */
     @PostMapping
     public ResponseEntity<String> createNewProduct(@RequestBody Product product) {
-        productService.create(product);
-        return ResponseEntity.ok("Product created with id " + product.getId());
+        Product createdProduct = productService.create(product);
+        return ResponseEntity.ok("Product created with id " + createdProduct.getId());
     }
 
     /**
      * Получает продукт по его идентификатору.
+     * Версия для сравнения с If-None-Match берется из продукта в кэше, поэтому повторное чтение
+     * закэшированного продукта с актуальным ETag отвечает 304, не обращаясь к бд.
      *
      * @param id Идентификатор продукта.
+     * @return Ответ с продуктом и его версией в ETag, или 304, если версия у клиента актуальна.
      */
     @GetMapping("/{id}")
     public ResponseEntity<Product> getProduct(@PathVariable Integer id) {
         Product productFromMainDB = productService.findById(id);
 
-        return ResponseEntity.ok(productFromMainDB);
+        return ResponseEntity.ok().eTag(eTag(productFromMainDB)).cacheControl(cacheControl()).body(productFromMainDB);
+    }
+
+    /**
+     * Получает продукты по списку идентификаторов одним запросом, например для страницы витрины.
+     *
+     * @param ids Идентификаторы продуктов через запятую.
+     * @return Ответ с найденными продуктами в порядке запроса; ненайденные пропускаются.
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<Product>> getProductsByIds(@RequestParam List<Integer> ids) {
+        checkBatchSize(ids.size());
+        return listResponse(productService.findAllById(ids));
+    }
+
+    /**
+     * Получает продукты по списку идентификаторов из тела запроса,
+     * для списков, которые не помещаются в строку запроса.
+     *
+     * @param ids Идентификаторы продуктов.
+     * @return Ответ с найденными продуктами в порядке запроса; ненайденные пропускаются.
+     */
+    @PostMapping("/lookup")
+    public ResponseEntity<List<Product>> lookupProducts(@RequestBody List<Integer> ids) {
+        checkBatchSize(ids.size());
+        return ResponseEntity.ok(productService.findAllById(ids));
     }
 
     /**
      * Получает список всех продуктов с поддержкой пагинации.
+     * Если передан курсор after, страница выбирается по условию id > after без смещения,
+     * и время запроса не зависит от глубины страницы.
      *
-     * @param page Номер страницы (по умолчанию 0).
-     * @param size Размер страницы (по умолчанию 0).
-     * @return Ответ со списком продуктов.
+     * @param page Номер страницы (по умолчанию 0), не используется вместе с after.
+     * @param size Размер страницы (по умолчанию 10, не больше products.page.max-size).
+     * @param after Идентификатор последнего продукта предыдущей страницы.
+     * @return Ответ со списком продуктов, или 304, если у клиента та же страница.
      */
     @GetMapping
     public ResponseEntity<List<Product>> getProducts(
             @RequestParam(defaultValue = "0") Integer page,
-            @RequestParam(defaultValue = "10") Integer size) {
-        List<Product> allProducts = productService.findAll(PageRequest.of(page, size));
-        return ResponseEntity.ok(allProducts);
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) Integer after) {
+        checkPage(page, size);
+        List<Product> allProducts = after != null
+                ? productService.findAfter(after, size)
+                : productService.findAll(PageRequest.of(page, size));
+        return listResponse(allProducts);
+    }
+
+    /**
+     * Выгружает все продукты в формате NDJSON (один продукт на строку).
+     * Продукты читаются серверным курсором и пишутся в ответ по одному.
+     *
+     * @return Потоковый ответ со всеми продуктами.
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportProducts() {
+        StreamingResponseBody body = output -> {
+            try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(output)) {
+                productService.forEachProduct(product -> {
+                    try {
+                        writer.write(product);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok(body);
     }
 
     /**
@@ -71,12 +182,74 @@ public class MainController {
      *
      * @param id Идентификатор продукта, который нужно обновить.
      * @param product Объект продукта с новыми данными.
-     * @return Ответ с сообщением об успешном обновлении продукта.
+     * @param ifMatch ETag продукта, который клиент видел последним; без него продукт перезаписывается.
+     * @return Ответ с сообщением об успешном обновлении продукта и новой версией в ETag.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<String> updateProduct(@PathVariable Integer id, @RequestBody Product product) {
-        productService.update(id, product);
-        return ResponseEntity.ok("Product updated with id " + id);
+    public ResponseEntity<String> updateProduct(@PathVariable Integer id, @RequestBody Product product,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Product updatedProduct = productService.update(id, product, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(eTag(updatedProduct)).body("Product updated with id " + id);
+    }
+
+    /**
+     * Частично изменяет продукт: меняются только поля, переданные в теле запроса.
+     * Количество можно задать значением quantity или изменить на quantityDelta без чтения текущего значения.
+     *
+     * @param id Идентификатор продукта.
+     * @param patch Изменяемые поля.
+     * @param ifMatch ETag продукта, который клиент видел последним; без него версия не проверяется.
+     * @return Ответ с измененным продуктом и его новой версией в ETag.
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<Product> patchProduct(@PathVariable Integer id, @RequestBody ProductPatch patch,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (patch.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Patch has no fields to change");
+        }
+        Product patchedProduct = productService.patch(id, patch, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(eTag(patchedProduct)).body(patchedProduct);
+    }
+
+    /**
+     * Атомарно изменяет остаток продукта, например при резервировании или поступлении товара.
+     * Параллельные изменения складываются, остаток не уходит ниже нуля.
+     *
+     * @param id Идентификатор продукта.
+     * @param delta Изменение количества: отрицательное - списание, положительное - поступление.
+     * @return Ответ с измененным продуктом и его новой версией в ETag.
+     */
+    @PostMapping("/{id}/stock")
+    public ResponseEntity<Product> adjustStock(@PathVariable Integer id, @RequestParam int delta) {
+        Product adjustedProduct = productService.adjustStock(id, delta);
+        return ResponseEntity.ok().eTag(eTag(adjustedProduct)).body(adjustedProduct);
+    }
+
+    /**
+     * Резервирует количество продукта, например при оформлении заказа в распродажу.
+     * Остаток меняется в Redis без блокировки строки продукта, в продукт изменение попадает с задержкой.
+     *
+     * @param id Идентификатор продукта.
+     * @param quantity Резервируемое количество.
+     * @return Ответ с остатком после резервирования.
+     */
+    @PostMapping("/{id}/reservations")
+    public ResponseEntity<Long> reserveStock(@PathVariable Integer id, @RequestParam int quantity) {
+        checkQuantity(quantity);
+        return ResponseEntity.ok(inventoryService.reserve(id, quantity));
+    }
+
+    /**
+     * Возвращает зарезервированное количество продукта, например при отмене заказа.
+     *
+     * @param id Идентификатор продукта.
+     * @param quantity Возвращаемое количество.
+     * @return Ответ с остатком после возврата.
+     */
+    @DeleteMapping("/{id}/reservations")
+    public ResponseEntity<Long> releaseStock(@PathVariable Integer id, @RequestParam int quantity) {
+        checkQuantity(quantity);
+        return ResponseEntity.ok(inventoryService.release(id, quantity));
     }
 
     /**
@@ -90,4 +263,162 @@ public class MainController {
         productService.deleteById(id);
         return ResponseEntity.ok("Product deleted with id: " + id);
     }
+
+    /**
+     * Создает продукты пакетом в одной транзакции.
+     *
+     * @param products Продукты, которые нужно создать в бд.
+     * @return Ответ с идентификаторами созданных продуктов в порядке запроса.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<Integer>> createProducts(@RequestBody List<Product> products) {
+        checkBatchSize(products.size());
+        List<Integer> ids = productService.createAll(products).stream()
+                .map(Product::getId)
+                .toList();
+        return ResponseEntity.ok(ids);
+    }
+
+    /**
+     * Обновляет продукты пакетом в одной транзакции.
+     *
+     * @param products Продукты с новыми данными, у каждого должен быть указан идентификатор.
+     * @return Ответ с сообщением об успешном обновлении продуктов.
+     */
+    @PutMapping("/batch")
+    public ResponseEntity<String> updateProducts(@RequestBody List<Product> products) {
+        checkBatchSize(products.size());
+        productService.updateAll(products);
+        return ResponseEntity.ok("Products updated: " + products.size());
+    }
+
+    /**
+     * Удаляет продукты пакетом в одной транзакции.
+     *
+     * @param ids Идентификаторы продуктов, которые нужно удалить.
+     * @return Ответ с сообщением об успешном удалении продуктов.
+     */
+    @DeleteMapping("/batch")
+    public ResponseEntity<String> deleteProducts(@RequestBody List<Integer> ids) {
+        checkBatchSize(ids.size());
+        productService.deleteAllById(ids);
+        return ResponseEntity.ok("Products deleted: " + ids.size());
+    }
+
+    /**
+     * Импортирует продукты из тела запроса в формате NDJSON (один продукт на строку).
+     * Тело читается потоково и сохраняется блоками, поэтому размер загрузки не ограничен памятью.
+     *
+     * @param body Поток с телом запроса.
+     * @return Ответ с количеством импортированных продуктов и прогрессом по блокам.
+     * @throws IOException Если тело запроса не удалось прочитать.
+     */
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<ImportResult> importProducts(InputStream body) throws IOException {
+        try {
+            return ResponseEntity.ok(productImportService.importProducts(body));
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed product record: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Отвечает 400 на тело запроса, которое не удалось разобрать, в том числе на ProductPatch,
+     * отклоненный своим конструктором (отрицательное quantity, quantity вместе с quantityDelta).
+     */
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<String> handleUnreadableBody(HttpMessageNotReadableException e) {
+        Throwable cause = e.getMostSpecificCause();
+        String message = cause instanceof IllegalArgumentException ? cause.getMessage() : "Malformed request body";
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
+    }
+
+    @ExceptionHandler(EntityNotFoundException.class)
+    public ResponseEntity<String> handleNotFound(EntityNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleVersionConflict(OptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body("Product was modified concurrently, reload it and retry");
+    }
+
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<String> handleBusy(ConcurrencyFailureException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<String> handleInsufficientStock(InsufficientStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    private static String eTag(Product product) {
+        return "\"" + product.getVersion() + "\"";
+    }
+
+    /**
+     * Ответ со списком продуктов и слабым ETag: хэш идентификаторов и версий продуктов в порядке списка.
+     * Любое изменение, добавление или удаление продукта списка меняет ETag.
+     */
+    private ResponseEntity<List<Product>> listResponse(List<Product> products) {
+        ByteBuffer versions = ByteBuffer.allocate(products.size() * (Integer.BYTES + Long.BYTES));
+        for (Product product : products) {
+            versions.putInt(product.getId()).putLong(product.getVersion());
+        }
+        String eTag = "W/\"" + DigestUtils.md5DigestAsHex(versions.array()) + "\"";
+        return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl()).body(products);
+    }
+
+    /**
+     * Клиенты и CDN могут хранить ответ products.http-cache.max-age, после этого - только с проверкой ETag.
+     */
+    private CacheControl cacheControl() {
+        return CacheControl.maxAge(httpCacheMaxAge).cachePublic().mustRevalidate();
+    }
+
+    /**
+     * Достает версию продукта из If-Match. Поддерживается один сильный ETag или *;
+     * слабый или неразборчивый ETag не может совпасть с версией, поэтому сразу дает 412.
+     *
+     * @return Ожидаемая версия или null, если проверять версию не нужно.
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        try {
+            if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match product version");
+    }
+
+    private static void checkQuantity(int quantity) {
+        if (quantity <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must be positive");
+        }
+    }
+
+    private void checkPage(int page, int size) {
+        if (page < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page must not be negative");
+        }
+        if (size <= 0 || size > pageMaxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Page size must be between 1 and " + pageMaxSize);
+        }
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > batchMaxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch size " + size + " exceeds limit " + batchMaxSize);
+        }
+    }
 }
\ No newline at end of file
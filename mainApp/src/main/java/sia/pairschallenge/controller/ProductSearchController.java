@@ -0,0 +1,71 @@
+package sia.pairschallenge.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import sia.pairschallenge.service.ProductSearchService.SearchQuery;
+import sia.pairschallenge.service.ProductSearchService.SearchResult;
+import sia.pairschallenge.service.impl.ProductSearchServiceImpl;
+
+import java.math.BigDecimal;
+
+/**
+ * Контроллер поиска продуктов по названию, описанию, цене и количеству.
+ */
+@RestController
+@RequestMapping("/api/products/search")
+public class ProductSearchController {
+
+    private final ProductSearchServiceImpl productSearchService;
+
+    @Value("${products.search.max-limit:100}")
+    private int maxLimit;
+
+    /**
+     * Конструктор для инициализации контроллера с сервисом поиска.
+     *
+     * @param productSearchService Сервис поиска продуктов.
+     */
+    public ProductSearchController(ProductSearchServiceImpl productSearchService) {
+        this.productSearchService = productSearchService;
+    }
+
+    /**
+     * Ищет продукты. Каждое слово из q должно совпасть с началом слова в названии или описании;
+     * без q продукты отбираются только по диапазонам.
+     *
+     * @param q Текст запроса.
+     * @param minPrice Нижняя граница цены включительно.
+     * @param maxPrice Верхняя граница цены включительно.
+     * @param minQuantity Нижняя граница количества включительно.
+     * @param maxQuantity Верхняя граница количества включительно.
+     * @param limit Максимальное количество продуктов в ответе (по умолчанию 20).
+     * @return Ответ с общим количеством совпадений и лучшими из них по релевантности.
+     */
+    @GetMapping
+    public ResponseEntity<SearchResult> search(@RequestParam(required = false) String q,
+                                               @RequestParam(required = false) BigDecimal minPrice,
+                                               @RequestParam(required = false) BigDecimal maxPrice,
+                                               @RequestParam(required = false) Integer minQuantity,
+                                               @RequestParam(required = false) Integer maxQuantity,
+                                               @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + maxLimit);
+        }
+        return ResponseEntity.ok(productSearchService.search(
+                new SearchQuery(q, minPrice, maxPrice, minQuantity, maxQuantity, limit)));
+    }
+
+    /**
+     * Перестраивает поисковый индекс из таблицы продуктов.
+     *
+     * @return Ответ с количеством проиндексированных продуктов.
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<String> rebuildIndex() {
+        return ResponseEntity.ok("Products indexed: " + productSearchService.rebuildIndex());
+    }
+}
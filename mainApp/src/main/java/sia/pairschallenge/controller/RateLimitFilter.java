@@ -0,0 +1,148 @@
+package sia.pairschallenge.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import sia.pairschallenge.redis.RateLimiter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Фильтр, который ограничивает частоту запросов каждого клиента к маршрутам из rate-limit.routes
+ * корзинами токенов {@link RateLimiter}, общими для всех инстансов, а если задана общая корзина маршрута,
+ * то и частоту запросов всех клиентов вместе. Клиент определяется по адресу запроса: заголовок клиента
+ * может выставить кто угодно, поэтому он принимается только от rate-limit.trusted-proxies,
+ * иначе новый заголовок на каждый запрос давал бы полную корзину и чужие переопределения.
+ * Запрос сверх ограничения получает 429 с Retry-After, не доходя до сервисов и бд.
+ * Если Redis недоступен, запрос пропускается: ограничение защищает от перегрузки,
+ * а не должно само останавливать API.
+ * Решения публикуются метрикой rate.limit.requests с маршрутом и результатом
+ * (admitted, limited, failed-open).
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LogManager.getLogger(RateLimitFilter.class);
+
+    private final RateLimiter rateLimiter;
+
+    private final RateLimitProperties properties;
+
+    private final List<MatchedRoute> routes = new ArrayList<>();
+
+    /**
+     * Конструктор фильтра.
+     *
+     * @param rateLimiter Корзины токенов в Redis.
+     * @param properties Маршруты и ограничения.
+     * @param meterRegistry Реестр метрик.
+     */
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+        for (Map.Entry<String, RateLimitProperties.Route> route : properties.getRoutes().entrySet()) {
+            routes.add(new MatchedRoute(route.getKey(), route.getValue(),
+                    PathPatternParser.defaultInstance.parse(route.getValue().getPath()),
+                    requests(meterRegistry, route.getKey(), "admitted"),
+                    requests(meterRegistry, route.getKey(), "limited"),
+                    requests(meterRegistry, route.getKey(), "failed-open")));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || routes.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        MatchedRoute route = match(request);
+        if (route == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String client = client(request);
+        long retryAfterMillis;
+        try {
+            // Сначала корзина клиента: запросы сверх его ограничения не расходуют общую корзину
+            retryAfterMillis = tryAcquire(route.name() + "::" + client, route.route().limitFor(client));
+            RateLimitProperties.Limit global = route.route().globalLimit();
+            if (retryAfterMillis == 0 && global != null) {
+                retryAfterMillis = tryAcquire(route.name(), global);
+            }
+        } catch (RuntimeException e) {
+            log.debug("Rate limiter is unavailable, request admitted", e);
+            route.failedOpen().increment();
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (retryAfterMillis > 0) {
+            route.limited().increment();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMillis + 999) / 1000));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Rate limit exceeded");
+            return;
+        }
+        route.admitted().increment();
+        filterChain.doFilter(request, response);
+    }
+
+    private MatchedRoute match(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        for (MatchedRoute route : routes) {
+            if ((route.route().getMethods().isEmpty() || route.route().getMethods().contains(request.getMethod()))
+                    && route.pattern().matches(path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private long tryAcquire(String bucket, RateLimitProperties.Limit limit) {
+        return rateLimiter.tryAcquire(bucket, limit.getCapacity(), limit.getRefillPerSecond(), limit.getPrefetch());
+    }
+
+    private String client(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        if (!properties.getTrustedProxies().contains(address)) {
+            return address;
+        }
+        String client = request.getHeader(properties.getClientHeader());
+        return client != null && !client.isBlank() ? client : address;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String route, String result) {
+        return Counter.builder("rate.limit.requests")
+                .description("Запросы к маршрутам с ограничением частоты")
+                .tag("route", route)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record MatchedRoute(String name, RateLimitProperties.Route route, PathPattern pattern,
+                                Counter admitted, Counter limited, Counter failedOpen) {
+    }
+}
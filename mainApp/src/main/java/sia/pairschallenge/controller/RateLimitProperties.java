@@ -0,0 +1,213 @@
+package sia.pairschallenge.controller;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ограничения частоты запросов к API (rate-limit.*).
+ * Каждый маршрут rate-limit.routes.&lt;имя&gt; задает шаблон пути, методы и корзину токенов на клиента;
+ * в rate-limit.routes.&lt;имя&gt;.clients.&lt;клиент&gt; корзину можно переопределить для отдельного клиента,
+ * а rate-limit.routes.&lt;имя&gt;.global задает общую корзину маршрута для всех клиентов вместе.
+ * Клиент - адрес, с которого пришел запрос; заголовку с идентификатором клиента верится только от адресов
+ * из rate-limit.trusted-proxies (шлюз, который сам проверил клиента).
+ * Запрос относится к первому подходящему маршруту, запросы вне маршрутов не ограничиваются.
+ * Локальный запас токенов инстанса настраивается в rate-limit.prefetch-ttl и rate-limit.max-local-buckets
+ * (см. {@link sia.pairschallenge.redis.RateLimiter}).
+ */
+@ConfigurationProperties("rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * Включено ли ограничение.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Заголовок с идентификатором клиента, который выставляет доверенный прокси.
+     */
+    private String clientHeader = "X-Client-Id";
+
+    /**
+     * Адреса прокси, от которых принимается заголовок клиента; от остальных клиентом считается их адрес.
+     */
+    private Set<String> trustedProxies = new LinkedHashSet<>();
+
+    /**
+     * Маршруты по имени.
+     */
+    private Map<String, Route> routes = new LinkedHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    public void setClientHeader(String clientHeader) {
+        this.clientHeader = clientHeader;
+    }
+
+    public Set<String> getTrustedProxies() {
+        return trustedProxies;
+    }
+
+    public void setTrustedProxies(Set<String> trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public Map<String, Route> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Route> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * Корзина токенов; незаданные значения у переопределения клиента и общей корзины берутся из маршрута.
+     */
+    public static class Limit {
+
+        /**
+         * Размер корзины, то есть допустимый всплеск запросов.
+         */
+        private Long capacity;
+
+        /**
+         * Пополнение корзины в секунду, то есть допустимая средняя частота запросов.
+         */
+        private Double refillPerSecond;
+
+        /**
+         * Сколько токенов инстанс берет из Redis за раз.
+         */
+        private Integer prefetch;
+
+        public Long getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(Long capacity) {
+            this.capacity = capacity;
+        }
+
+        public Double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+
+        public void setRefillPerSecond(Double refillPerSecond) {
+            this.refillPerSecond = refillPerSecond;
+        }
+
+        public Integer getPrefetch() {
+            return prefetch;
+        }
+
+        public void setPrefetch(Integer prefetch) {
+            this.prefetch = prefetch;
+        }
+    }
+
+    /**
+     * Маршрут: шаблон пути, методы и корзина токенов на клиента.
+     */
+    public static class Route extends Limit {
+
+        /**
+         * Шаблон пути, например /api/products/**.
+         */
+        private String path;
+
+        /**
+         * HTTP-методы маршрута; пусто - все методы.
+         */
+        private Set<String> methods = new LinkedHashSet<>();
+
+        /**
+         * Переопределения корзины для отдельных клиентов.
+         */
+        private Map<String, Limit> clients = new LinkedHashMap<>();
+
+        /**
+         * Общая корзина всех клиентов маршрута; не задана - общего ограничения нет.
+         */
+        private Limit global;
+
+        public Route() {
+            setCapacity(100L);
+            setRefillPerSecond(50.0);
+            setPrefetch(1);
+        }
+
+        /**
+         * Возвращает корзину клиента с учетом переопределений.
+         *
+         * @param client Идентификатор клиента.
+         * @return Корзина, в которой незаданные значения взяты из маршрута.
+         */
+        public Limit limitFor(String client) {
+            Limit override = clients.get(client);
+            return override == null ? this : merge(override);
+        }
+
+        /**
+         * Возвращает общую корзину маршрута.
+         *
+         * @return Корзина, в которой незаданные значения взяты из маршрута, или null, если ее нет.
+         */
+        public Limit globalLimit() {
+            return global == null ? null : merge(global);
+        }
+
+        private Limit merge(Limit override) {
+            Limit limit = new Limit();
+            limit.setCapacity(override.getCapacity() != null ? override.getCapacity() : getCapacity());
+            limit.setRefillPerSecond(override.getRefillPerSecond() != null
+                    ? override.getRefillPerSecond() : getRefillPerSecond());
+            limit.setPrefetch(override.getPrefetch() != null ? override.getPrefetch() : getPrefetch());
+            return limit;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public Set<String> getMethods() {
+            return methods;
+        }
+
+        public void setMethods(Set<String> methods) {
+            this.methods = methods;
+        }
+
+        public Map<String, Limit> getClients() {
+            return clients;
+        }
+
+        public void setClients(Map<String, Limit> clients) {
+            this.clients = clients;
+        }
+
+        public Limit getGlobal() {
+            return global;
+        }
+
+        public void setGlobal(Limit global) {
+            this.global = global;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package sia.pairschallenge.kafka;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -7,15 +8,22 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import sia.productevent.event.ProductEvent;
 import org.apache.kafka.common.serialization.StringSerializer;
-import org.springframework.kafka.support.serializer.JsonSerializer;
+import sia.productevent.serialization.ProductEventSerializer;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Конфигурация для настройки Kafka Producer.
  * Этот класс настраивает ProducerFactory и KafkaTemplate для отправки сообщений в Kafka.
+ * Параметры пропускной способности (linger, размер пакета, сжатие, буфер, число запросов в полете)
+ * задаются свойствами kafka.producer.*; идемпотентность сохраняет порядок сообщений
+ * одной партиции при повторных отправках.
+ * Метрики клиента (задержка и ошибки отправки, размер пакетов) публикуются в Micrometer как kafka.producer.*,
+ * время отправки через KafkaTemplate - как spring.kafka.template.
  */
 @Configuration
 public class KafkaProducerConfig {
@@ -23,24 +31,49 @@ public class KafkaProducerConfig {
     @Value(value = "${spring.kafka.bootstrap-servers}")
     private String bootstrapAddress;
 
+    @Value("${kafka.producer.acks:all}")
+    private String acks;
+
+    @Value("${kafka.producer.enable-idempotence:true}")
+    private boolean enableIdempotence;
+
+    @Value("${kafka.producer.linger-ms:10}")
+    private int lingerMs;
+
+    @Value("${kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
+    @Value("${kafka.producer.buffer-memory:67108864}")
+    private long bufferMemory;
+
+    @Value("${kafka.producer.max-in-flight-requests:5}")
+    private int maxInFlightRequests;
+
     /**
      * Создает и настраивает ProducerFactory для отправки сообщений в Kafka.
      *
+     * @param meterRegistry Реестр метрик для метрик клиента Kafka.
      * @return Настроенный ProducerFactory для работы с ProductEvent.
      */
     @Bean
-    public ProducerFactory<String, ProductEvent> producerFactory() {
-        return new DefaultKafkaProducerFactory<>(producerConfigs());
+    public ProducerFactory<String, ProductEvent> producerFactory(MeterRegistry meterRegistry) {
+        DefaultKafkaProducerFactory<String, ProductEvent> factory = new DefaultKafkaProducerFactory<>(producerConfigs());
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
     }
 
     /**
      * Создает и настраивает KafkaTemplate для отправки сообщений в Kafka.
      *
+     * @param producerFactory ProducerFactory для работы с ProductEvent.
      * @return Настроенный KafkaTemplate для работы с ProductEvent.
      */
     @Bean
-    public KafkaTemplate<String, ProductEvent> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    public KafkaTemplate<String, ProductEvent> kafkaTemplate(ProducerFactory<String, ProductEvent> producerFactory) {
+        return new KafkaTemplate<>(producerFactory);
     }
 
     /**
@@ -49,10 +82,17 @@ public class KafkaProducerConfig {
      * @return Карта с параметрами конфигурации для Kafka Producer.
      */
     private Map<String, Object> producerConfigs() {
-        return Map.of(
-                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress,
-                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
-                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class
-        );
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
+        configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ProductEventSerializer.class);
+        configs.put(ProducerConfig.ACKS_CONFIG, acks);
+        configs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        configs.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configs.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        configs.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+        configs.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlightRequests);
+        return configs;
     }
 }
\ No newline at end of file
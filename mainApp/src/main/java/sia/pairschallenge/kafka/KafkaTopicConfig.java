@@ -20,8 +20,12 @@ public class KafkaTopicConfig {
     @Value(value = "${spring.kafka.bootstrap-servers}")
     private String bootstrapAddress;
 
+    @Value("${kafka.admin.auto-create:true}")
+    private boolean autoCreate;
+
     /**
      * Создает и настраивает KafkaAdmin для управления Kafka.
+     * При kafka.admin.auto-create=false топики не проверяются при запуске, и запуск не ждет брокер.
      *
      * @return Настроенный KafkaAdmin.
      */
@@ -29,7 +33,9 @@ public class KafkaTopicConfig {
     public KafkaAdmin kafkaAdmin() {
         Map<String, Object> configs = new HashMap<>();
         configs.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
-        return new KafkaAdmin(configs);
+        KafkaAdmin kafkaAdmin = new KafkaAdmin(configs);
+        kafkaAdmin.setAutoCreate(autoCreate);
+        return kafkaAdmin;
     }
 
     /**
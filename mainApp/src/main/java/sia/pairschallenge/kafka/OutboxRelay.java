@@ -0,0 +1,232 @@
+package sia.pairschallenge.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.kafka.common.InvalidRecordException;
+import org.apache.kafka.common.errors.InvalidTopicException;
+import org.apache.kafka.common.errors.RecordBatchTooLargeException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import sia.pairschallenge.repository.OutboxEvent;
+import sia.pairschallenge.repository.OutboxEventRepository;
+import sia.productevent.event.ProductEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Фоновый ретранслятор событий из таблицы outbox в Kafka.
+ * Забирает события порциями в порядке записи, отправляет порцию целиком,
+ * дожидается подтверждения брокера и только после этого удаляет отправленные события.
+ * Если отправка не удалась, транзакция откатывается и порция будет отправлена повторно
+ * (доставка at-least-once).
+ * <p>
+ * Порцию отправляет один ретранслятор за раз (advisory-блокировка {@link OutboxEventRepository#tryLockRelay},
+ * общая с reactiveApp), поэтому события одного продукта уходят в Kafka в порядке изменений.
+ * <p>
+ * Событие, которое брокер отклоняет (слишком большое, не читается и т.п.), не задерживает остальные:
+ * отправленные события порции удаляются, а у отклоненного считаются попытки, и после outbox.relay.max-attempts
+ * оно переносится в outbox_event_dead_letter. Такое событие может прийти позже следующих событий продукта
+ * или не прийти совсем; потребители отбрасывают устаревшие события по версии продукта.
+ * <p>
+ * Время отправки порции до подтверждения брокера и число отправленных, неотправленных и перенесенных
+ * событий публикуются метриками outbox.relay.*.
+ */
+@Component
+@Lazy(false)
+public class OutboxRelay {
+
+    private static final Logger log = LogManager.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final KafkaTemplate<String, ProductEvent> kafkaTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final Timer sendTime;
+
+    private final Counter sentEvents;
+
+    private final Counter failedEvents;
+
+    private final Counter deadLetteredEvents;
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${outbox.relay.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${outbox.relay.max-attempts:10}")
+    private int maxAttempts;
+
+    /**
+     * Конструктор ретранслятора.
+     *
+     * @param outboxEventRepository Репозиторий событий outbox.
+     * @param kafkaTemplate Шаблон для отправки сообщений в Kafka.
+     * @param transactionTemplate Шаблон транзакций, в которой порция блокируется и удаляется.
+     * @param objectMapper ObjectMapper для чтения сохраненных событий.
+     * @param meterRegistry Реестр метрик.
+     */
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, KafkaTemplate<String, ProductEvent> kafkaTemplate,
+                       TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.sendTime = Timer.builder("outbox.relay.send.time")
+                .description("Время отправки порции событий до подтверждения брокером")
+                .register(meterRegistry);
+        this.sentEvents = events(meterRegistry, "sent");
+        this.failedEvents = events(meterRegistry, "failed");
+        this.deadLetteredEvents = events(meterRegistry, "dead-lettered");
+    }
+
+    /**
+     * Отправляет накопленные события порциями, пока outbox не опустеет
+     * или пока очередная порция не завершится ошибкой или отказом брокера принять событие:
+     * отклоненное событие повторяется при следующем запуске.
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.poll-interval-ms:500}")
+    public void relay() {
+        try {
+            Integer sent;
+            do {
+                sent = transactionTemplate.execute(status -> relayBatch());
+            } while (sent != null && sent == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Outbox relay failed, events will be retried", e);
+        }
+    }
+
+    private int relayBatch() {
+        if (!outboxEventRepository.tryLockRelay()) {
+            return 0;
+        }
+        List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Timer.Sample sample = Timer.start();
+        List<CompletableFuture<?>> sends = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            sends.add(send(event));
+        }
+        awaitAll(sends);
+
+        List<OutboxEvent> sent = new ArrayList<>(batch.size());
+        Map<OutboxEvent, Throwable> rejected = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            CompletableFuture<?> send = sends.get(i);
+            if (!send.isCompletedExceptionally()) {
+                sent.add(batch.get(i));
+            } else if (isRejected(send.exceptionNow())) {
+                rejected.put(batch.get(i), send.exceptionNow());
+            } else {
+                failedEvents.increment(batch.size());
+                throw new IllegalStateException("Outbox batch of " + batch.size() + " events was not acknowledged",
+                        send.exceptionNow());
+            }
+        }
+        sample.stop(sendTime);
+        sentEvents.increment(sent.size());
+
+        outboxEventRepository.deleteAllInBatch(sent);
+        rejected.forEach(this::reject);
+        return sent.size();
+    }
+
+    private CompletableFuture<?> send(OutboxEvent event) {
+        try {
+            ProductEvent payload = objectMapper.readValue(event.getPayload(), ProductEvent.class);
+            // Ключ по идентификатору продукта: все события продукта попадают в одну партицию и читаются по порядку
+            return kafkaTemplate.send(event.getTopic(), String.valueOf(event.getProductId()), payload);
+        } catch (JsonProcessingException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Ждет подтверждения всех отправок. Отдельные отказы разбираются после ожидания,
+     * а если брокер не ответил вовремя, откатывается вся порция.
+     */
+    private void awaitAll(List<CompletableFuture<?>> sends) {
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // Отказы отдельных событий
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedEvents.increment(sends.size());
+            throw new IllegalStateException("Interrupted while sending outbox events", e);
+        } catch (TimeoutException e) {
+            failedEvents.increment(sends.size());
+            throw new IllegalStateException("Outbox batch of " + sends.size() + " events was not acknowledged", e);
+        }
+    }
+
+    /**
+     * Отклонено ли событие само по себе: повторная отправка того же события закончится так же,
+     * в отличие от недоступности брокера или закрытого продюсера.
+     */
+    private static boolean isRejected(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonProcessingException
+                    || cause instanceof SerializationException
+                    || cause instanceof RecordTooLargeException
+                    || cause instanceof RecordBatchTooLargeException
+                    || cause instanceof InvalidRecordException
+                    || cause instanceof InvalidTopicException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Учитывает отклоненную попытку; после maxAttempts попыток переносит событие в outbox_event_dead_letter.
+     */
+    private void reject(OutboxEvent event, Throwable failure) {
+        failedEvents.increment();
+        int attempt = event.getAttempts() + 1;
+        if (attempt >= maxAttempts) {
+            log.error("Outbox event {} rejected {} times, moved to outbox_event_dead_letter", event, attempt, failure);
+            outboxEventRepository.moveToDeadLetter(event.getId(), failure.toString());
+            deadLetteredEvents.increment();
+        } else {
+            log.warn("Outbox event {} rejected, attempt {} of {}", event, attempt, maxAttempts, failure);
+            outboxEventRepository.incrementAttempts(event.getId());
+        }
+    }
+
+    private static Counter events(MeterRegistry registry, String result) {
+        return Counter.builder("outbox.relay.events")
+                .description("События outbox, отправленные в Kafka, не подтвержденные брокером "
+                        + "и перенесенные в outbox_event_dead_letter")
+                .tag("result", result)
+                .register(registry);
+    }
+}
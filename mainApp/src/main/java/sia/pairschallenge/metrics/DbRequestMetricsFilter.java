@@ -0,0 +1,69 @@
+package sia.pairschallenge.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фильтр, который для каждого HTTP-запроса записывает число запросов к бд и их суммарное время.
+ * Метрики помечены шаблоном пути и методом так же, как http.server.requests, поэтому их можно
+ * сопоставить с задержкой самого эндпоинта: рост числа запросов на один вызов указывает на N+1
+ * или промахи кэша.
+ */
+@Component
+public class DbRequestMetricsFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Конструктор фильтра.
+     *
+     * @param meterRegistry Реестр метрик.
+     */
+    public DbRequestMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        JdbcStatementListener.startCollecting();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            JdbcStatementListener.Statistics statistics = JdbcStatementListener.stopCollecting();
+            String uri = uri(request);
+            String method = request.getMethod();
+            DistributionSummary.builder("http.server.requests.db.statements")
+                    .description("Число запросов к бд за один HTTP-запрос")
+                    .tag("uri", uri)
+                    .tag("method", method)
+                    .register(meterRegistry)
+                    .record(statistics.getStatements());
+            Timer.builder("http.server.requests.db.time")
+                    .description("Суммарное время запросов к бд за один HTTP-запрос")
+                    .tag("uri", uri)
+                    .tag("method", method)
+                    .register(meterRegistry)
+                    .record(statistics.getNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Шаблон пути вместо фактического, чтобы id в пути не размножали метрики.
+     */
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
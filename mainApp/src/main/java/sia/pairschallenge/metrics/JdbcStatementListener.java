@@ -0,0 +1,84 @@
+package sia.pairschallenge.metrics;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Слушатель сессий Hibernate, который считает выполненные JDBC-запросы и их время в текущем потоке.
+ * Подключается свойством hibernate.session.events.auto, поэтому Hibernate создает его для каждой сессии.
+ * <p>
+ * Подсчет идет только между {@link #startCollecting()} и {@link #stopCollecting()}, то есть в пределах
+ * HTTP-запроса ({@link DbRequestMetricsFilter}); запросы фоновых задач не учитываются.
+ * Пакетное выполнение (executeBatch) считается одним запросом к бд.
+ */
+public class JdbcStatementListener implements SessionEventListener {
+
+    private static final ThreadLocal<Statistics> CURRENT = new ThreadLocal<>();
+
+    private long statementStart;
+
+    private long batchStart;
+
+    /**
+     * Начинает подсчет запросов к бд в текущем потоке.
+     */
+    public static void startCollecting() {
+        CURRENT.set(new Statistics());
+    }
+
+    /**
+     * Завершает подсчет запросов к бд в текущем потоке.
+     *
+     * @return Число запросов и их суммарное время с момента {@link #startCollecting()}.
+     */
+    public static Statistics stopCollecting() {
+        Statistics statistics = CURRENT.get();
+        CURRENT.remove();
+        return statistics != null ? statistics : new Statistics();
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        record(statementStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        record(batchStart);
+    }
+
+    private static void record(long startNanos) {
+        Statistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.statements++;
+            statistics.nanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    /**
+     * Статистика запросов к бд, накопленная в одном потоке.
+     */
+    public static class Statistics {
+
+        private int statements;
+
+        private long nanos;
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package sia.pairschallenge.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Фильтр, который измеряет, как быстро инстанс после запуска начинает обслуживать запросы.
+ * Время считается от запуска JVM, как application.started.time и application.ready.time Spring Boot:
+ * <ul>
+ *     <li>application.first.request.time - когда пришел первый запрос;</li>
+ *     <li>application.warm.time - когда p99 задержки очередных startup.warm.window запросов впервые
+ *     не превысил startup.warm.p99-target, то есть инстанс прогрелся (JIT, кэши, пул соединений).</li>
+ * </ul>
+ * До этого момента метрики равны NaN. Запросы к actuator (пробы, сбор метрик) не учитываются.
+ * После прогрева фильтр только пропускает запросы дальше.
+ */
+@Component
+public class StartupMetricsFilter extends OncePerRequestFilter {
+
+    private final LongSupplier uptimeMillis;
+
+    private final String actuatorPath;
+
+    private final long p99TargetNanos;
+
+    private final long[] window;
+
+    private int windowCount;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile double firstRequestMillis = Double.NaN;
+
+    private volatile double warmMillis = Double.NaN;
+
+    private volatile boolean warm;
+
+    /**
+     * Конструктор фильтра.
+     *
+     * @param meterRegistry Реестр метрик.
+     * @param actuatorPath Путь actuator, запросы к которому не учитываются.
+     * @param p99Target Задержка p99, при которой инстанс считается прогретым.
+     * @param windowSize Число запросов, по которому считается p99.
+     */
+    @Autowired
+    public StartupMetricsFilter(MeterRegistry meterRegistry,
+                                @Value("${management.endpoints.web.base-path:/actuator}") String actuatorPath,
+                                @Value("${startup.warm.p99-target:50ms}") Duration p99Target,
+                                @Value("${startup.warm.window:1000}") int windowSize) {
+        this(meterRegistry, actuatorPath, p99Target, windowSize, ManagementFactory.getRuntimeMXBean()::getUptime);
+    }
+
+    StartupMetricsFilter(MeterRegistry meterRegistry, String actuatorPath, Duration p99Target, int windowSize,
+                         LongSupplier uptimeMillis) {
+        this.uptimeMillis = uptimeMillis;
+        this.actuatorPath = actuatorPath;
+        this.p99TargetNanos = p99Target.toNanos();
+        this.window = new long[windowSize];
+        TimeGauge.builder("application.first.request.time", this, TimeUnit.MILLISECONDS, f -> f.firstRequestMillis)
+                .description("Время от запуска JVM до первого запроса")
+                .register(meterRegistry);
+        TimeGauge.builder("application.warm.time", this, TimeUnit.MILLISECONDS, f -> f.warmMillis)
+                .description("Время от запуска JVM до первого окна запросов с p99 не выше startup.warm.p99-target")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return warm || request.getRequestURI().startsWith(actuatorPath);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (Double.isNaN(firstRequestMillis)) {
+            firstRequest();
+        }
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    private void firstRequest() {
+        lock.lock();
+        try {
+            if (Double.isNaN(firstRequestMillis)) {
+                firstRequestMillis = uptimeMillis.getAsLong();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Копит задержки окна; когда окно заполнено, сравнивает его p99 с целью и начинает новое окно.
+     */
+    private void record(long nanos) {
+        lock.lock();
+        try {
+            if (warm) {
+                return;
+            }
+            window[windowCount++] = nanos;
+            if (windowCount < window.length) {
+                return;
+            }
+            windowCount = 0;
+            long[] sorted = window.clone();
+            Arrays.sort(sorted);
+            long p99 = sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+            if (p99 <= p99TargetNanos) {
+                warmMillis = uptimeMillis.getAsLong();
+                warm = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
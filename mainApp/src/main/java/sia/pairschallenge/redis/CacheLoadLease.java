@@ -0,0 +1,96 @@
+package sia.pairschallenge.redis;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Короткая аренда в Redis на загрузку записи кэша из бд.
+ * Пока аренда у одного инстанса, остальные не идут в бд за тем же ключом, а ждут,
+ * пока значение появится в кэше. Аренда истекает сама, если владелец упал, не освободив ее.
+ */
+public class CacheLoadLease {
+
+    private static final String KEY_PREFIX = "lease::";
+
+    /**
+     * Удаляет аренду, только если она все еще принадлежит владельцу токена,
+     * чтобы не снять чужую аренду, выданную после истечения нашей.
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final Duration leaseTime;
+
+    private final Duration waitTime;
+
+    /**
+     * Конструктор аренды загрузки.
+     *
+     * @param redisTemplate Шаблон для команд Redis.
+     * @param leaseTime Время, на которое выдается аренда; должно покрывать загрузку из бд.
+     * @param waitTime Сколько ждать значения от владельца аренды, прежде чем загрузить самому.
+     */
+    public CacheLoadLease(StringRedisTemplate redisTemplate, Duration leaseTime, Duration waitTime) {
+        this.redisTemplate = redisTemplate;
+        this.leaseTime = leaseTime;
+        this.waitTime = waitTime;
+    }
+
+    /**
+     * Пытается взять аренду на загрузку ключа (SET NX PX).
+     *
+     * @param cacheName Имя кэша.
+     * @param key Ключ записи.
+     * @return Токен аренды для {@link #release}, или null, если аренда уже у другого загрузчика.
+     */
+    public String tryAcquire(String cacheName, Object key) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(leaseKey(cacheName, key), token, leaseTime);
+        return Boolean.TRUE.equals(acquired) ? token : null;
+    }
+
+    /**
+     * Освобождает аренду, если она все еще принадлежит владельцу токена.
+     *
+     * @param cacheName Имя кэша.
+     * @param key Ключ записи.
+     * @param token Токен, полученный из {@link #tryAcquire}.
+     */
+    public void release(String cacheName, Object key, String token) {
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey(cacheName, key)), token);
+    }
+
+    /**
+     * Периодически опрашивает кэш, пока владелец аренды не положит в него значение.
+     *
+     * @param lookup Чтение записи из кэша.
+     * @return Появившееся значение, или null, если оно не появилось за время ожидания.
+     */
+    public <T> T await(Supplier<T> lookup) {
+        long deadline = System.nanoTime() + waitTime.toNanos();
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(POLL_INTERVAL.toNanos());
+            T value = lookup.get();
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String leaseKey(String cacheName, Object key) {
+        return KEY_PREFIX + cacheName + "::" + key;
+    }
+}
@@ -0,0 +1,146 @@
+package sia.pairschallenge.redis;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Политики кэшей Redis (cache.redis.*).
+ * Значения верхнего уровня действуют для всех кэшей, а в cache.redis.caches.&lt;имя&gt;
+ * их можно переопределить для отдельного кэша.
+ */
+@ConfigurationProperties("cache.redis")
+public class CachePolicyProperties {
+
+    /**
+     * Время жизни записи.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * Случайная добавка к времени жизни от 0 до указанной, чтобы записи,
+     * положенные одновременно (например, после прогрева), не истекали одновременно.
+     */
+    private Duration ttlJitter = Duration.ZERO;
+
+    /**
+     * Префикс перед именем кэша в ключах Redis, например для разделения окружений в одном Redis.
+     */
+    private String keyPrefix = "";
+
+    /**
+     * Время жизни закэшированного отсутствия значения (null).
+     */
+    private Duration negativeTtl = Duration.ofSeconds(10);
+
+    /**
+     * Размер закодированного продукта в байтах, начиная с которого он сжимается gzip; 0 отключает сжатие.
+     */
+    private int compressionThreshold = 512;
+
+    /**
+     * Переопределения для отдельных кэшей по имени.
+     */
+    private Map<String, Policy> caches = new LinkedHashMap<>();
+
+    /**
+     * Возвращает политику кэша с учетом переопределений.
+     *
+     * @param cacheName Имя кэша.
+     * @return Политика, в которой незаданные значения взяты с верхнего уровня.
+     */
+    public Policy policyFor(String cacheName) {
+        Policy override = caches.getOrDefault(cacheName, new Policy());
+        Policy policy = new Policy();
+        policy.setTtl(override.getTtl() != null ? override.getTtl() : ttl);
+        policy.setTtlJitter(override.getTtlJitter() != null ? override.getTtlJitter() : ttlJitter);
+        policy.setKeyPrefix(override.getKeyPrefix() != null ? override.getKeyPrefix() : keyPrefix);
+        return policy;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public Duration getTtlJitter() {
+        return ttlJitter;
+    }
+
+    public void setTtlJitter(Duration ttlJitter) {
+        this.ttlJitter = ttlJitter;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+
+    public Duration getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public void setNegativeTtl(Duration negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public Map<String, Policy> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(Map<String, Policy> caches) {
+        this.caches = caches;
+    }
+
+    /**
+     * Политика отдельного кэша; незаданные значения берутся с верхнего уровня.
+     */
+    public static class Policy {
+
+        private Duration ttl;
+
+        private Duration ttlJitter;
+
+        private String keyPrefix;
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getTtlJitter() {
+            return ttlJitter;
+        }
+
+        public void setTtlJitter(Duration ttlJitter) {
+            this.ttlJitter = ttlJitter;
+        }
+
+        public String getKeyPrefix() {
+            return keyPrefix;
+        }
+
+        public void setKeyPrefix(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package sia.pairschallenge.redis;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учет самых запрашиваемых ключей кэша, общий для всех инстансов, чтобы при запуске прогреть кэш ими.
+ * <pre>
+ * hot::{cache}            sorted set ключ -> вес обращений, хранит не больше maxSize ключей
+ * hot::{cache}::decayed-at время последнего затухания весов, мс
+ * </pre>
+ * Обращение только увеличивает локальный счетчик, в Redis счетчики переносятся раз в
+ * cache.hot-keys.flush-interval-ms одним скриптом. Веса затухают вдвое за halfLife, поэтому наверху
+ * оказываются ключи, которые запрашивали недавно, а не за все время.
+ */
+public class HotKeyTracker {
+
+    private static final Logger log = LogManager.getLogger(HotKeyTracker.class);
+
+    private static final String KEY_PREFIX = "hot::";
+
+    /**
+     * Уменьшает веса пропорционально прошедшему времени, добавляет накопленные обращения
+     * и оставляет maxSize самых тяжелых ключей.
+     */
+    private static final RedisScript<Long> FLUSH_SCRIPT = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local decayedAt = tonumber(redis.call('get', KEYS[2]) or ARGV[1])
+            if now > decayedAt then
+                local weight = 0.5 ^ ((now - decayedAt) / tonumber(ARGV[2]))
+                redis.call('zunionstore', KEYS[1], 1, KEYS[1], 'WEIGHTS', weight)
+            end
+            redis.call('set', KEYS[2], math.max(now, decayedAt))
+            for i = 4, #ARGV, 2 do
+                redis.call('zincrby', KEYS[1], ARGV[i + 1], ARGV[i])
+            end
+            redis.call('zremrangebyrank', KEYS[1], 0, -tonumber(ARGV[3]) - 1)
+            return redis.call('zcard', KEYS[1])
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final String key;
+
+    private final String decayedAtKey;
+
+    private final int maxSize;
+
+    private final Duration halfLife;
+
+    private final Map<Integer, LongAdder> hits = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор учета ключей.
+     *
+     * @param redisTemplate Шаблон для команд Redis.
+     * @param cacheName Имя кэша, ключи которого учитываются.
+     * @param maxSize Сколько самых запрашиваемых ключей хранится; столько же ключей копится локально между переносами.
+     * @param halfLife За сколько вес ключа без обращений уменьшается вдвое.
+     */
+    public HotKeyTracker(StringRedisTemplate redisTemplate, String cacheName, int maxSize, Duration halfLife) {
+        this.redisTemplate = redisTemplate;
+        this.key = KEY_PREFIX + cacheName;
+        this.decayedAtKey = key + "::decayed-at";
+        this.maxSize = maxSize;
+        this.halfLife = halfLife;
+    }
+
+    /**
+     * Учитывает обращение к ключу. Не обращается к Redis; новые ключи сверх maxSize до переноса не учитываются.
+     */
+    public void record(int id) {
+        LongAdder counter = hits.get(id);
+        if (counter == null) {
+            if (hits.size() >= maxSize) {
+                return;
+            }
+            counter = hits.computeIfAbsent(id, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Переносит накопленные обращения в Redis. Обращения, учтенные во время переноса, могут потеряться:
+     * учет приблизительный.
+     */
+    @Scheduled(fixedDelayString = "${cache.hot-keys.flush-interval-ms:10000}")
+    public void flush() {
+        if (hits.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(hits.size() * 2 + 3);
+        args.add(String.valueOf(System.currentTimeMillis()));
+        args.add(String.valueOf(halfLife.toMillis()));
+        args.add(String.valueOf(maxSize));
+        for (Iterator<Map.Entry<Integer, LongAdder>> it = hits.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, LongAdder> entry = it.next();
+            it.remove();
+            args.add(entry.getKey().toString());
+            args.add(String.valueOf(entry.getValue().sum()));
+        }
+        try {
+            redisTemplate.execute(FLUSH_SCRIPT, List.of(key, decayedAtKey), args.toArray());
+        } catch (RuntimeException e) {
+            log.warn("Hot keys flush failed, {} keys dropped", (args.size() - 3) / 2, e);
+        }
+    }
+
+    /**
+     * Самые запрашиваемые ключи по убыванию веса.
+     *
+     * @param limit Сколько ключей вернуть.
+     */
+    public List<Integer> top(int limit) {
+        Set<String> ids = redisTemplate.opsForZSet().reverseRange(key, 0, limit - 1L);
+        if (ids == null) {
+            return List.of();
+        }
+        return ids.stream().map(Integer::valueOf).toList();
+    }
+}
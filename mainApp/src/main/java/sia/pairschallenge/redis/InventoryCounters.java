@@ -0,0 +1,206 @@
+package sia.pairschallenge.redis;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Остатки продуктов в Redis для частых резервирований (распродажи), которые не должны упираться
+ * в блокировку строки product в Postgres.
+ * <pre>
+ * inventory::{id}       доступный остаток продукта, живет counterTtl с последнего изменения
+ * inventory::pending    hash id -> накопленное изменение остатка, еще не записанное в бд
+ * inventory::flushing   hash id -> изменения, которые сейчас записываются в бд
+ * inventory::generations hash id -> номер изменения pending/flushing продукта, по нему проверяется
+ *                        заполнение остатка
+ * </pre>
+ * Резервирование и возврат меняют остаток и pending одним скриптом, поэтому выполняются атомарно
+ * и не уводят остаток ниже нуля. Изменения попадают в бд позже, пачкой на продукт
+ * (см. {@link #takePending()}), запись в бд держит аренду, чтобы ее выполнял один инстанс.
+ * Номер изменения свой у каждого продукта: запись в бд или сброс одного продукта не мешает заполнять остатки других.
+ */
+public class InventoryCounters {
+
+    /**
+     * Остатка продукта нет в Redis, его нужно заполнить через {@link #seed}.
+     */
+    public static final long MISSING = -1;
+
+    /**
+     * Остатка не хватает для резервирования.
+     */
+    public static final long INSUFFICIENT = -2;
+
+    private static final String KEY_PREFIX = "inventory::";
+
+    private static final String PENDING = KEY_PREFIX + "pending";
+
+    private static final String FLUSHING = KEY_PREFIX + "flushing";
+
+    private static final String GENERATIONS = KEY_PREFIX + "generations";
+
+    private static final String FLUSH_LEASE_KEY = "flush";
+
+    private static final RedisScript<Long> CHANGE_SCRIPT = new DefaultRedisScript<>("""
+            local available = redis.call('get', KEYS[1])
+            if not available then return -1 end
+            local remaining = tonumber(available) + tonumber(ARGV[2])
+            if remaining < 0 then return -2 end
+            redis.call('set', KEYS[1], remaining, 'PX', ARGV[3])
+            redis.call('hincrby', KEYS[2], ARGV[1], ARGV[2])
+            return remaining
+            """, Long.class);
+
+    /**
+     * Заполняет остаток значением из бд плюс еще не записанные изменения. Отказывает, если с чтения бд
+     * изменения этого продукта успели забрать или записать (его номер изменился) или его запись еще идет:
+     * тогда значение из бд могло не учесть их.
+     */
+    private static final RedisScript<Long> SEED_SCRIPT = new DefaultRedisScript<>("""
+            if (redis.call('hget', KEYS[4], ARGV[1]) or '0') ~= ARGV[3] then return 0 end
+            if redis.call('hexists', KEYS[3], ARGV[1]) == 1 then return 0 end
+            local pending = tonumber(redis.call('hget', KEYS[2], ARGV[1]) or '0')
+            redis.call('set', KEYS[1], tonumber(ARGV[2]) + pending, 'NX', 'PX', ARGV[4])
+            return 1
+            """, Long.class);
+
+    private static final RedisScript<List> TAKE_PENDING_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('exists', KEYS[2]) == 0 then
+                if redis.call('exists', KEYS[1]) == 0 then return {} end
+                redis.call('rename', KEYS[1], KEYS[2])
+                for _, id in ipairs(redis.call('hkeys', KEYS[2])) do redis.call('hincrby', KEYS[3], id, 1) end
+            end
+            return redis.call('hgetall', KEYS[2])
+            """, List.class);
+
+    private static final RedisScript<Long> COMPLETE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('hincrby', KEYS[2], ARGV[1], 1)
+            return redis.call('hdel', KEYS[1], ARGV[1])
+            """, Long.class);
+
+    private static final RedisScript<Long> RESET_SCRIPT = new DefaultRedisScript<>("""
+            for i = 2, #KEYS do
+                redis.call('hincrby', KEYS[1], ARGV[i - 1], 1)
+                redis.call('del', KEYS[i])
+            end
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final Duration counterTtl;
+
+    private final CacheLoadLease flushLease;
+
+    /**
+     * Конструктор остатков.
+     *
+     * @param redisTemplate Шаблон для команд Redis.
+     * @param counterTtl Сколько остаток живет без изменений; потом он заполняется из бд заново.
+     * @param flushLeaseTime Время аренды записи в бд; должно покрывать запись всех накопленных изменений.
+     */
+    public InventoryCounters(StringRedisTemplate redisTemplate, Duration counterTtl, Duration flushLeaseTime) {
+        this.redisTemplate = redisTemplate;
+        this.counterTtl = counterTtl;
+        this.flushLease = new CacheLoadLease(redisTemplate, flushLeaseTime, Duration.ZERO);
+    }
+
+    /**
+     * Атомарно меняет остаток продукта и запоминает изменение для записи в бд.
+     *
+     * @param id Идентификатор продукта.
+     * @param delta Изменение: отрицательное - резервирование, положительное - возврат.
+     * @return Остаток после изменения, {@link #MISSING} или {@link #INSUFFICIENT}.
+     */
+    public long change(int id, long delta) {
+        Long result = redisTemplate.execute(CHANGE_SCRIPT, List.of(counterKey(id), PENDING),
+                String.valueOf(id), String.valueOf(delta), String.valueOf(counterTtl.toMillis()));
+        return result == null ? MISSING : result;
+    }
+
+    /**
+     * Номер изменения продукта, который нужно прочитать до чтения остатка из бд и передать в {@link #seed}.
+     *
+     * @param id Идентификатор продукта.
+     */
+    public String generation(int id) {
+        Object generation = redisTemplate.opsForHash().get(GENERATIONS, String.valueOf(id));
+        return generation == null ? "0" : generation.toString();
+    }
+
+    /**
+     * Заполняет остаток продукта, если его еще нет.
+     *
+     * @param id Идентификатор продукта.
+     * @param quantity Остаток, прочитанный из бд.
+     * @param generation Номер изменения из {@link #generation(int)}, прочитанный до бд.
+     * @return false, если остаток нельзя заполнить сейчас: с чтения бд изменения продукта записывались в бд.
+     */
+    public boolean seed(int id, long quantity, String generation) {
+        Long result = redisTemplate.execute(SEED_SCRIPT,
+                List.of(counterKey(id), PENDING, FLUSHING, GENERATIONS),
+                String.valueOf(id), String.valueOf(quantity), generation, String.valueOf(counterTtl.toMillis()));
+        return result != null && result == 1;
+    }
+
+    /**
+     * Удаляет остатки продуктов, например после записи количества в обход резервирований.
+     * Накопленные изменения сохраняются и будут записаны в бд, следующее резервирование заполнит остаток заново.
+     * Номера изменения продуктов увеличиваются, чтобы заполнение, прочитавшее бд до этой записи,
+     * не вернуло старый остаток.
+     */
+    public void reset(Collection<Integer> ids) {
+        List<String> keys = new ArrayList<>(ids.size() + 1);
+        keys.add(GENERATIONS);
+        ids.forEach(id -> keys.add(counterKey(id)));
+        redisTemplate.execute(RESET_SCRIPT, keys, ids.stream().map(String::valueOf).toArray());
+    }
+
+    /**
+     * Забирает накопленные изменения для записи в бд. Если предыдущая запись не завершилась,
+     * сначала возвращаются ее незаписанные изменения.
+     *
+     * @return Изменение остатка по идентификатору продукта.
+     */
+    public Map<Integer, Long> takePending() {
+        List<?> entries = redisTemplate.execute(TAKE_PENDING_SCRIPT, List.of(PENDING, FLUSHING, GENERATIONS));
+        Map<Integer, Long> deltas = new HashMap<>();
+        if (entries != null) {
+            for (int i = 0; i + 1 < entries.size(); i += 2) {
+                deltas.put(Integer.valueOf(entries.get(i).toString()), Long.valueOf(entries.get(i + 1).toString()));
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Отмечает, что изменение продукта из {@link #takePending()} записано в бд.
+     */
+    public void complete(int id) {
+        redisTemplate.execute(COMPLETE_SCRIPT, List.of(FLUSHING, GENERATIONS), String.valueOf(id));
+    }
+
+    /**
+     * Берет аренду на запись изменений в бд.
+     *
+     * @return Токен для {@link #releaseFlush}, или null, если запись выполняет другой инстанс.
+     */
+    public String tryAcquireFlush() {
+        return flushLease.tryAcquire("inventory", FLUSH_LEASE_KEY);
+    }
+
+    public void releaseFlush(String token) {
+        flushLease.release("inventory", FLUSH_LEASE_KEY, token);
+    }
+
+    private static String counterKey(int id) {
+        return KEY_PREFIX + id;
+    }
+}
@@ -0,0 +1,67 @@
+package sia.pairschallenge.redis;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Канал Redis products.change-channel, по которому инстансы основного и реактивного приложений сообщают
+ * друг другу идентификаторы измененных продуктов, чтобы каждый инстанс обновил свой поисковый индекс.
+ * Сообщение имеет формат "instanceId|id,id,...": собственные сообщения инстанс пропускает,
+ * так как уже обновил свой индекс. Сообщение без instanceId считается чужим.
+ */
+public class ProductChangeChannel {
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final String channel;
+
+    /**
+     * Конструктор канала изменений.
+     *
+     * @param redisTemplate Шаблон для публикации сообщений.
+     * @param channel Имя канала.
+     */
+    public ProductChangeChannel(StringRedisTemplate redisTemplate, String channel) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+    }
+
+    /**
+     * Публикует идентификаторы продуктов, измененных текущим инстансом.
+     *
+     * @param ids Идентификаторы созданных, измененных или удаленных продуктов.
+     */
+    public void publish(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        redisTemplate.convertAndSend(channel, instanceId + '|'
+                + ids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    /**
+     * Разбирает сообщение об изменении.
+     *
+     * @param message Тело сообщения.
+     * @return Идентификаторы продуктов, или пустой список для сообщения текущего инстанса.
+     * @throws NumberFormatException Если идентификаторы в сообщении не числа.
+     */
+    public List<Integer> foreignIds(String message) {
+        int separator = message.indexOf('|');
+        if (separator >= 0 && instanceId.equals(message.substring(0, separator))) {
+            return List.of();
+        }
+        List<Integer> ids = new ArrayList<>();
+        Arrays.stream(message.substring(separator + 1).split(",")).map(String::trim).map(Integer::valueOf)
+                .forEach(ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,123 @@
+package sia.pairschallenge.redis;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import sia.pairschallenge.repository.Product;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+import sia.productevent.serialization.ProductEventCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Компактный сериализатор {@link Product} для кэша Redis.
+ * <p>
+ * Продукт кодируется тем же бинарным форматом, что и события Kafka ({@link ProductEventCodec}),
+ * без имени класса и имен полей, которые пишет GenericJackson2JsonRedisSerializer.
+ * Тип события в записи кэша не используется.
+ * <pre>
+ * byte    способ хранения: 0 - как есть, 1 - gzip
+ * byte[]  продукт в формате ProductEventCodec
+ * </pre>
+ * Сжимаются только продукты от compressionThreshold байт (обычно с длинным описанием)
+ * и только если gzip действительно уменьшил размер.
+ */
+public class ProductRedisSerializer implements RedisSerializer<Product> {
+
+    private static final byte PLAIN = 0;
+
+    private static final byte GZIP = 1;
+
+    private final int compressionThreshold;
+
+    /**
+     * Конструктор сериализатора.
+     *
+     * @param compressionThreshold Размер закодированного продукта в байтах, начиная с которого
+     *                             он сжимается; 0 отключает сжатие.
+     */
+    public ProductRedisSerializer(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Product product) {
+        if (product == null) {
+            return new byte[0];
+        }
+        ProductEvent event = new ProductEvent(ProductEventType.UPDATED, product.getId(),
+                product.getName(), product.getDescription(), product.getPrice(), product.getQuantity(),
+                product.getCreatedAt(), product.getUpdatedAt());
+        event.setOccurredAt(null);
+        event.setVersion(product.getVersion());
+        byte[] encoded = ProductEventCodec.encode(event);
+
+        if (compressionThreshold > 0 && encoded.length >= compressionThreshold) {
+            byte[] compressed = gzip(encoded);
+            if (compressed.length < encoded.length) {
+                return withHeader(GZIP, compressed);
+            }
+        }
+        return withHeader(PLAIN, encoded);
+    }
+
+    @Override
+    public Product deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        byte[] encoded = Arrays.copyOfRange(bytes, 1, bytes.length);
+        ProductEvent event;
+        try {
+            event = switch (bytes[0]) {
+                case PLAIN -> ProductEventCodec.decode(encoded);
+                case GZIP -> ProductEventCodec.decode(gunzip(encoded));
+                default -> throw new SerializationException("Unknown product cache entry encoding: " + bytes[0]);
+            };
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            throw new SerializationException("Unable to deserialize cached product", e);
+        }
+        Product product = new Product(event.getId(), event.getName(), event.getDescription(), event.getPrice(),
+                event.getQuantity(), event.getCreatedAt(), event.getUpdatedAt());
+        if (event.getVersion() != null) {
+            product.setVersion(event.getVersion());
+        }
+        return product;
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return Product.class;
+    }
+
+    private static byte[] withHeader(byte header, byte[] body) {
+        byte[] result = new byte[body.length + 1];
+        result[0] = header;
+        System.arraycopy(body, 0, result, 1, body.length);
+        return result;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
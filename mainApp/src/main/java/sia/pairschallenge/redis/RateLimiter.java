@@ -0,0 +1,124 @@
+package sia.pairschallenge.redis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограничение частоты запросов корзиной токенов в Redis, общей для всех инстансов.
+ * <pre>
+ * rate::{bucket} hash tokens - оставшиеся токены (дробные), ts - время последнего пополнения по часам Redis, мс
+ * </pre>
+ * Корзина пополняется на refillPerSecond токенов в секунду до capacity; пополнение и списание выполняются
+ * одним скриптом, поэтому инстансы не выдают больше токенов, чем есть в корзине.
+ * <p>
+ * Чтобы не ходить в Redis на каждый запрос, инстанс берет из корзины сразу до prefetch токенов и расходует их
+ * локально в течение prefetchTtl; не израсходованные за это время токены пропадают. После отказа инстанс
+ * сам отклоняет запросы в эту корзину, пока в ней не появится токен, тоже без обращения к Redis.
+ */
+public class RateLimiter {
+
+    private static final String KEY_PREFIX = "rate::";
+
+    /**
+     * Пополняет корзину за прошедшее время и выдает до ARGV[3] токенов.
+     * Возвращает число выданных токенов и, если не выдано ни одного, через сколько мс появится следующий.
+     */
+    private static final RedisScript<List> ACQUIRE_SCRIPT = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local rate = tonumber(ARGV[2])
+            local time = redis.call('time')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local bucket = redis.call('hmget', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(bucket[1]) or capacity
+            local ts = tonumber(bucket[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+            local granted = math.min(tonumber(ARGV[3]), math.floor(tokens))
+            tokens = tokens - granted
+            redis.call('hset', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+            redis.call('pexpire', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+            local wait = 0
+            if granted == 0 then wait = math.ceil((1 - tokens) * 1000 / rate) end
+            return {granted, wait}
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final long prefetchTtlNanos;
+
+    private final Cache<String, LocalTokens> localTokens;
+
+    /**
+     * Конструктор ограничителя.
+     *
+     * @param redisTemplate Шаблон для команд Redis.
+     * @param prefetchTtl Сколько взятые заранее токены можно расходовать локально.
+     * @param maxLocalBuckets Сколько корзин (маршрут и клиент) инстанс помнит локально.
+     */
+    public RateLimiter(StringRedisTemplate redisTemplate, Duration prefetchTtl, long maxLocalBuckets) {
+        this.redisTemplate = redisTemplate;
+        this.prefetchTtlNanos = prefetchTtl.toNanos();
+        this.localTokens = Caffeine.newBuilder()
+                .maximumSize(maxLocalBuckets)
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .build();
+    }
+
+    /**
+     * Берет токен из корзины.
+     *
+     * @param bucket Имя корзины, например маршрут и клиент.
+     * @param capacity Размер корзины, то есть допустимый всплеск запросов.
+     * @param refillPerSecond Скорость пополнения корзины, то есть допустимая средняя частота запросов.
+     * @param prefetch Сколько токенов брать из Redis за раз; 1 - без локального запаса.
+     * @return 0, если токен получен, иначе через сколько мс его можно будет получить.
+     */
+    public long tryAcquire(String bucket, long capacity, double refillPerSecond, int prefetch) {
+        LocalTokens local = localTokens.get(bucket, key -> new LocalTokens());
+        local.lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (local.tokens > 0 && now - local.expiresAt < 0) {
+                local.tokens--;
+                return 0;
+            }
+            if (now - local.blockedUntil < 0) {
+                return Math.max(1, (local.blockedUntil - now) / 1_000_000);
+            }
+            List<?> result = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(KEY_PREFIX + bucket),
+                    String.valueOf(capacity), String.valueOf(refillPerSecond), String.valueOf(prefetch));
+            long granted = ((Number) result.get(0)).longValue();
+            if (granted > 0) {
+                local.tokens = granted - 1;
+                local.expiresAt = now + prefetchTtlNanos;
+                return 0;
+            }
+            long waitMillis = Math.max(1, ((Number) result.get(1)).longValue());
+            local.tokens = 0;
+            local.blockedUntil = now + waitMillis * 1_000_000;
+            return waitMillis;
+        } finally {
+            local.lock.unlock();
+        }
+    }
+
+    /**
+     * Токены корзины, взятые инстансом заранее. Поля меняются только под lock.
+     */
+    private static class LocalTokens {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private long tokens;
+
+        private long expiresAt = System.nanoTime();
+
+        private long blockedUntil = expiresAt;
+    }
+}
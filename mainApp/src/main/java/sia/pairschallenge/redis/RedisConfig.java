@@ -2,16 +2,28 @@ package sia.pairschallenge.redis;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.*;
 import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.service.impl.ProductSearchServiceImpl;
+import sia.pairschallenge.service.impl.ProductServiceImpl;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Конфигурация для настройки Redis в качестве кэша.
@@ -19,42 +31,234 @@ import sia.pairschallenge.repository.Product;
  */
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CachePolicyProperties.class)
 public class RedisConfig {
 
+    @Value("${cache.local.enabled:true}")
+    private boolean localCacheEnabled;
+
+    @Value("${cache.local.max-size:10000}")
+    private long localCacheMaxSize;
+
+    @Value("${cache.local.ttl:30s}")
+    private Duration localCacheTtl;
+
+    @Value("${cache.invalidation-channel:cache-invalidation}")
+    private String invalidationChannel;
+
+    @Value("${products.change-channel:product-changes}")
+    private String productChangeChannel;
+
+    @Value("${cache.early-refresh.beta:1.0}")
+    private double earlyRefreshBeta;
+
+    @Value("${cache.early-refresh.recompute-time:50ms}")
+    private Duration earlyRefreshRecomputeTime;
+
+    @Value("${cache.lease.ttl:2s}")
+    private Duration leaseTtl;
+
+    @Value("${cache.lease.wait:500ms}")
+    private Duration leaseWait;
+
+    @Value("${cache.hot-keys.max-size:10000}")
+    private int hotKeysMaxSize;
+
+    @Value("${cache.hot-keys.half-life:30m}")
+    private Duration hotKeysHalfLife;
+
+    @Value("${rate-limit.prefetch-ttl:1s}")
+    private Duration rateLimitPrefetchTtl;
+
+    @Value("${rate-limit.max-local-buckets:100000}")
+    private long rateLimitMaxLocalBuckets;
+
+    @Value("${inventory.counter-ttl:10m}")
+    private Duration inventoryCounterTtl;
+
+    @Value("${inventory.flush-lease-ttl:30s}")
+    private Duration inventoryFlushLeaseTtl;
+
+    /**
+     * Создает компактный сериализатор продуктов для кэша Redis.
+     *
+     * @param cachePolicies Политики кэшей, из них берется порог сжатия.
+     * @return Сериализатор продуктов.
+     */
+    @Bean
+    public ProductRedisSerializer productRedisSerializer(CachePolicyProperties cachePolicies) {
+        return new ProductRedisSerializer(cachePolicies.getCompressionThreshold());
+    }
+
     /**
      * Создает и настраивает RedisTemplate для работы с объектами типа Product.
      *
      * @param redisConnectionFactory Фабрика соединений Redis.
+     * @param productRedisSerializer Сериализатор продуктов, тот же, что у productCache.
      * @return Настроенный RedisTemplate для работы с Product.
      */
     @Bean
-    RedisTemplate<String, Product> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(mapper);
-
+    RedisTemplate<String, Product> redisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                                 ProductRedisSerializer productRedisSerializer) {
         RedisTemplate<String, Product> redisTemplate = new RedisTemplate<>();
         redisTemplate.setConnectionFactory(redisConnectionFactory);
-        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(productRedisSerializer);
 
         return redisTemplate;
     }
 
     /**
      * Создает и настраивает CacheManager для работы с Redis.
+     * Время жизни, разброс времени жизни и префикс ключей задаются для каждого кэша
+     * в cache.redis.* (см. {@link CachePolicyProperties}). Закэшированное отсутствие значения (null)
+     * живет только cache.redis.negative-ttl, чтобы созданный позже продукт быстро стал виден.
+     * productCache хранит продукты в компактном бинарном формате, остальные кэши — в JSON.
+     * Если включен локальный кэш (cache.local.enabled), кэши Redis оборачиваются
+     * в двухуровневый кэш с in-JVM кэшем Caffeine перед Redis.
      *
-     * @param redisConnectionFactory Фабрика соединений Redis, нужна redisTemplate для подключения.
+     * @param redisConnectionFactory Фабрика соединений Redis.
+     * @param stringRedisTemplate Шаблон для публикации сообщений об инвалидации локальных кэшей.
+     * @param meterRegistry Реестр метрик для статистики по уровням кэша.
+     * @param cachePolicies Политики кэшей.
+     * @param productRedisSerializer Сериализатор продуктов для productCache.
      * @return Настроенный CacheManager для работы с Redis.
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
-        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                     StringRedisTemplate stringRedisTemplate,
+                                     MeterRegistry meterRegistry,
+                                     CachePolicyProperties cachePolicies,
+                                     ProductRedisSerializer productRedisSerializer) {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        RedisSerializer<Object> jsonSerializer = new GenericJackson2JsonRedisSerializer(mapper);
+
+        RedisCacheManager.RedisCacheManagerBuilder builder = RedisCacheManager.builder(redisConnectionFactory)
+                .cacheDefaults(cacheConfiguration(cachePolicies, null, jsonSerializer))
+                .withCacheConfiguration(ProductServiceImpl.PRODUCT_CACHE,
+                        cacheConfiguration(cachePolicies, ProductServiceImpl.PRODUCT_CACHE, productRedisSerializer));
+        for (String cacheName : cachePolicies.getCaches().keySet()) {
+            if (!ProductServiceImpl.PRODUCT_CACHE.equals(cacheName)) {
+                builder.withCacheConfiguration(cacheName, cacheConfiguration(cachePolicies, cacheName, jsonSerializer));
+            }
+        }
+        RedisCacheManager redisCacheManager = builder.build();
+        if (!localCacheEnabled) {
+            return redisCacheManager;
+        }
+        redisCacheManager.afterPropertiesSet();
+
+        return new TwoTierCacheManager(redisCacheManager, stringRedisTemplate, meterRegistry,
+                invalidationChannel, localCacheMaxSize, localCacheTtl, cachePolicies.getNegativeTtl(),
+                earlyRefreshBeta, earlyRefreshRecomputeTime);
+    }
+
+    /**
+     * Создает аренду в Redis, через которую инстансы договариваются, кто загружает промах кэша из бд.
+     *
+     * @param stringRedisTemplate Шаблон для команд Redis.
+     * @return Аренда загрузки записей кэша.
+     */
+    @Bean
+    public CacheLoadLease cacheLoadLease(StringRedisTemplate stringRedisTemplate) {
+        return new CacheLoadLease(stringRedisTemplate, leaseTtl, leaseWait);
+    }
+
+    /**
+     * Создает остатки продуктов в Redis для резервирований с отложенной записью в бд.
+     *
+     * @param stringRedisTemplate Шаблон для команд Redis.
+     * @return Остатки продуктов.
+     */
+    @Bean
+    public InventoryCounters inventoryCounters(StringRedisTemplate stringRedisTemplate) {
+        return new InventoryCounters(stringRedisTemplate, inventoryCounterTtl, inventoryFlushLeaseTtl);
+    }
+
+    /**
+     * Создает канал изменений продуктов, по которому инстансы обновляют поисковые индексы друг друга.
+     *
+     * @param stringRedisTemplate Шаблон для публикации сообщений.
+     * @return Канал изменений продуктов.
+     */
+    @Bean
+    public ProductChangeChannel productChangeChannel(StringRedisTemplate stringRedisTemplate) {
+        return new ProductChangeChannel(stringRedisTemplate, productChangeChannel);
+    }
+
+    /**
+     * Создает ограничитель частоты запросов на корзинах токенов в Redis.
+     *
+     * @param stringRedisTemplate Шаблон для команд Redis.
+     * @return Ограничитель частоты запросов.
+     */
+    @Bean
+    public RateLimiter rateLimiter(StringRedisTemplate stringRedisTemplate) {
+        return new RateLimiter(stringRedisTemplate, rateLimitPrefetchTtl, rateLimitMaxLocalBuckets);
+    }
+
+    /**
+     * Создает учет самых запрашиваемых продуктов, по которому кэш прогревается при запуске.
+     * Создается сразу и при spring.main.lazy-initialization, иначе перенос обращений в Redis не будет запланирован.
+     *
+     * @param stringRedisTemplate Шаблон для команд Redis.
+     * @return Учет запрашиваемых ключей productCache.
+     */
+    @Bean
+    @Lazy(false)
+    public HotKeyTracker hotKeyTracker(StringRedisTemplate stringRedisTemplate) {
+        return new HotKeyTracker(stringRedisTemplate, ProductServiceImpl.PRODUCT_CACHE, hotKeysMaxSize, hotKeysHalfLife);
+    }
+
+    /**
+     * Собирает конфигурацию кэша Redis по его политике.
+     *
+     * @param cacheName Имя кэша, или null для кэшей без своей политики.
+     */
+    private static RedisCacheConfiguration cacheConfiguration(CachePolicyProperties cachePolicies, String cacheName,
+                                                              RedisSerializer<?> valueSerializer) {
+        CachePolicyProperties.Policy policy = cachePolicies.policyFor(cacheName);
+        Duration ttl = policy.getTtl();
+        long jitterMillis = policy.getTtlJitter().toMillis();
+        Duration negativeTtl = cachePolicies.getNegativeTtl();
+
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl((key, value) -> {
+                    if (value == null) {
+                        return negativeTtl;
+                    }
+                    return jitterMillis > 0
+                            ? ttl.plusMillis(ThreadLocalRandom.current().nextLong(jitterMillis + 1))
+                            : ttl;
+                })
+                .prefixCacheNameWith(policy.getKeyPrefix())
                 .serializeKeysWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(new StringRedisSerializer()))
+                        .fromSerializer(RedisSerializer.string()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(redisTemplate(redisConnectionFactory).getDefaultSerializer()));
+                        .fromSerializer(valueSerializer));
+    }
 
-        return RedisCacheManager.builder(redisConnectionFactory).cacheDefaults(config).build();
+    /**
+     * Подписывает менеджер двухуровневых кэшей на канал инвалидации,
+     * чтобы изменения на других инстансах сбрасывали локальный кэш,
+     * а поиск — на канал изменений продуктов другими инстансами и реактивным приложением.
+     *
+     * @param redisConnectionFactory Фабрика соединений Redis.
+     * @param cacheManager Менеджер кэшей приложения.
+     * @param productSearchService Поиск, переиндексирующий измененные продукты.
+     * @return Контейнер слушателей сообщений Redis.
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                           CacheManager cacheManager,
+                                                                           ProductSearchServiceImpl productSearchService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        if (cacheManager instanceof TwoTierCacheManager twoTierCacheManager) {
+            container.addMessageListener(twoTierCacheManager, new ChannelTopic(invalidationChannel));
+        }
+        container.addMessageListener(productSearchService, new ChannelTopic(productChangeChannel));
+        return container;
     }
 }
@@ -0,0 +1,550 @@
+package sia.pairschallenge.redis;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Двухуровневый кэш: локальный in-JVM кэш (L1) перед кэшем Redis (L2).
+ * Чтение идет сначала в L1, затем в Redis, при промахе L1 заполняется значением из Redis.
+ * Любое изменение (put, evict, clear) публикуется в канал Redis, чтобы остальные инстансы
+ * сбросили у себя устаревшую запись L1. Значение, прочитанное из Redis, не попадает в L1, если во время чтения
+ * пришла инвалидация этого ключа: иначе прочитанная до нее версия пережила бы ее до истечения cache.local.ttl.
+ * <p>
+ * Для записей Redis кэш запоминает момент их истечения и по нему решает, когда обновить запись заранее
+ * (вероятностное раннее обновление, XFetch): чем ближе истечение, тем выше шанс, что очередное чтение
+ * получит право перезагрузить значение, пока остальные продолжают читать текущее.
+ * Момент истечения не стоит отдельного обращения к Redis: при чтении PTTL уходит одним конвейером с GET,
+ * а при записи кэш сам вычисляет TTL по политике и передает его в SET.
+ */
+public class TwoTierCache implements Cache {
+
+    /**
+     * Так {@link RedisCache} хранит закэшированный null.
+     */
+    private static final byte[] BINARY_NULL_VALUE = RedisSerializer.java().serialize(NullValue.INSTANCE);
+
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    private final Cache local;
+
+    private final Cache remote;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final String channel;
+
+    private final String instanceId;
+
+    private final Counter localHits;
+
+    private final Counter localMisses;
+
+    private final Counter remoteHits;
+
+    private final Counter remoteMisses;
+
+    private final Timer localLatency;
+
+    private final Timer remoteLatency;
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, Long> remoteExpiries;
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, Boolean> refreshClaims;
+
+    private final double earlyRefreshBeta;
+
+    private final long recomputeMillis;
+
+    /**
+     * Счетчики инвалидаций L1 по полосам ключей; последний элемент считает очистки всего кэша.
+     * Ключи одной полосы делят счетчик, поэтому инвалидация соседнего ключа только пропускает лишнее заполнение L1.
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES + 1);
+
+    /**
+     * Конструктор двухуровневого кэша.
+     *
+     * @param local Локальный кэш (L1).
+     * @param remote Кэш Redis (L2).
+     * @param redisTemplate Шаблон для публикации сообщений об инвалидации.
+     * @param channel Канал Redis для сообщений об инвалидации.
+     * @param instanceId Идентификатор текущего инстанса, чтобы не обрабатывать собственные сообщения.
+     * @param meterRegistry Реестр метрик для попаданий, промахов и задержек по уровням.
+     * @param localMaxSize Максимальное количество записей в локальном кэше, им же ограничены сроки истечения Redis.
+     * @param earlyRefreshBeta Коэффициент раннего обновления: больше 1 обновляет раньше, 0 отключает.
+     * @param recomputeTime Ожидаемое время загрузки значения, на него раннее обновление опережает истечение.
+     */
+    public TwoTierCache(Cache local, Cache remote, StringRedisTemplate redisTemplate,
+                        String channel, String instanceId, MeterRegistry meterRegistry,
+                        long localMaxSize, double earlyRefreshBeta, Duration recomputeTime) {
+        this.local = local;
+        this.remote = remote;
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.instanceId = instanceId;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.recomputeMillis = recomputeTime.toMillis();
+        this.remoteExpiries = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .build();
+        // Право на обновление само истекает, если загрузка упала и put так и не случился
+        this.refreshClaims = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(Math.max(recomputeMillis * 10, 1000)))
+                .build();
+
+        String name = remote.getName();
+        this.localHits = requests(meterRegistry, name, "local", "hit");
+        this.localMisses = requests(meterRegistry, name, "local", "miss");
+        this.remoteHits = requests(meterRegistry, name, "redis", "hit");
+        this.remoteMisses = requests(meterRegistry, name, "redis", "miss");
+        this.localLatency = latency(meterRegistry, name, "local");
+        this.remoteLatency = latency(meterRegistry, name, "redis");
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+
+        ValueWrapper value = localLatency.record((Supplier<ValueWrapper>) () -> local.get(localKey));
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        localMisses.increment();
+
+        long epoch = invalidationEpoch(localKey);
+        value = remoteLatency.record((Supplier<ValueWrapper>) () -> remoteGet(key, localKey));
+        if (value != null) {
+            remoteHits.increment();
+            promote(localKey, value.get(), epoch);
+            return value;
+        }
+        remoteMisses.increment();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null) {
+            return null;
+        }
+        Object stored = value.get();
+        if (stored != null && type != null && !type.isInstance(stored)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + stored);
+        }
+        return (T) stored;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+
+        long epoch = invalidationEpoch(localKey(key));
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        // Загруженное значение не должно перетирать то, что успела записать параллельная операция записи
+        ValueWrapper existing = remotePutIfAbsent(key, localKey(key), loaded);
+        Object result = existing != null ? existing.get() : loaded;
+        promote(localKey(key), result, epoch);
+        return (T) result;
+    }
+
+    /**
+     * Читает несколько записей: сначала из L1, затем все промахи L1 одной командой MGET в Redis.
+     * Найденные в Redis записи попадают в L1, но сроки их истечения не запрашиваются,
+     * поэтому раннее обновление для них начнет работать только после чтения по одному ключу.
+     *
+     * @param keys Ключи записей.
+     * @return Найденные записи по ключам; ключей-промахов в результате нет.
+     */
+    public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+        Map<Object, ValueWrapper> result = new HashMap<>();
+        List<Object> remoteKeys = new ArrayList<>();
+        Map<Object, Long> epochs = new HashMap<>();
+        for (Object key : keys) {
+            ValueWrapper value = local.get(localKey(key));
+            if (value != null) {
+                localHits.increment();
+                result.put(key, value);
+            } else {
+                localMisses.increment();
+                remoteKeys.add(key);
+                epochs.put(key, invalidationEpoch(localKey(key)));
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return result;
+        }
+
+        List<ValueWrapper> remoteValues = remoteLatency.record(() -> remoteGetAll(remoteKeys));
+        for (int i = 0; i < remoteKeys.size(); i++) {
+            ValueWrapper value = remoteValues.get(i);
+            if (value != null) {
+                remoteHits.increment();
+                promote(localKey(remoteKeys.get(i)), value.get(), epochs.get(remoteKeys.get(i)));
+                result.put(remoteKeys.get(i), value);
+            } else {
+                remoteMisses.increment();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Записывает несколько записей и публикует их инвалидацию одним конвейером команд Redis
+     * (SET с TTL по политике кэша и PUBLISH на каждый ключ), то есть за одно обращение к Redis.
+     *
+     * @param values Значения по ключам; null кэшируется как отсутствие значения.
+     */
+    public void putAll(Map<?, ?> values) {
+        Map<Object, Duration> ttls = new HashMap<>();
+        if (remote instanceof RedisCache redisCache) {
+            RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+            values.forEach((key, value) -> ttls.put(key, config.getTtlFunction().getTimeToLive(key, value)));
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                values.forEach((key, value) -> remoteSet(connection, redisCache, key, value, ttls.get(key)));
+                return null;
+            });
+        } else {
+            values.forEach((key, value) -> {
+                remote.put(key, value);
+                publish(localKey(key));
+            });
+        }
+        values.forEach((key, value) -> {
+            local.put(localKey(key), value);
+            rememberRemoteExpiry(localKey(key), ttls.get(key));
+            refreshClaims.invalidate(localKey(key));
+        });
+    }
+
+    /**
+     * Записывает значение в оба уровня. В Redis SET и PUBLISH уходят одним конвейером,
+     * TTL вычисляется здесь, поэтому срок истечения известен без PTTL.
+     */
+    @Override
+    public void put(Object key, Object value) {
+        String localKey = localKey(key);
+        Duration ttl = null;
+        if (remote instanceof RedisCache redisCache) {
+            Duration remoteTtl = redisCache.getCacheConfiguration().getTtlFunction().getTimeToLive(key, value);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                remoteSet(connection, redisCache, key, value, remoteTtl);
+                return null;
+            });
+            ttl = remoteTtl;
+        } else {
+            remote.put(key, value);
+            publish(localKey);
+        }
+        local.put(localKey, value);
+        rememberRemoteExpiry(localKey, ttl);
+        refreshClaims.invalidate(localKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String localKey = localKey(key);
+        remote.evict(key);
+        invalidated(localKey);
+        local.evict(localKey);
+        remoteExpiries.invalidate(localKey);
+        publish(localKey);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        invalidated(null);
+        local.clear();
+        remoteExpiries.invalidateAll();
+        publish(null);
+    }
+
+    /**
+     * Решает, нужно ли обновить запись до истечения ее срока в Redis (XFetch).
+     * Запись обновляется, если now + recomputeTime * beta * (-ln(rand)) доходит до момента истечения,
+     * поэтому вероятность растет по мере приближения к нему. В пределах инстанса право на обновление
+     * получает только один вызов, до следующего put по этому ключу.
+     *
+     * @param key Ключ записи.
+     * @return true, если вызывающий должен перезагрузить значение и положить его через put.
+     */
+    public boolean claimEarlyRefresh(Object key) {
+        String localKey = localKey(key);
+        Long expiresAt = remoteExpiries.getIfPresent(localKey);
+        if (expiresAt == null || earlyRefreshBeta <= 0) {
+            return false;
+        }
+        double gap = -recomputeMillis * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+        if (System.currentTimeMillis() + gap < expiresAt) {
+            return false;
+        }
+        return refreshClaims.asMap().putIfAbsent(localKey, Boolean.TRUE) == null;
+    }
+
+    /**
+     * Сбрасывает запись только в локальном кэше. Вызывается при получении сообщения
+     * об инвалидации от другого инстанса.
+     *
+     * @param key Ключ записи, или null, если нужно очистить весь локальный кэш.
+     */
+    void evictLocal(String key) {
+        invalidated(key);
+        if (key == null) {
+            local.clear();
+            remoteExpiries.invalidateAll();
+        } else {
+            local.evict(key);
+            remoteExpiries.invalidate(key);
+        }
+    }
+
+    /**
+     * Номер инвалидации ключа: меняется при каждой инвалидации его полосы и при каждой очистке кэша.
+     */
+    private long invalidationEpoch(String localKey) {
+        return invalidations.get(stripe(localKey)) + invalidations.get(INVALIDATION_STRIPES);
+    }
+
+    /**
+     * Отмечает инвалидацию ключа. Вызывается до сброса записи L1, чтобы заполнение,
+     * прочитавшее Redis до инвалидации, увидело ее либо до своей записи, либо после (см. {@link #promote}).
+     *
+     * @param localKey Ключ записи, или null при очистке всего кэша.
+     */
+    private void invalidated(String localKey) {
+        invalidations.incrementAndGet(localKey == null ? INVALIDATION_STRIPES : stripe(localKey));
+    }
+
+    /**
+     * Кладет значение, прочитанное из Redis, в L1, если с начала чтения ключ не инвалидировался.
+     * putIfAbsent: параллельная запись на этом инстансе могла уже положить более новое значение.
+     * Инвалидация, пришедшая между проверкой и записью, сбрасывает L1 уже после нее или замечается
+     * повторной проверкой, и тогда запись убирается.
+     *
+     * @param epoch Номер инвалидации ключа, взятый до чтения из Redis.
+     */
+    private void promote(String localKey, Object value, long epoch) {
+        if (invalidationEpoch(localKey) != epoch) {
+            return;
+        }
+        local.putIfAbsent(localKey, value);
+        if (invalidationEpoch(localKey) != epoch) {
+            local.evict(localKey);
+        }
+    }
+
+    private static int stripe(String localKey) {
+        return Math.floorMod(localKey.hashCode(), INVALIDATION_STRIPES);
+    }
+
+    /**
+     * Запоминает, когда запись истечет в Redis.
+     *
+     * @param ttl Оставшееся время жизни записи, или null, если оно неизвестно (кэш не на Redis).
+     */
+    private void rememberRemoteExpiry(String localKey, Duration ttl) {
+        if (ttl != null && earlyRefreshBeta > 0 && ttl.isPositive()) {
+            remoteExpiries.put(localKey, System.currentTimeMillis() + ttl.toMillis());
+        } else {
+            remoteExpiries.invalidate(localKey);
+        }
+    }
+
+    /**
+     * Читает запись из Redis вместе с ее сроком: GET и PTTL одним конвейером.
+     * Если раннее обновление выключено или L2 не в Redis, срок не читается.
+     */
+    private ValueWrapper remoteGet(Object key, String localKey) {
+        if (!(remote instanceof RedisCache redisCache) || earlyRefreshBeta <= 0) {
+            return remote.get(key);
+        }
+        byte[] rawKey = rawKey(redisCache, key);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(rawKey);
+            connection.keyCommands().pTtl(rawKey);
+            return null;
+        }, RedisSerializer.byteArray());
+        ValueWrapper value = readValue(redisCache.getCacheConfiguration(), (byte[]) results.get(0));
+        if (value != null && results.get(1) instanceof Long ttl) {
+            rememberRemoteExpiry(localKey, Duration.ofMillis(ttl));
+        }
+        return value;
+    }
+
+    /**
+     * Кладет запись в Redis, только если ее там нет (SET NX с TTL по политике кэша).
+     *
+     * @return Запись, которая уже была в Redis, или null, если записано переданное значение.
+     */
+    private ValueWrapper remotePutIfAbsent(Object key, String localKey, Object value) {
+        if (!(remote instanceof RedisCache redisCache)) {
+            return remote.putIfAbsent(key, value);
+        }
+        RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+        Duration ttl = config.getTtlFunction().getTimeToLive(key, value);
+        Boolean written = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(rawKey(redisCache, key), rawValue(config, value), expiration(ttl),
+                        RedisStringCommands.SetOption.ifAbsent()));
+        if (Boolean.TRUE.equals(written)) {
+            rememberRemoteExpiry(localKey, ttl);
+            return null;
+        }
+        return remoteGet(key, localKey);
+    }
+
+    /**
+     * Добавляет в конвейер SET записи с заданным TTL и PUBLISH ее инвалидации.
+     */
+    private void remoteSet(RedisConnection connection, RedisCache redisCache, Object key, Object value,
+                           Duration ttl) {
+        connection.stringCommands().set(rawKey(redisCache, key), rawValue(redisCache.getCacheConfiguration(), value),
+                expiration(ttl), RedisStringCommands.SetOption.upsert());
+        connection.publish(channel.getBytes(StandardCharsets.UTF_8),
+                invalidationMessage(localKey(key)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Expiration expiration(Duration ttl) {
+        return ttl.isZero() || ttl.isNegative() ? Expiration.persistent() : Expiration.from(ttl);
+    }
+
+    /**
+     * Читает записи из Redis одной командой MGET. Ключи и значения кодируются так же, как в {@link RedisCache}.
+     * Если L2 не в Redis (например, в тестах), записи читаются по одной.
+     */
+    private List<ValueWrapper> remoteGetAll(List<Object> keys) {
+        if (!(remote instanceof RedisCache redisCache)) {
+            return keys.stream().map(remote::get).toList();
+        }
+        RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+        byte[][] rawKeys = keys.stream().map(key -> rawKey(redisCache, key)).toArray(byte[][]::new);
+        List<byte[]> rawValues = redisTemplate.execute(
+                (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+
+        List<ValueWrapper> values = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            values.add(readValue(config, rawValues != null ? rawValues.get(i) : null));
+        }
+        return values;
+    }
+
+    private byte[] rawKey(RedisCache redisCache, Object key) {
+        RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+        return ByteUtils.getBytes(config.getKeySerializationPair()
+                .write(config.getKeyPrefixFor(getName()) + localKey(key)));
+    }
+
+    /**
+     * Декодирует значение из Redis так же, как {@link RedisCache}.
+     *
+     * @return Запись, или null, если значения нет.
+     */
+    private static ValueWrapper readValue(RedisCacheConfiguration config, byte[] raw) {
+        if (raw == null) {
+            return null;
+        }
+        if (Arrays.equals(raw, BINARY_NULL_VALUE)) {
+            return new SimpleValueWrapper(null);
+        }
+        return new SimpleValueWrapper(config.getValueSerializationPair().read(ByteBuffer.wrap(raw)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] rawValue(RedisCacheConfiguration config, Object value) {
+        if (value == null) {
+            return BINARY_NULL_VALUE;
+        }
+        return ByteUtils.getBytes(((RedisSerializationContext.SerializationPair<Object>)
+                config.getValueSerializationPair()).write(value));
+    }
+
+    /**
+     * Публикует сообщение об инвалидации.
+     */
+    private void publish(String key) {
+        redisTemplate.convertAndSend(channel, invalidationMessage(key));
+    }
+
+    /**
+     * Сообщение об инвалидации в формате "instanceId|cacheName|key".
+     * Пустой ключ означает очистку всего кэша.
+     */
+    private String invalidationMessage(String key) {
+        return instanceId + '|' + getName() + '|' + (key == null ? "" : key);
+    }
+
+    /**
+     * Ключи L1 хранятся строками, чтобы совпадать с ключами из сообщений об инвалидации.
+     */
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private static Counter requests(MeterRegistry registry, String cache, String tier, String result) {
+        return Counter.builder("cache.tier.requests")
+                .description("Попадания и промахи по уровням двухуровневого кэша")
+                .tag("cache", cache)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Timer latency(MeterRegistry registry, String cache, String tier) {
+        return Timer.builder("cache.tier.latency")
+                .description("Время чтения по уровням двухуровневого кэша")
+                .tag("cache", cache)
+                .tag("tier", tier)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+}
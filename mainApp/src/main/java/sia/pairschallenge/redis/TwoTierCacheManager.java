@@ -0,0 +1,158 @@
+package sia.pairschallenge.redis;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CacheManager, который оборачивает каждый кэш Redis в {@link TwoTierCache}
+ * с локальным кэшем Caffeine перед ним. Также слушает канал инвалидации Redis
+ * и сбрасывает локальные записи, измененные другими инстансами.
+ * Закэшированное отсутствие значения живет в локальном кэше не дольше negativeTtl.
+ */
+public class TwoTierCacheManager implements CacheManager, MessageListener {
+
+    private static final Logger log = LogManager.getLogger(TwoTierCacheManager.class);
+
+    private final CacheManager remoteCacheManager;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String channel;
+
+    private final long localMaxSize;
+
+    private final Duration localTtl;
+
+    private final Duration negativeTtl;
+
+    private final double earlyRefreshBeta;
+
+    private final Duration recomputeTime;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор менеджера двухуровневых кэшей.
+     *
+     * @param remoteCacheManager Менеджер кэшей Redis (L2).
+     * @param redisTemplate Шаблон для публикации сообщений об инвалидации.
+     * @param meterRegistry Реестр метрик.
+     * @param channel Канал Redis для сообщений об инвалидации.
+     * @param localMaxSize Максимальное количество записей в локальном кэше.
+     * @param localTtl Время жизни записи в локальном кэше.
+     * @param negativeTtl Время жизни закэшированного отсутствия значения (null) в локальном кэше.
+     * @param earlyRefreshBeta Коэффициент вероятностного раннего обновления, 0 отключает его.
+     * @param recomputeTime Ожидаемое время загрузки значения для раннего обновления.
+     */
+    public TwoTierCacheManager(CacheManager remoteCacheManager, StringRedisTemplate redisTemplate,
+                               MeterRegistry meterRegistry, String channel,
+                               long localMaxSize, Duration localTtl, Duration negativeTtl,
+                               double earlyRefreshBeta, Duration recomputeTime) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.channel = channel;
+        this.localMaxSize = localMaxSize;
+        this.localTtl = localTtl;
+        this.negativeTtl = negativeTtl.compareTo(localTtl) < 0 ? negativeTtl : localTtl;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.recomputeTime = recomputeTime;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoTierCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, key -> createCache(remote));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    /**
+     * Обрабатывает сообщение об инвалидации в формате "instanceId|cacheName|key".
+     * Сообщения текущего инстанса пропускаются, так как он уже обновил свой локальный кэш.
+     *
+     * @param message Сообщение из канала Redis.
+     * @param pattern Шаблон подписки.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length != 3) {
+            log.warn("Malformed cache invalidation message: {}", message);
+            return;
+        }
+        if (instanceId.equals(parts[0])) {
+            return;
+        }
+        TwoTierCache cache = caches.get(parts[1]);
+        if (cache != null) {
+            cache.evictLocal(parts[2].isEmpty() ? null : parts[2]);
+        }
+    }
+
+    private TwoTierCache createCache(Cache remote) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfter(new LocalExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, nativeCache, remote.getName() + ".local");
+
+        return new TwoTierCache(new CaffeineCache(remote.getName(), nativeCache), remote,
+                redisTemplate, channel, instanceId, meterRegistry,
+                localMaxSize, earlyRefreshBeta, recomputeTime);
+    }
+
+    /**
+     * Срок жизни записи L1 отсчитывается от последней записи; для null он сокращается до negativeTtl.
+     */
+    private class LocalExpiry implements Expiry<Object, Object> {
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return (value == NullValue.INSTANCE ? negativeTtl : localTtl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package sia.pairschallenge.repository;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Конфигурация соединений с Postgres: основная бд из spring.datasource.* и реплики для чтения
+ * из datasource.replicas.urls (через запятую, с теми же пользователем и настройками пула).
+ * Read-only транзакции идут на реплики, остальные - в основную бд (см. {@link ReplicaRoutingDataSource}).
+ * Без реплик все запросы идут в основную бд, как раньше.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${datasource.replicas.urls:}")
+    private List<String> replicaUrls;
+
+    @Value("${datasource.replicas.pool-size:20}")
+    private int replicaPoolSize;
+
+    @Value("${datasource.replicas.max-lag:1s}")
+    private Duration replicaMaxLag;
+
+    /**
+     * Пул соединений с основной бд, настраивается spring.datasource.hikari.*.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Выбор между основной бд и репликами. Пулы реплик копируют настройки основного пула,
+     * соединения с ними только для чтения.
+     */
+    @Bean
+    @Lazy(false)
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             MeterRegistry meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            String name = "replica-" + replicas.size();
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setJdbcUrl(url);
+            config.setPoolName(name);
+            config.setMaximumPoolSize(replicaPoolSize);
+            config.setMinimumIdle(replicaPoolSize);
+            config.setReadOnly(true);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(name, new HikariDataSource(config));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, replicaMaxLag, meterRegistry);
+    }
+
+    /**
+     * Источник соединений для JPA, Flyway и остального приложения. Соединение берется при первом запросе,
+     * а не при начале транзакции, чтобы read-only транзакция успела выбрать реплику.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return dataSource;
+    }
+}
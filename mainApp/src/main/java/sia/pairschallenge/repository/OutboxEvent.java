@@ -0,0 +1,86 @@
+package sia.pairschallenge.repository;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Класс OutboxEvent представляет событие, ожидающее отправки в Kafka.
+ * Записывается в той же транзакции, что и изменение продукта, и удаляется
+ * после того, как брокер подтвердил получение сообщения.
+ * Порядок отправки задает столбец ordinal, который заполняет бд при вставке (см. миграцию V2).
+ */
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 100)
+    private long id;
+
+    @Column(nullable = false)
+    private String topic;
+
+    @Column(nullable = false)
+    private int productId;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Column(nullable = false, updatable = false)
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    /**
+     * Сколько раз брокер отклонил событие.
+     */
+    @Column(nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private int attempts;
+
+    public OutboxEvent(String topic, int productId, String payload) {
+        this.topic = topic;
+        this.productId = productId;
+        this.payload = payload;
+    }
+
+    public OutboxEvent() {}
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEvent{" +
+                "id=" + id +
+                ", topic='" + topic + '\'' +
+                ", productId=" + productId +
+                ", createdAt=" + createdAt +
+                ", attempts=" + attempts +
+                '}';
+    }
+}
@@ -0,0 +1,52 @@
+package sia.pairschallenge.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Ключ advisory-блокировки ретранслятора, общий с ретранслятором reactiveApp.
+     */
+    long RELAY_LOCK_KEY = 0x6f7574626f78L;
+
+    /**
+     * Захватывает до конца транзакции блокировку ретранслятора, если ее не держит другой инстанс.
+     * Порции отправляет один ретранслятор за раз: параллельные порции могли бы отправить события продукта
+     * не по порядку.
+     *
+     * @return true, если блокировка захвачена.
+     */
+    @Query(value = "select pg_try_advisory_xact_lock(" + RELAY_LOCK_KEY + ")", nativeQuery = true)
+    boolean tryLockRelay();
+
+    /**
+     * Блокирует следующую порцию событий в порядке записи (ordinal, а не id:
+     * идентификаторы инстансы берут из последовательности блоками).
+     */
+    @Query(value = "select * from outbox_event order by ordinal limit :limit for update", nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(int limit);
+
+    /**
+     * Учитывает попытку отправки события, которое отклонил брокер.
+     */
+    @Modifying
+    @Query(value = "update outbox_event set attempts = attempts + 1 where id = :id", nativeQuery = true)
+    void incrementAttempts(long id);
+
+    /**
+     * Переносит событие в outbox_event_dead_letter вместе с последней попыткой и ее ошибкой.
+     */
+    @Modifying
+    @Query(value = """
+            with moved as (delete from outbox_event where id = :id returning *)
+            insert into outbox_event_dead_letter (id, topic, product_id, payload, created_at, attempts, error)
+            select id, topic, product_id, payload, created_at, attempts + 1, :error from moved""",
+            nativeQuery = true)
+    void moveToDeadLetter(long id, String error);
+}
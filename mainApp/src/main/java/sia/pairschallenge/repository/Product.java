@@ -1,6 +1,7 @@
 package sia.pairschallenge.repository;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -16,8 +17,13 @@ import java.time.LocalDateTime;
 @Entity
 public class Product implements Serializable{
 
+    /**
+     * Идентификатор берется из последовательности блоками по allocationSize значений,
+     * чтобы Hibernate мог отправлять вставки пакетами JDBC (с IDENTITY пакетная вставка невозможна).
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 100)
     private int id;
 
     @Column(nullable = false)
@@ -40,6 +46,15 @@ public class Product implements Serializable{
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    /**
+     * Версия для оптимистической блокировки: Hibernate добавляет and version = ? в update
+     * и увеличивает ее при каждом изменении. Клиенту отдается в заголовке ETag.
+     */
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long version;
+
     public Product(int id, String name, String description, BigDecimal price, Integer quantity, LocalDateTime createdAt, LocalDateTime updatedAt) {
         this.id = id;
         this.name = name;
@@ -84,6 +99,10 @@ public class Product implements Serializable{
         this.updatedAt = updatedAt;
     }
 
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public int getId() {
         return id;
     }
@@ -112,6 +131,10 @@ public class Product implements Serializable{
         return updatedAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     @Override
     public String toString() {
         return "Product{" +
@@ -122,6 +145,7 @@ public class Product implements Serializable{
                 ", quantity=" + quantity +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,35 @@
+package sia.pairschallenge.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Частичное изменение продукта: заданы только поля, которые нужно изменить, остальные равны null.
+ * Количество задается либо новым значением quantity, либо приращением quantityDelta,
+ * которое бд применяет сама (quantity = quantity + delta), без чтения текущего значения.
+ *
+ * @param name Новое название.
+ * @param description Новое описание.
+ * @param price Новая цена.
+ * @param quantity Новое количество, не меньше нуля.
+ * @param quantityDelta Изменение количества; итог не может стать отрицательным.
+ */
+public record ProductPatch(String name, String description, BigDecimal price, Integer quantity,
+                           Integer quantityDelta) {
+
+    public ProductPatch {
+        if (quantity != null && quantityDelta != null) {
+            throw new IllegalArgumentException("quantity and quantityDelta are mutually exclusive");
+        }
+        if (quantity != null && quantity < 0) {
+            throw new IllegalArgumentException("quantity must not be negative");
+        }
+    }
+
+    public static ProductPatch quantityDelta(int delta) {
+        return new ProductPatch(null, null, null, null, delta);
+    }
+
+    public boolean isEmpty() {
+        return name == null && description == null && price == null && quantity == null && quantityDelta == null;
+    }
+}
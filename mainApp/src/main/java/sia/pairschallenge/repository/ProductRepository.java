@@ -1,8 +1,46 @@
 package sia.pairschallenge.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository("postgresRepository")
-public interface ProductRepository extends JpaRepository<Product, Integer> {
+public interface ProductRepository extends JpaRepository<Product, Integer>, ProductRepositoryCustom {
+
+    /**
+     * Страница продуктов со смещением без запроса count(*).
+     * Как и унаследованные методы чтения, выполняется в read-only транзакции, то есть на реплике.
+     */
+    @Transactional(readOnly = true)
+    Slice<Product> findAllBy(Pageable pageable);
+
+    /**
+     * Страница продуктов по курсору: where id > ? order by id limit ?.
+     * Использует индекс первичного ключа, поэтому время не зависит от глубины страницы.
+     */
+    @Transactional(readOnly = true)
+    List<Product> findByIdGreaterThanOrderByIdAsc(int id, Limit limit);
+
+    /**
+     * Все продукты по порядку идентификаторов через серверный курсор JDBC.
+     * Должен вызываться внутри транзакции, иначе драйвер Postgres прочитает всю выборку в память.
+     */
+    @Query("select p from Product p order by p.id")
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<Product> streamAllByOrderById();
 }
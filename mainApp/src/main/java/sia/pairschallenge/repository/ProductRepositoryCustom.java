@@ -0,0 +1,23 @@
+package sia.pairschallenge.repository;
+
+import java.util.Optional;
+
+/**
+ * Запросы к продуктам, которые нельзя выразить методом Spring Data или статическим @Query.
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * Применяет частичное изменение одним запросом update ... set ... returning,
+     * в котором перечислены только заданные в patch столбцы, и увеличивает версию продукта.
+     * Должен вызываться внутри транзакции, в которой продукт еще не загружен: иначе по правилам JPA
+     * вернется уже загруженный экземпляр со старыми значениями.
+     *
+     * @param id Идентификатор продукта.
+     * @param patch Изменяемые поля.
+     * @param expectedVersion Версия, которую должен иметь продукт, или null без проверки версии.
+     * @return Продукт после изменения; пусто, если продукта нет, версия не совпала
+     * или количество стало бы отрицательным.
+     */
+    Optional<Product> patch(int id, ProductPatch patch, Long expectedVersion);
+}
@@ -0,0 +1,59 @@
+package sia.pairschallenge.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Реализация {@link ProductRepositoryCustom}, Spring Data подключает ее к {@link ProductRepository} по имени.
+ * <p>
+ * Запрос строится под каждый patch, поэтому в нем нет ни столбцов, которые не меняются,
+ * ни параметров со значением null. Предварительного чтения строки тоже нет:
+ * проверка версии и остатка входит в where, а результат возвращает returning.
+ */
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Product> patch(int id, ProductPatch patch, Long expectedVersion) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        StringBuilder sql = new StringBuilder("update product set ");
+        set(sql, parameters, "name", patch.name());
+        set(sql, parameters, "description", patch.description());
+        set(sql, parameters, "price", patch.price());
+        set(sql, parameters, "quantity", patch.quantity());
+        if (patch.quantityDelta() != null) {
+            sql.append("quantity = quantity + :quantityDelta, ");
+            parameters.put("quantityDelta", patch.quantityDelta());
+        }
+        sql.append("version = version + 1, updated_at = :updatedAt where id = :id");
+        parameters.put("updatedAt", LocalDateTime.now());
+        parameters.put("id", id);
+        if (expectedVersion != null) {
+            sql.append(" and version = :expectedVersion");
+            parameters.put("expectedVersion", expectedVersion);
+        }
+        if (patch.quantityDelta() != null) {
+            sql.append(" and quantity + :quantityDelta >= 0");
+        }
+        sql.append(" returning *");
+
+        Query query = entityManager.createNativeQuery(sql.toString(), Product.class);
+        parameters.forEach(query::setParameter);
+        return query.getResultList().stream().findFirst().map(Product.class::cast);
+    }
+
+    private static void set(StringBuilder sql, Map<String, Object> parameters, String column, Object value) {
+        if (value != null) {
+            sql.append(column).append(" = :").append(column).append(", ");
+            parameters.put(column, value);
+        }
+    }
+}
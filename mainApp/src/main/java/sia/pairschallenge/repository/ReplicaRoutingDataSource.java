@@ -0,0 +1,203 @@
+package sia.pairschallenge.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Источник соединений, который направляет read-only транзакции на реплики Postgres, а остальное - на основную бд.
+ * Реплики выбираются по кругу; реплика, которая отстает больше чем на maxLag или не отвечает,
+ * пропускается до следующей проверки, а если подходящих реплик нет, чтение идет в основную бд.
+ * Отставание проверяется раз в datasource.replicas.check-interval-ms.
+ * <p>
+ * Реплика выбирается при получении соединения, поэтому источник нужно оборачивать в
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: тогда соединение берется
+ * при первом запросе, когда признак read-only транзакции уже установлен.
+ * <p>
+ * Чтения, которым нужны последние зафиксированные данные, выполняются через {@link #onPrimary}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    /**
+     * Отставание реплики в секундах: 0, если она применила все полученные изменения или не находится в восстановлении.
+     */
+    private static final String LAG_QUERY = """
+            select case
+                       when not pg_is_in_recovery() or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                       else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)
+                   end""";
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final double maxLagSeconds;
+
+    private final Counter primaryConnections;
+
+    private final Counter replicaConnections;
+
+    private final Counter fallbackConnections;
+
+    /**
+     * Конструктор источника.
+     *
+     * @param primary Основная бд, в которую идут запись и транзакции без read-only.
+     * @param replicas Реплики по имени.
+     * @param maxLag Отставание, после которого реплика не используется.
+     * @param meterRegistry Реестр метрик.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag,
+                                    MeterRegistry meterRegistry) {
+        this.maxLagSeconds = maxLag.toNanos() / 1e9;
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource);
+            this.replicas.add(replica);
+            TimeGauge.builder("datasource.replica.lag", replica, TimeUnit.SECONDS, r -> r.lagSeconds)
+                    .description("Отставание реплики по последней проверке, NaN - реплика не ответила")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        });
+        this.primaryConnections = routedConnections(meterRegistry, "primary");
+        this.replicaConnections = routedConnections(meterRegistry, "replica");
+        this.fallbackConnections = routedConnections(meterRegistry, "primary-fallback");
+    }
+
+    private static Counter routedConnections(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("datasource.routed.connections")
+                .description("Соединения по месту назначения: primary - запись и чтение без реплик, "
+                        + "replica - чтение с реплики, "
+                        + "primary-fallback - чтение из основной бд, потому что все реплики отстают или недоступны")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет действие так, что все соединения, взятые в нем, идут в основную бд, даже в read-only транзакции.
+     * Не действует на транзакцию, которая уже взяла соединение до вызова.
+     *
+     * @param action Действие, например чтение, после которого данные записываются обратно.
+     * @return Результат действия.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = FORCE_PRIMARY.get();
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                FORCE_PRIMARY.remove();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        // Без реплик основная бд - обычное место чтения, а не запасное
+        if (replicas.isEmpty() || FORCE_PRIMARY.get() != null
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryConnections.increment();
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), size));
+            if (replica.available) {
+                replicaConnections.increment();
+                return replica.name;
+            }
+        }
+        fallbackConnections.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * Проверяет отставание реплик и исключает из чтения отстающие и недоступные.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replicas.check-interval-ms:1000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            double lag;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                resultSet.next();
+                lag = resultSet.getDouble(1);
+            } catch (SQLException e) {
+                lag = Double.NaN;
+                if (replica.available) {
+                    log.warn("Replica {} is unavailable, reads go to other replicas or primary", replica.name, e);
+                }
+            }
+            boolean available = lag <= maxLagSeconds;
+            if (replica.available && !available && !Double.isNaN(lag)) {
+                log.warn("Replica {} lags {}s behind primary, reads go to other replicas or primary",
+                        replica.name, lag);
+            } else if (!replica.available && available) {
+                log.info("Replica {} is back with lag {}s", replica.name, lag);
+            }
+            replica.lagSeconds = lag;
+            replica.available = available;
+        }
+    }
+
+    /**
+     * Закрывает пулы соединений реплик; основная бд закрывается отдельно.
+     */
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        private volatile double lagSeconds;
+
+        private volatile boolean available = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package sia.pairschallenge.search;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.springframework.scheduling.annotation.Scheduled;
+import sia.pairschallenge.repository.Product;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Встроенный поисковый индекс продуктов на Lucene.
+ * <p>
+ * Индекс обновляется по одному продукту из тех же мест ProductServiceImpl, где обновляется кэш,
+ * то есть после фиксации транзакции. Изменения видны поиску после периодического обновления читателя
+ * (search.refresh-interval-ms), на диск они фиксируются раз в search.commit-interval-ms и при остановке.
+ * Изменения, не зафиксированные до аварийной остановки, теряются: индекс нужно перестроить через {@link #rebuild}.
+ * <p>
+ * Индекс хранит только идентификатор продукта, продукты по найденным идентификаторам читаются из кэша.
+ */
+public class ProductSearchIndex implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(ProductSearchIndex.class);
+
+    private static final String ID = "id";
+
+    private static final String NAME = "name";
+
+    private static final String DESCRIPTION = "description";
+
+    private static final String PRICE = "price";
+
+    private static final String QUANTITY = "quantity";
+
+    /**
+     * Совпадение в названии важнее совпадения в описании.
+     */
+    private static final float NAME_BOOST = 2.0f;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final IndexWriter writer;
+
+    private final SearcherManager searcherManager;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * Разделяемая блокировка берется на каждое изменение, исключительная — на начало и конец перестроения.
+     */
+    private final ReentrantReadWriteLock changeLock = new ReentrantReadWriteLock();
+
+    /**
+     * Изменения, пришедшие во время перестроения; пустое значение означает удаление.
+     * Вне перестроения равно null.
+     */
+    private volatile Map<Integer, Optional<Product>> pendingDuringRebuild;
+
+    /**
+     * Конструктор индекса.
+     *
+     * @param directory Каталог индекса Lucene.
+     * @throws IOException Если индекс не удалось открыть.
+     */
+    public ProductSearchIndex(Directory directory) throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        this.writer = new IndexWriter(directory, config);
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    /**
+     * Добавляет продукты в индекс или заменяет их прежние версии.
+     *
+     * @param products Сохраненные продукты.
+     */
+    public void index(Collection<Product> products) {
+        changeLock.readLock().lock();
+        try {
+            for (Product product : products) {
+                writer.updateDocument(idTerm(product.getId()), document(product));
+            }
+            Map<Integer, Optional<Product>> pending = pendingDuringRebuild;
+            if (pending != null) {
+                products.forEach(product -> pending.put(product.getId(), Optional.of(product)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет продукты из индекса.
+     *
+     * @param ids Идентификаторы удаленных продуктов.
+     */
+    public void delete(Collection<Integer> ids) {
+        changeLock.readLock().lock();
+        try {
+            writer.deleteDocuments(ids.stream().map(ProductSearchIndex::idTerm).toArray(Term[]::new));
+            Map<Integer, Optional<Product>> pending = pendingDuringRebuild;
+            if (pending != null) {
+                ids.forEach(id -> pending.put(id, Optional.empty()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Перестраивает индекс из источника всех продуктов.
+     * Изменения, сделанные во время чтения источника, применяются повторно после него,
+     * чтобы прочитанная раньше версия продукта не перетерла более новую.
+     *
+     * @param source Источник, который передает все продукты в указанное действие.
+     * @return Количество проиндексированных продуктов.
+     */
+    public long rebuild(Consumer<Consumer<Product>> source) {
+        rebuildLock.lock();
+        try {
+            Map<Integer, Optional<Product>> pending = new ConcurrentHashMap<>();
+            long[] count = {0};
+            changeLock.writeLock().lock();
+            try {
+                pendingDuringRebuild = pending;
+                writer.deleteAll();
+            } finally {
+                changeLock.writeLock().unlock();
+            }
+            try {
+                source.accept(product -> {
+                    try {
+                        writer.updateDocument(idTerm(product.getId()), document(product));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            } finally {
+                // Повтор изменений под исключительной блокировкой: параллельное изменение не вклинится
+                // между повтором и снятием журнала и не будет перетерто более старой версией
+                changeLock.writeLock().lock();
+                try {
+                    for (Map.Entry<Integer, Optional<Product>> change : pending.entrySet()) {
+                        if (change.getValue().isPresent()) {
+                            writer.updateDocument(idTerm(change.getKey()), document(change.getValue().get()));
+                        } else {
+                            writer.deleteDocuments(idTerm(change.getKey()));
+                        }
+                    }
+                    pendingDuringRebuild = null;
+                } finally {
+                    changeLock.writeLock().unlock();
+                }
+            }
+            commit();
+            refresh();
+            log.info("Product search index rebuilt: {} products", count[0]);
+            return count[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Ищет продукты по тексту и диапазонам цены и количества.
+     * Каждое слово запроса должно совпасть с началом слова в названии или описании.
+     *
+     * @param text Текст запроса, или null, чтобы искать только по фильтрам.
+     * @param minPrice Нижняя граница цены включительно, или null.
+     * @param maxPrice Верхняя граница цены включительно, или null.
+     * @param minQuantity Нижняя граница количества включительно, или null.
+     * @param maxQuantity Верхняя граница количества включительно, или null.
+     * @param limit Максимальное количество результатов.
+     * @return Общее количество совпадений и идентификаторы лучших из них по релевантности.
+     */
+    public Hits search(String text, BigDecimal minPrice, BigDecimal maxPrice,
+                       Integer minQuantity, Integer maxQuantity, int limit) {
+        Query query = query(text, minPrice, maxPrice, minQuantity, maxQuantity);
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(query, limit);
+                List<Integer> ids = new ArrayList<>(topDocs.scoreDocs.length);
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    ids.add(Integer.valueOf(searcher.storedFields().document(scoreDoc.doc, Set.of(ID)).get(ID)));
+                }
+                return new Hits(searcher.count(query), ids);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Есть ли в индексе хотя бы один продукт.
+     */
+    public boolean isEmpty() {
+        return writer.getDocStats().numDocs == 0;
+    }
+
+    /**
+     * Делает последние изменения видимыми для поиска.
+     */
+    @Scheduled(fixedDelayString = "${search.refresh-interval-ms:500}")
+    public void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("Product search index refresh failed", e);
+        }
+    }
+
+    /**
+     * Фиксирует изменения индекса на диске.
+     */
+    @Scheduled(fixedDelayString = "${search.commit-interval-ms:10000}")
+    public void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            log.error("Product search index commit failed", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+    }
+
+    private Query query(String text, BigDecimal minPrice, BigDecimal maxPrice,
+                        Integer minQuantity, Integer maxQuantity) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        boolean empty = true;
+        for (String term : terms(text)) {
+            Query byName = new BoostQuery(new PrefixQuery(new Term(NAME, term)), NAME_BOOST);
+            Query byDescription = new PrefixQuery(new Term(DESCRIPTION, term));
+            query.add(new BooleanQuery.Builder()
+                    .add(byName, BooleanClause.Occur.SHOULD)
+                    .add(byDescription, BooleanClause.Occur.SHOULD)
+                    .build(), BooleanClause.Occur.MUST);
+            empty = false;
+        }
+        if (minPrice != null || maxPrice != null) {
+            query.add(DoublePoint.newRangeQuery(PRICE,
+                    minPrice != null ? minPrice.doubleValue() : Double.NEGATIVE_INFINITY,
+                    maxPrice != null ? maxPrice.doubleValue() : Double.POSITIVE_INFINITY), BooleanClause.Occur.FILTER);
+            empty = false;
+        }
+        if (minQuantity != null || maxQuantity != null) {
+            query.add(IntPoint.newRangeQuery(QUANTITY,
+                    minQuantity != null ? minQuantity : Integer.MIN_VALUE,
+                    maxQuantity != null ? maxQuantity : Integer.MAX_VALUE), BooleanClause.Occur.FILTER);
+            empty = false;
+        }
+        return empty ? new MatchAllDocsQuery() : query.build();
+    }
+
+    /**
+     * Разбивает текст запроса на слова тем же анализатором, что и при индексации.
+     */
+    private List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(NAME, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private static Document document(Product product) {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(product.getId()), Field.Store.YES));
+        if (product.getName() != null) {
+            document.add(new TextField(NAME, product.getName(), Field.Store.NO));
+        }
+        if (product.getDescription() != null) {
+            document.add(new TextField(DESCRIPTION, product.getDescription(), Field.Store.NO));
+        }
+        if (product.getPrice() != null) {
+            document.add(new DoublePoint(PRICE, product.getPrice().doubleValue()));
+        }
+        if (product.getQuantity() != null) {
+            document.add(new IntPoint(QUANTITY, product.getQuantity()));
+        }
+        return document;
+    }
+
+    private static Term idTerm(int id) {
+        return new Term(ID, String.valueOf(id));
+    }
+
+    /**
+     * Результат поиска.
+     *
+     * @param total Общее количество совпадений.
+     * @param ids Идентификаторы лучших совпадений в порядке релевантности.
+     */
+    public record Hits(long total, List<Integer> ids) {
+    }
+}
@@ -0,0 +1,34 @@
+package sia.pairschallenge.search;
+
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Конфигурация встроенного поискового индекса продуктов.
+ */
+@Configuration
+public class SearchConfig {
+
+    @Value("${search.index-path:data/search-index}")
+    private Path indexPath;
+
+    /**
+     * Открывает индекс продуктов в каталоге search.index-path, создавая его при необходимости.
+     * Индекс закрывается при остановке контекста, незафиксированные изменения при этом сохраняются.
+     * Создается сразу и при spring.main.lazy-initialization, чтобы обновление и фиксация индекса были запланированы.
+     *
+     * @return Поисковый индекс продуктов.
+     * @throws IOException Если каталог индекса не удалось открыть.
+     */
+    @Bean(destroyMethod = "close")
+    @Lazy(false)
+    public ProductSearchIndex productSearchIndex() throws IOException {
+        return new ProductSearchIndex(FSDirectory.open(indexPath));
+    }
+}
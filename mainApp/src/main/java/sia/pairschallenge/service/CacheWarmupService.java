@@ -0,0 +1,6 @@
+package sia.pairschallenge.service;
+
+public interface CacheWarmupService {
+
+    int warmUp();
+}
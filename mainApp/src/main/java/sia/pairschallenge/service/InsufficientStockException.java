@@ -0,0 +1,11 @@
+package sia.pairschallenge.service;
+
+/**
+ * Изменение количества продукта сделало бы остаток отрицательным.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
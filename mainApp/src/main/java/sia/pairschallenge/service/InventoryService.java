@@ -0,0 +1,10 @@
+package sia.pairschallenge.service;
+
+public interface InventoryService {
+
+    long reserve(Integer id, int quantity);
+
+    long release(Integer id, int quantity);
+
+    int flush();
+}
@@ -0,0 +1,31 @@
+package sia.pairschallenge.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+public interface ProductImportService {
+
+    ImportResult importProducts(InputStream input) throws IOException;
+
+    /**
+     * Итог импорта продуктов.
+     *
+     * @param imported Общее количество сохраненных продуктов.
+     * @param elapsedMillis Время импорта в миллисекундах.
+     * @param chunks Прогресс по каждому сохраненному блоку.
+     */
+    record ImportResult(long imported, long elapsedMillis, List<ChunkProgress> chunks) {
+    }
+
+    /**
+     * Прогресс импорта после сохранения очередного блока.
+     *
+     * @param chunk Порядковый номер блока, начиная с 1.
+     * @param size Количество продуктов в блоке.
+     * @param imported Количество продуктов, сохраненных к этому моменту.
+     * @param elapsedMillis Время сохранения блока в миллисекундах.
+     */
+    record ChunkProgress(int chunk, int size, long imported, long elapsedMillis) {
+    }
+}
@@ -0,0 +1,36 @@
+package sia.pairschallenge.service;
+
+import sia.pairschallenge.repository.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface ProductSearchService {
+
+    SearchResult search(SearchQuery query);
+
+    long rebuildIndex();
+
+    /**
+     * Параметры поиска продуктов. Незаданные (null) условия не ограничивают результат.
+     *
+     * @param text Слова, которые должны встретиться в названии или описании (совпадение по началу слова).
+     * @param minPrice Нижняя граница цены включительно.
+     * @param maxPrice Верхняя граница цены включительно.
+     * @param minQuantity Нижняя граница количества включительно.
+     * @param maxQuantity Верхняя граница количества включительно.
+     * @param limit Максимальное количество продуктов в ответе.
+     */
+    record SearchQuery(String text, BigDecimal minPrice, BigDecimal maxPrice,
+                       Integer minQuantity, Integer maxQuantity, int limit) {
+    }
+
+    /**
+     * Результат поиска продуктов.
+     *
+     * @param total Общее количество совпадений.
+     * @param products Лучшие совпадения в порядке релевантности.
+     */
+    record SearchResult(long total, List<Product> products) {
+    }
+}
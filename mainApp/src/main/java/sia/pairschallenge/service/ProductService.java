@@ -2,18 +2,38 @@ package sia.pairschallenge.service;
 
 import org.springframework.data.domain.Pageable;
 import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.repository.ProductPatch;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ProductService{
 
-    void update(Integer id, Product product);
+    Product update(Integer id, Product product);
+
+    Product update(Integer id, Product product, Long expectedVersion);
+
+    Product patch(Integer id, ProductPatch patch, Long expectedVersion);
+
+    Product adjustStock(Integer id, int delta);
 
     Product findById(Integer id);
 
+    List<Product> findAllById(List<Integer> ids);
+
     void deleteById(Integer id);
 
-    void create(Product product);
+    Product create(Product product);
 
     List<Product> findAll(Pageable pageable);
+
+    List<Product> findAfter(int afterId, int size);
+
+    void forEachProduct(Consumer<Product> action);
+
+    List<Product> createAll(List<Product> products);
+
+    List<Product> updateAll(List<Product> products);
+
+    void deleteAllById(List<Integer> ids);
 }
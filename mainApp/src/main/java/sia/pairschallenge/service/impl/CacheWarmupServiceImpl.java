@@ -0,0 +1,101 @@
+package sia.pairschallenge.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+import sia.pairschallenge.redis.HotKeyTracker;
+import sia.pairschallenge.service.CacheWarmupService;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Прогрев кэша продуктов при запуске инстанса.
+ * <p>
+ * Самые запрашиваемые продукты по {@link HotKeyTracker} читаются через {@link ProductServiceImpl#findAllById}
+ * пачками по cache.warmup.batch-size: одно MGET в Redis, один запрос в бд за промахами и запись промахов
+ * в Redis конвейером на пачку. Так заполняются и локальный кэш инстанса, и Redis, если он тоже пуст.
+ * <p>
+ * Прогрев выполняется как {@link ApplicationRunner}, то есть до того, как приложение сообщит о готовности
+ * (readiness-проба /actuator/health/readiness), поэтому первые запросы к инстансу не уходят в бд.
+ * Ошибка прогрева не останавливает запуск: инстанс начинает работу с холодным кэшем.
+ */
+@Service
+public class CacheWarmupServiceImpl implements CacheWarmupService, ApplicationRunner {
+
+    private static final Logger log = LogManager.getLogger(CacheWarmupServiceImpl.class);
+
+    private final HotKeyTracker hotKeyTracker;
+
+    private final ProductServiceImpl productService;
+
+    private final Timer warmupTime;
+
+    private final AtomicInteger warmedProducts = new AtomicInteger();
+
+    @Value("${cache.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.warmup.top-n:1000}")
+    private int topN;
+
+    @Value("${cache.warmup.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Конструктор прогрева.
+     *
+     * @param hotKeyTracker Учет запрашиваемых продуктов.
+     * @param productService Сервис продуктов, через который продукты читаются в кэш.
+     * @param meterRegistry Реестр метрик.
+     */
+    public CacheWarmupServiceImpl(HotKeyTracker hotKeyTracker, ProductServiceImpl productService,
+                                  MeterRegistry meterRegistry) {
+        this.hotKeyTracker = hotKeyTracker;
+        this.productService = productService;
+        this.warmupTime = Timer.builder("cache.warmup.time")
+                .description("Время прогрева кэша продуктов при запуске")
+                .register(meterRegistry);
+        Gauge.builder("cache.warmup.products", warmedProducts, AtomicInteger::get)
+                .description("Количество продуктов, загруженных в кэш при запуске")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Загружает в кэш cache.warmup.top-n самых запрашиваемых продуктов.
+     *
+     * @return Количество найденных и закэшированных продуктов.
+     */
+    @Override
+    public int warmUp() {
+        return warmupTime.record(() -> {
+            List<Integer> ids = hotKeyTracker.top(topN);
+            int warmed = 0;
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                warmed += productService.findAllById(ids.subList(from, Math.min(from + batchSize, ids.size()))).size();
+            }
+            warmedProducts.set(warmed);
+            return warmed;
+        });
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            int warmed = warmUp();
+            log.info("Product cache warmed up with {} products in {} ms", warmed, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Product cache warm-up failed, starting with a cold cache", e);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package sia.pairschallenge.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityNotFoundException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import sia.pairschallenge.redis.InventoryCounters;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.repository.ProductRepository;
+import sia.pairschallenge.repository.ReplicaRoutingDataSource;
+import sia.pairschallenge.service.InsufficientStockException;
+import sia.pairschallenge.service.InventoryService;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Резервирование остатков продуктов через {@link InventoryCounters} с отложенной записью в бд.
+ * <p>
+ * Резервирование не блокирует строку product: остаток меняется скриптом Redis, а изменения
+ * накапливаются и раз в inventory.flush-interval-ms записываются в бд одним
+ * quantity = quantity + delta на продукт через {@link ProductServiceImpl#adjustStock}, вместе с событием outbox
+ * и обновлением кэша. Поэтому количество в продукте отстает от остатка в Redis на интервал записи.
+ * <p>
+ * Пока остатка нет в Redis, он заполняется из бд вместе с еще не записанными изменениями. Пока идет запись
+ * изменений этого продукта, значение из бд может их не учитывать, поэтому заполнение повторяется после паузы,
+ * а если запись так и не закончилась, резервирование отклоняется с {@link ConcurrencyFailureException}:
+ * продать сверх остатка нельзя ни в одном случае.
+ * Запись количества в обход резервирований (PUT, PATCH с quantity, удаление) сбрасывает остаток в Redis,
+ * а пополнение во время распродажи нужно проводить через {@link #release}, иначе Redis его не увидит
+ * до истечения остатка (inventory.counter-ttl).
+ * Изменения, забранные для записи, удаляются из Redis после записи каждого продукта, поэтому падение
+ * инстанса между фиксацией в бд и удалением может повторно применить изменение одного продукта.
+ */
+@Service
+@Lazy(false)
+public class InventoryServiceImpl implements InventoryService {
+
+    private static final Logger log = LogManager.getLogger(InventoryServiceImpl.class);
+
+    private static final int SEED_ATTEMPTS = 20;
+
+    private static final Duration SEED_RETRY_PAUSE = Duration.ofMillis(10);
+
+    private final InventoryCounters inventoryCounters;
+
+    private final ProductRepository productRepository;
+
+    private final ProductServiceImpl productService;
+
+    private final Counter appliedChanges;
+
+    private final Counter rejectedChanges;
+
+    private final Counter busyChanges;
+
+    private final Timer flushTime;
+
+    /**
+     * Конструктор сервиса остатков.
+     *
+     * @param inventoryCounters Остатки продуктов в Redis.
+     * @param productRepository Репозиторий, из которого заполняются остатки.
+     * @param productService Сервис продуктов, через который изменения записываются в бд.
+     * @param meterRegistry Реестр метрик.
+     */
+    public InventoryServiceImpl(InventoryCounters inventoryCounters, ProductRepository productRepository,
+                                ProductServiceImpl productService, MeterRegistry meterRegistry) {
+        this.inventoryCounters = inventoryCounters;
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.appliedChanges = changes(meterRegistry, "applied");
+        this.rejectedChanges = changes(meterRegistry, "insufficient");
+        this.busyChanges = changes(meterRegistry, "busy");
+        this.flushTime = Timer.builder("inventory.flush.time")
+                .description("Время записи накопленных изменений остатков в бд")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Резервирует количество продукта.
+     *
+     * @param id Идентификатор продукта.
+     * @param quantity Резервируемое количество.
+     * @return Остаток после резервирования.
+     * @throws EntityNotFoundException Если продукт не найден.
+     * @throws InsufficientStockException Если остатка не хватает.
+     * @throws ConcurrencyFailureException Если остаток не удалось заполнить из бд; запрос можно повторить.
+     */
+    @Override
+    public long reserve(Integer id, int quantity) {
+        return change(id, -checkPositive(quantity));
+    }
+
+    /**
+     * Возвращает зарезервированное количество продукта или пополняет остаток.
+     *
+     * @param id Идентификатор продукта.
+     * @param quantity Возвращаемое количество.
+     * @return Остаток после возврата.
+     * @throws EntityNotFoundException Если продукт не найден.
+     */
+    @Override
+    public long release(Integer id, int quantity) {
+        return change(id, checkPositive(quantity));
+    }
+
+    /**
+     * Записывает накопленные изменения остатков в бд, по одному обновлению на продукт.
+     * Изменение продукта, которого больше нет или у которого в бд не хватает количества
+     * (его уменьшили в обход резервирований), отбрасывается с предупреждением.
+     * При другой ошибке запись прерывается, незаписанные изменения остаются в Redis до следующего раза.
+     *
+     * @return Количество продуктов, изменения которых записаны.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${inventory.flush-interval-ms:200}")
+    public int flush() {
+        String lease = inventoryCounters.tryAcquireFlush();
+        if (lease == null) {
+            return 0;
+        }
+        int flushed = 0;
+        Timer.Sample sample = Timer.start();
+        try {
+            Map<Integer, Long> deltas = inventoryCounters.takePending();
+            for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+                apply(delta.getKey(), delta.getValue());
+                inventoryCounters.complete(delta.getKey());
+                flushed++;
+            }
+        } catch (RuntimeException e) {
+            log.error("Inventory flush failed, pending changes will be retried", e);
+        } finally {
+            sample.stop(flushTime);
+            inventoryCounters.releaseFlush(lease);
+        }
+        return flushed;
+    }
+
+    private long change(Integer id, int delta) {
+        long remaining = inventoryCounters.change(id, delta);
+        for (int attempt = 1; remaining == InventoryCounters.MISSING; attempt++) {
+            if (!seed(id)) {
+                if (attempt == SEED_ATTEMPTS) {
+                    busyChanges.increment();
+                    throw new ConcurrencyFailureException("Inventory of product " + id + " is being flushed");
+                }
+                LockSupport.parkNanos(SEED_RETRY_PAUSE.toNanos());
+            }
+            remaining = inventoryCounters.change(id, delta);
+        }
+        if (remaining == InventoryCounters.INSUFFICIENT) {
+            rejectedChanges.increment();
+            throw new InsufficientStockException("Product " + id + " has not enough stock for " + -delta);
+        }
+        appliedChanges.increment();
+        return remaining;
+    }
+
+    /**
+     * Заполняет остаток продукта из основной бд: на реплике может не быть последних записанных изменений.
+     *
+     * @return false, если остаток нельзя заполнить сейчас, потому что изменения записываются в бд.
+     */
+    private boolean seed(Integer id) {
+        String generation = inventoryCounters.generation(id);
+        Product product = ReplicaRoutingDataSource.onPrimary(() -> productRepository.findById(id))
+                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+        return inventoryCounters.seed(id, product.getQuantity(), generation);
+    }
+
+    private void apply(Integer id, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        try {
+            productService.adjustStock(id, Math.toIntExact(delta));
+        } catch (EntityNotFoundException | InsufficientStockException e) {
+            log.warn("Inventory change {} of product {} dropped: {}", delta, id, e.getMessage());
+        }
+    }
+
+    private static int checkPositive(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        return quantity;
+    }
+
+    private static Counter changes(MeterRegistry registry, String result) {
+        return Counter.builder("inventory.changes")
+                .description("Резервирования и возвраты остатков: выполненные, отклоненные из-за остатка и из-за идущей записи")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,99 @@
+package sia.pairschallenge.service.impl;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.service.ProductImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковый импорт продуктов из NDJSON (один JSON-объект продукта на строку).
+ * Тело запроса читается потоковым парсером Jackson по одной записи, продукты сохраняются
+ * блоками фиксированного размера, после каждого блока контекст персистентности очищается,
+ * поэтому расход памяти не зависит от размера загрузки.
+ */
+@Service
+public class ProductImportServiceImpl implements ProductImportService {
+
+    private static final Logger log = LogManager.getLogger(ProductImportServiceImpl.class);
+
+    private final ProductServiceImpl productService;
+
+    private final ObjectReader productReader;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${products.import.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Конструктор для инициализации сервиса импорта.
+     *
+     * @param productService Сервис продуктов, через который сохраняется каждый блок.
+     * @param objectMapper ObjectMapper приложения для разбора записей.
+     */
+    public ProductImportServiceImpl(ProductServiceImpl productService, ObjectMapper objectMapper) {
+        this.productService = productService;
+        this.productReader = objectMapper.readerFor(Product.class);
+    }
+
+    /**
+     * Импортирует продукты из потока NDJSON.
+     * Каждый блок сохраняется в своей транзакции, поэтому при ошибке разбора
+     * уже сохраненные блоки остаются в бд.
+     *
+     * @param input Поток с телом запроса.
+     * @return Итог импорта с прогрессом по блокам.
+     * @throws IOException Если поток не удалось прочитать или запись не является корректным продуктом.
+     */
+    @Override
+    public ImportResult importProducts(InputStream input) throws IOException {
+        long started = System.nanoTime();
+        List<ChunkProgress> progress = new ArrayList<>();
+        List<Product> chunk = new ArrayList<>(chunkSize);
+        long imported = 0;
+
+        try (MappingIterator<Product> products = productReader.readValues(input)) {
+            while (products.hasNextValue()) {
+                chunk.add(products.nextValue());
+                if (chunk.size() == chunkSize) {
+                    imported = saveChunk(chunk, progress, imported);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported = saveChunk(chunk, progress, imported);
+        }
+
+        return new ImportResult(imported, (System.nanoTime() - started) / 1_000_000, progress);
+    }
+
+    private long saveChunk(List<Product> chunk, List<ChunkProgress> progress, long imported) {
+        long started = System.nanoTime();
+
+        productService.createAll(chunk);
+        // При open-in-view контекст живет весь запрос, без очистки он накопил бы все сохраненные продукты
+        entityManager.clear();
+
+        imported += chunk.size();
+        ChunkProgress chunkProgress = new ChunkProgress(progress.size() + 1, chunk.size(), imported,
+                (System.nanoTime() - started) / 1_000_000);
+        progress.add(chunkProgress);
+        log.info("Import chunk {} saved: {} products, {} total", chunkProgress.chunk(), chunk.size(), imported);
+
+        chunk.clear();
+        return imported;
+    }
+}
@@ -0,0 +1,136 @@
+package sia.pairschallenge.service.impl;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Service;
+import sia.pairschallenge.redis.ProductChangeChannel;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.repository.ProductRepository;
+import sia.pairschallenge.repository.ReplicaRoutingDataSource;
+import sia.pairschallenge.search.ProductSearchIndex;
+import sia.pairschallenge.service.ProductSearchService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Реализация поиска продуктов по встроенному индексу.
+ * Индекс возвращает только идентификаторы, сами продукты читаются через кэш одним MGET,
+ * поэтому поиск не обращается к таблице продуктов, пока они есть в кэше.
+ * При запуске индекс перестраивается из таблицы: пока инстанс был остановлен, продукты менялись без него.
+ * С search.rebuild-on-startup=false индекс строится, только если он пуст.
+ * <p>
+ * Продукты, измененные другими инстансами и реактивным приложением, приходят идентификаторами через канал Redis
+ * products.change-channel ({@link ProductChangeChannel}, см. {@link #onMessage}) и переиндексируются
+ * по данным основной бд.
+ */
+@Service
+public class ProductSearchServiceImpl implements ProductSearchService, ApplicationRunner, MessageListener {
+
+    private static final Logger log = LogManager.getLogger(ProductSearchServiceImpl.class);
+
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ProductServiceImpl productService;
+
+    private final ProductRepository productRepository;
+
+    private final ProductChangeChannel productChangeChannel;
+
+    @Value("${search.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    /**
+     * Конструктор сервиса поиска.
+     *
+     * @param productSearchIndex Поисковый индекс продуктов.
+     * @param productService Сервис продуктов для чтения найденных продуктов и перестроения индекса.
+     * @param productRepository Репозиторий для чтения продуктов, измененных другими инстансами.
+     * @param productChangeChannel Канал изменений продуктов, по которому отличаются собственные сообщения.
+     */
+    public ProductSearchServiceImpl(ProductSearchIndex productSearchIndex, ProductServiceImpl productService,
+                                    ProductRepository productRepository, ProductChangeChannel productChangeChannel) {
+        this.productSearchIndex = productSearchIndex;
+        this.productService = productService;
+        this.productRepository = productRepository;
+        this.productChangeChannel = productChangeChannel;
+    }
+
+    /**
+     * Ищет продукты по тексту и диапазонам цены и количества.
+     *
+     * @param query Параметры поиска.
+     * @return Общее количество совпадений и лучшие из них.
+     */
+    @Override
+    public SearchResult search(SearchQuery query) {
+        ProductSearchIndex.Hits hits = productSearchIndex.search(query.text(), query.minPrice(), query.maxPrice(),
+                query.minQuantity(), query.maxQuantity(), query.limit());
+        if (hits.ids().isEmpty()) {
+            return new SearchResult(hits.total(), List.of());
+        }
+        return new SearchResult(hits.total(), productService.findAllById(hits.ids()));
+    }
+
+    /**
+     * Перестраивает индекс из таблицы продуктов, читая ее серверным курсором.
+     *
+     * @return Количество проиндексированных продуктов.
+     */
+    @Override
+    public long rebuildIndex() {
+        return productSearchIndex.rebuild(productService::forEachProduct);
+    }
+
+    /**
+     * Переиндексирует продукты: найденные в бд индексируются заново, остальные удаляются из индекса.
+     * Продукты читаются из основной бд, мимо кэша и реплик: сообщение об изменении могло опередить
+     * и инвалидацию локального кэша, и репликацию.
+     *
+     * @param ids Идентификаторы измененных продуктов.
+     */
+    public void reindex(Collection<Integer> ids) {
+        List<Product> products = ReplicaRoutingDataSource.onPrimary(() -> productRepository.findAllById(ids));
+        Set<Integer> deleted = new HashSet<>(ids);
+        products.forEach(product -> deleted.remove(product.getId()));
+        productSearchIndex.index(products);
+        productSearchIndex.delete(deleted);
+    }
+
+    /**
+     * Обрабатывает сообщение об изменении продуктов в формате "instanceId|id,id,...".
+     * Сообщения текущего инстанса пропускаются, так как он уже обновил свой индекс.
+     *
+     * @param message Сообщение из канала Redis.
+     * @param pattern Шаблон подписки.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        List<Integer> ids;
+        try {
+            ids = productChangeChannel.foreignIds(body);
+        } catch (NumberFormatException e) {
+            log.warn("Malformed product change message: {}", body);
+            return;
+        }
+        if (!ids.isEmpty()) {
+            reindex(ids);
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (rebuildOnStartup || productSearchIndex.isEmpty()) {
+            rebuildIndex();
+        }
+    }
+}
@@ -1,113 +1,451 @@
 package sia.pairschallenge.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import sia.pairschallenge.redis.CacheLoadLease;
+import sia.pairschallenge.redis.HotKeyTracker;
+import sia.pairschallenge.redis.InventoryCounters;
+import sia.pairschallenge.redis.ProductChangeChannel;
+import sia.pairschallenge.redis.TwoTierCache;
+import sia.pairschallenge.repository.OutboxEvent;
+import sia.pairschallenge.repository.OutboxEventRepository;
 import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.repository.ProductPatch;
 import sia.pairschallenge.repository.ProductRepository;
+import sia.pairschallenge.repository.ReplicaRoutingDataSource;
+import sia.pairschallenge.search.ProductSearchIndex;
+import sia.pairschallenge.service.InsufficientStockException;
 import sia.pairschallenge.service.ProductService;
 import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
 
-
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Реализация сервиса для управления продуктами.
  * Предоставляет методы для создания, обновления, удаления и получения продуктов.
+ * <p>
+ * Кэш productCache работает в режиме write-through: запись в бд и в кэш, а также
+ * загрузка промаха из бд в кэш выполняются под блокировкой по идентификатору продукта,
+ * поэтому параллельные обновления и чтения не оставляют в кэше устаревшее значение.
+ * <p>
+ * События для Kafka не отправляются напрямую: они записываются в таблицу outbox
+ * в той же транзакции, что и изменение продукта, и отправляются фоновым {@link sia.pairschallenge.kafka.OutboxRelay}.
+ * <p>
+ * Поисковый индекс {@link ProductSearchIndex} обновляется там же, где кэш, после фиксации транзакции;
+ * идентификаторы измененных продуктов публикуются в {@link ProductChangeChannel}, чтобы свои индексы
+ * обновили остальные инстансы.
+ * <p>
+ * Запись количества в обход резервирований сбрасывает остаток продукта в {@link InventoryCounters}.
+ * <p>
+ * Параллельные изменения одного продукта с разных инстансов разделяет версия продукта ({@link Product#getVersion()}):
+ * запись с устаревшей версией завершается {@link OptimisticLockingFailureException}.
+ * <p>
+ * Страницы и выгрузка идут на реплики бд, если они настроены ({@link ReplicaRoutingDataSource}), а промахи кэша
+ * читаются из основной бд: версия с отстающей реплики перезаписала бы в кэше более новую до истечения TTL.
+ * Удаление оставляет в кэше отметку об отсутствии продукта вместо удаления записи.
  */
 @Service
-@CacheConfig(cacheNames = "productCache")
 public class ProductServiceImpl implements ProductService {
 
-    private static final Logger log = LogManager.getLogger(ProductServiceImpl.class);
+    public static final String PRODUCT_CACHE = "productCache";
+
+    public static final String PRODUCT_EVENTS_TOPIC = "product-events";
+
+    private static final int LOCK_STRIPES = 64;
 
     private final ProductRepository productRepository;
 
-    private final KafkaTemplate<String, ProductEvent> kafkaTemplate;
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final Cache productCache;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final CacheLoadLease cacheLoadLease;
+
+    private final ProductSearchIndex productSearchIndex;
+
+    private final InventoryCounters inventoryCounters;
+
+    private final HotKeyTracker hotKeyTracker;
+
+    private final ProductChangeChannel productChangeChannel;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     /**
-     * Конструктор для инициализации сервиса с репозиторием продуктов и KafkaTemplate.
+     * Конструктор для инициализации сервиса с репозиторием продуктов и репозиторием outbox.
      *
      * @param productRepository Репозиторий для работы с продуктами.
-     * @param kafkaTemplate Шаблон для отправки сообщений в Kafka.
+     * @param outboxEventRepository Репозиторий событий, ожидающих отправки в Kafka.
+     * @param objectMapper ObjectMapper для сохранения событий в outbox.
+     * @param cacheManager Менеджер кэшей, из которого берется productCache.
+     * @param transactionTemplate Шаблон транзакций, в которых продукт и событие записываются вместе.
+     * @param cacheLoadLease Аренда в Redis, чтобы промах кэша загружал из бд только один инстанс.
+     * @param productSearchIndex Поисковый индекс, который обновляется вместе с кэшем.
+     * @param inventoryCounters Остатки продуктов в Redis, которые сбрасываются при записи количества.
+     * @param hotKeyTracker Учет запрашиваемых продуктов для прогрева кэша при запуске.
+     * @param productChangeChannel Канал, через который изменения попадают в индексы других инстансов.
      */
     @Autowired
-    public ProductServiceImpl(ProductRepository productRepository, KafkaTemplate<String, ProductEvent> kafkaTemplate) {
+    public ProductServiceImpl(ProductRepository productRepository, OutboxEventRepository outboxEventRepository,
+                              ObjectMapper objectMapper, CacheManager cacheManager,
+                              TransactionTemplate transactionTemplate, CacheLoadLease cacheLoadLease,
+                              ProductSearchIndex productSearchIndex, InventoryCounters inventoryCounters,
+                              HotKeyTracker hotKeyTracker, ProductChangeChannel productChangeChannel) {
         this.productRepository = productRepository;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.productCache = cacheManager.getCache(PRODUCT_CACHE);
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.cacheLoadLease = cacheLoadLease;
+        this.productSearchIndex = productSearchIndex;
+        this.inventoryCounters = inventoryCounters;
+        this.hotKeyTracker = hotKeyTracker;
+        this.productChangeChannel = productChangeChannel;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
     }
 
     /**
-     * Обновляет существующий продукт.
+     * Обновляет существующий продукт и кладет сохраненную версию в кэш.
      *
      * @param id Идентификатор продукта, который нужно обновить.
      * @param product Объект продукта с новыми данными.
+     * @return Сохраненный продукт.
      * @throws EntityNotFoundException Если продукт с указанным идентификатором не найден.
      */
     @Override
-    @CachePut(key = "#product.id")
-    public void update(Integer id, Product product) {
-        Product productFromMainDB = productRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+    public Product update(Integer id, Product product) {
+        return update(id, product, null);
+    }
 
-        product.setId(id);
-        product.setCreatedAt(productFromMainDB.getCreatedAt());
+    /**
+     * Обновляет существующий продукт, если его версия равна ожидаемой, и кладет сохраненную версию в кэш.
+     * Версия проверяется дважды: при чтении продукта и в самом update (where version = ?),
+     * поэтому изменение, зафиксированное другим инстансом между ними, тоже не будет перезаписано.
+     *
+     * @param id Идентификатор продукта, который нужно обновить.
+     * @param product Объект продукта с новыми данными.
+     * @param expectedVersion Версия, которую клиент видел последней, или null без проверки.
+     * @return Сохраненный продукт.
+     * @throws EntityNotFoundException Если продукт с указанным идентификатором не найден.
+     * @throws OptimisticLockingFailureException Если продукт успели изменить.
+     */
+    @Override
+    public Product update(Integer id, Product product, Long expectedVersion) {
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            Product savedProduct = transactionTemplate.execute(status -> {
+                Product productFromMainDB = productRepository.findById(id)
+                        .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+                checkVersion(productFromMainDB, expectedVersion);
 
-        Product savedProduct = productRepository.save(product);
+                product.setId(id);
+                product.setCreatedAt(productFromMainDB.getCreatedAt());
+                product.setVersion(productFromMainDB.getVersion());
 
-        kafkaMessage("product updated", savedProduct);
+                Product saved = productRepository.saveAndFlush(product);
+                writeOutbox(ProductEventType.UPDATED, List.of(saved));
+                return saved;
+            });
+            productCache.put(id, savedProduct);
+            index(List.of(savedProduct));
+            inventoryCounters.reset(List.of(id));
+            return savedProduct;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Частично изменяет продукт одним запросом update, в котором перечислены только заданные поля,
+     * и кладет результат в кэш. Продукт не читается перед изменением; если запрос ничего не изменил,
+     * причина определяется повторным чтением.
+     *
+     * @param id Идентификатор продукта.
+     * @param patch Изменяемые поля.
+     * @param expectedVersion Версия, которую клиент видел последней, или null без проверки.
+     * @return Продукт после изменения.
+     * @throws EntityNotFoundException Если продукт с указанным идентификатором не найден.
+     * @throws OptimisticLockingFailureException Если продукт успели изменить.
+     * @throws InsufficientStockException Если количество стало бы отрицательным.
+     */
+    @Override
+    public Product patch(Integer id, ProductPatch patch, Long expectedVersion) {
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            Product patchedProduct = transactionTemplate.execute(status -> {
+                Product patched = productRepository.patch(id, patch, expectedVersion)
+                        .orElseThrow(() -> patchRejected(id, patch, expectedVersion));
+                writeOutbox(ProductEventType.UPDATED, List.of(patched));
+                return patched;
+            });
+            productCache.put(id, patchedProduct);
+            index(List.of(patchedProduct));
+            if (patch.quantity() != null) {
+                inventoryCounters.reset(List.of(id));
+            }
+            return patchedProduct;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Атомарно изменяет количество продукта на delta (quantity = quantity + delta в бд).
+     * Параллельные изменения не теряются и не требуют версии, остаток не уходит ниже нуля.
+     *
+     * @param id Идентификатор продукта.
+     * @param delta Изменение количества: отрицательное - списание, положительное - поступление.
+     * @return Продукт после изменения.
+     * @throws EntityNotFoundException Если продукт с указанным идентификатором не найден.
+     * @throws InsufficientStockException Если остатка не хватает для списания.
+     */
+    @Override
+    public Product adjustStock(Integer id, int delta) {
+        return patch(id, ProductPatch.quantityDelta(delta), null);
     }
 
     /**
      * Находит продукт по его идентификатору.
+     * При промахе кэша продукт читается из бд и кладется в кэш под блокировкой,
+     * чтобы загрузка не перетерла значение, записанное параллельным обновлением.
+     * Та же блокировка и повторная проверка кэша под ней дают одну загрузку на ключ в пределах инстанса,
+     * а аренда в Redis — одну на все инстансы: остальные ждут, пока значение появится в кэше.
+     * Отсутствующий продукт тоже кэшируется (null с коротким TTL), а запись, срок которой подходит к концу,
+     * обновляется заранее одним читателем, пока остальные получают текущее значение.
+     * Обращение учитывается в {@link HotKeyTracker}, чтобы после перезапуска прогреть кэш этим продуктом.
      *
      * @param id Идентификатор продукта.
      * @return Найденный продукт.
      * @throws EntityNotFoundException Если продукт с указанным идентификатором не найден.
      */
     @Override
-    @Cacheable(key = "#id")
     public Product findById(Integer id) {
-        return productRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+        hotKeyTracker.record(id);
+        Cache.ValueWrapper cached = productCache.get(id);
+        if (cached != null && !claimEarlyRefresh(id)) {
+            return unwrap(cached);
+        }
+
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            if (cached == null) {
+                cached = productCache.get(id);
+                if (cached != null) {
+                    return unwrap(cached);
+                }
+            }
+            return load(id, cached);
+        } finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * Находит продукты по списку идентификаторов за три обращения к хранилищам:
+     * одно чтение из кэша (MGET), один запрос в бд за промахами и одна запись промахов
+     * в кэш конвейером Redis. Загрузка промахов идет под блокировками их идентификаторов,
+     * как и в {@link #findById}, поэтому не перетирает значения параллельных обновлений.
+     * Промахи читаются из основной бд, как и в {@link #load}; ненайденные кэшируются как отсутствующие.
+     *
+     * @param ids Идентификаторы продуктов.
+     * @return Найденные продукты в порядке запроса, без повторов; ненайденные пропускаются.
+     */
+    @Override
+    public List<Product> findAllById(List<Integer> ids) {
+        Set<Integer> distinctIds = new LinkedHashSet<>(ids);
+        Map<Integer, Product> found = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        Map<Object, Cache.ValueWrapper> cached = getAllCached(distinctIds);
+        for (Integer id : distinctIds) {
+            Cache.ValueWrapper value = cached.get(id);
+            if (value == null) {
+                misses.add(id);
+            } else if (value.get() != null) {
+                found.put(id, (Product) value.get());
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            List<ReentrantLock> acquired = lockAll(misses);
+            try {
+                Map<Integer, Product> loaded = new HashMap<>();
+                misses.forEach(id -> loaded.put(id, null));
+                ReplicaRoutingDataSource.onPrimary(() -> productRepository.findAllById(misses))
+                        .forEach(product -> loaded.put(product.getId(), product));
+                putAllCached(loaded);
+                loaded.forEach((id, product) -> {
+                    if (product != null) {
+                        found.put(id, product);
+                    }
+                });
+            } finally {
+                acquired.forEach(ReentrantLock::unlock);
+            }
+        }
+        return distinctIds.stream().map(found::get).filter(Objects::nonNull).toList();
     }
 
     /**
-     * Удаляет продукт по его идентификатору.
+     * Удаляет продукт по его идентификатору и кэширует его отсутствие.
      *
      * @param id Идентификатор продукта, который нужно удалить.
      * @throws EntityNotFoundException Если продукт с указанным идентификатором не найден.
      */
     @Override
-    @CacheEvict(key = "#id")
     public void deleteById(Integer id) {
-        Product productForDelete = productRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
-
-        productRepository.deleteById(id);
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Product productForDelete = productRepository.findById(id)
+                        .orElseThrow(() -> new EntityNotFoundException("Product not found"));
 
-        kafkaMessage("product deleted", productForDelete);
+                productRepository.delete(productForDelete);
+                writeOutbox(ProductEventType.DELETED, List.of(productForDelete));
+            });
+            productCache.put(id, null);
+            unindex(List.of(id));
+            inventoryCounters.reset(List.of(id));
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Создает новый продукт.
+     * Создает новый продукт и кладет его в кэш вместе с присвоенным бд идентификатором и временными метками.
      *
      * @param product Объект продукта, который нужно создать.
+     * @return Сохраненный продукт.
+     */
+    @Override
+    public Product create(Product product) {
+        Product savedProduct = transactionTemplate.execute(status -> {
+            Product saved = productRepository.saveAndFlush(product);
+            writeOutbox(ProductEventType.CREATED, List.of(saved));
+            return saved;
+        });
+        productCache.put(savedProduct.getId(), savedProduct);
+        index(List.of(savedProduct));
+        return savedProduct;
+    }
+
+    /**
+     * Создает продукты одной транзакцией. Вставки уходят в бд пакетами JDBC,
+     * идентификаторы берутся из последовательности блоками, без запроса на каждую строку.
+     * Новые продукты не кладутся в кэш, чтобы импорт не делал по запросу в Redis на строку,
+     * но добавляются в поисковый индекс.
+     *
+     * @param products Продукты, которые нужно создать.
+     * @return Сохраненные продукты.
+     */
+    @Override
+    public List<Product> createAll(List<Product> products) {
+        List<Product> savedProducts = transactionTemplate.execute(status -> {
+            List<Product> saved = productRepository.saveAllAndFlush(products);
+            writeOutbox(ProductEventType.CREATED, saved);
+            return saved;
+        });
+        index(savedProducts);
+        return savedProducts;
+    }
+
+    /**
+     * Обновляет продукты одной транзакцией и кладет сохраненные версии в кэш.
+     * Текущие версии читаются одним запросом, обновления уходят в бд пакетами JDBC.
+     * Версии продуктов не проверяются: пакет перезаписывает текущие значения.
+     *
+     * @param products Продукты с новыми данными, у каждого должен быть указан идентификатор.
+     * @return Сохраненные продукты.
+     * @throws EntityNotFoundException Если хотя бы один продукт не найден.
+     */
+    @Override
+    public List<Product> updateAll(List<Product> products) {
+        List<Integer> ids = products.stream().map(Product::getId).toList();
+        List<ReentrantLock> acquired = lockAll(ids);
+        try {
+            List<Product> savedProducts = transactionTemplate.execute(status -> {
+                Map<Integer, Product> productsFromMainDB = findAllByIdOrThrow(ids);
+                for (Product product : products) {
+                    Product productFromMainDB = productsFromMainDB.get(product.getId());
+                    product.setCreatedAt(productFromMainDB.getCreatedAt());
+                    product.setVersion(productFromMainDB.getVersion());
+                }
+                List<Product> saved = productRepository.saveAllAndFlush(products);
+                writeOutbox(ProductEventType.UPDATED, saved);
+                return saved;
+            });
+            savedProducts.forEach(product -> productCache.put(product.getId(), product));
+            index(savedProducts);
+            inventoryCounters.reset(ids);
+            return savedProducts;
+        } finally {
+            acquired.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    /**
+     * Удаляет продукты одной транзакцией одним запросом delete ... where id in (...) и кэширует их отсутствие.
+     *
+     * @param ids Идентификаторы продуктов, которые нужно удалить.
+     * @throws EntityNotFoundException Если хотя бы один продукт не найден.
      */
     @Override
-    public void create(Product product) {
-        productRepository.save(product);
-        kafkaMessage("product created", product);
+    public void deleteAllById(List<Integer> ids) {
+        List<ReentrantLock> acquired = lockAll(ids);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Integer, Product> productsFromMainDB = findAllByIdOrThrow(ids);
+                productRepository.deleteAllByIdInBatch(productsFromMainDB.keySet());
+                writeOutbox(ProductEventType.DELETED, productsFromMainDB.values());
+            });
+            Map<Integer, Product> deleted = new HashMap<>();
+            ids.forEach(id -> deleted.put(id, null));
+            putAllCached(deleted);
+            unindex(ids);
+            inventoryCounters.reset(ids);
+        } finally {
+            acquired.forEach(ReentrantLock::unlock);
+        }
     }
 
     /**
@@ -118,27 +456,216 @@ public class ProductServiceImpl implements ProductService {
      */
     @Override
     public List<Product> findAll(Pageable pageable) {
-        return productRepository.findAll(pageable).getContent();
+        return productRepository.findAllBy(pageable).getContent();
     }
 
     /**
-     * Отправляет сообщение в Kafka о событии с продуктом.
+     * Находит страницу продуктов по курсору: продукты с идентификатором больше указанного.
+     * В отличие от пагинации со смещением, время запроса не растет с номером страницы.
      *
-     * @param message Сообщение о событии.
-     * @param product Продукт, связанный с событием.
-     * Преобразует в ProductEvent для последующей десериализации и логировании в сервисе kafkaConsumer
+     * @param afterId Идентификатор последнего продукта предыдущей страницы.
+     * @param size Размер страницы.
+     * @return Продукты, упорядоченные по идентификатору.
      */
-    private void kafkaMessage(String message, Product product) {
-        CompletableFuture<SendResult<String, ProductEvent>> send =
-                kafkaTemplate.send("product-events", new ProductEvent(message, product.getId(),
-                        product.getName(), product.getDescription(),
-                        product.getPrice(), product.getQuantity(),
-                        product.getUpdatedAt(), product.getCreatedAt()));
+    @Override
+    public List<Product> findAfter(int afterId, int size) {
+        return productRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size));
+    }
 
-        send.whenComplete((result, exception) -> {
-            if (exception != null) {
-                log.error("message failed to send", exception);
+    /**
+     * Передает все продукты по порядку идентификаторов, читая их серверным курсором.
+     * Каждый продукт отсоединяется от контекста персистентности после обработки,
+     * поэтому расход памяти не зависит от размера таблицы.
+     *
+     * @param action Действие над каждым продуктом.
+     */
+    @Override
+    public void forEachProduct(Consumer<Product> action) {
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Product> products = productRepository.streamAllByOrderById()) {
+                products.forEach(product -> {
+                    action.accept(product);
+                    entityManager.detach(product);
+                });
             }
         });
     }
+
+    /**
+     * Загружает продукт из бд в кэш под арендой Redis. Вызывается под блокировкой по идентификатору.
+     * Если аренда у другого инстанса, при раннем обновлении возвращается текущее значение,
+     * а при промахе — значение, которое положит владелец аренды; если его не дождались, продукт читается из бд.
+     * Продукт читается из основной бд, а не с реплики: кэш живет дольше отставания реплики, и устаревшая версия
+     * с нее перетерла бы значение, которое параллельное изменение успело положить в кэш, до истечения TTL.
+     * Новые продукты из createAll не сбрасывают отрицательную запись, поэтому заранее запрошенный id
+     * может оставаться ненайденным до истечения cache.negative-ttl.
+     *
+     * @param id Идентификатор продукта.
+     * @param stale Текущее значение из кэша при раннем обновлении, или null при промахе.
+     */
+    private Product load(Integer id, Cache.ValueWrapper stale) {
+        String lease = cacheLoadLease.tryAcquire(PRODUCT_CACHE, id);
+        if (lease == null) {
+            if (stale != null) {
+                return unwrap(stale);
+            }
+            Cache.ValueWrapper loaded = cacheLoadLease.await(() -> productCache.get(id));
+            if (loaded != null) {
+                return unwrap(loaded);
+            }
+        }
+        try {
+            Product product = ReplicaRoutingDataSource.onPrimary(() -> productRepository.findById(id)).orElse(null);
+            productCache.put(id, product);
+            if (product == null) {
+                throw new EntityNotFoundException("Product not found");
+            }
+            return product;
+        } finally {
+            if (lease != null) {
+                cacheLoadLease.release(PRODUCT_CACHE, id, lease);
+            }
+        }
+    }
+
+    /**
+     * Читает записи кэша одним MGET; без локального кэша (cache.local.enabled=false) — по одной.
+     */
+    private Map<Object, Cache.ValueWrapper> getAllCached(Collection<Integer> ids) {
+        if (productCache instanceof TwoTierCache twoTierCache) {
+            return twoTierCache.getAll(ids);
+        }
+        Map<Object, Cache.ValueWrapper> cached = new HashMap<>();
+        for (Integer id : ids) {
+            Cache.ValueWrapper value = productCache.get(id);
+            if (value != null) {
+                cached.put(id, value);
+            }
+        }
+        return cached;
+    }
+
+    private void putAllCached(Map<Integer, Product> products) {
+        if (productCache instanceof TwoTierCache twoTierCache) {
+            twoTierCache.putAll(products);
+        } else {
+            products.forEach(productCache::put);
+        }
+    }
+
+    private boolean claimEarlyRefresh(Integer id) {
+        return productCache instanceof TwoTierCache twoTierCache && twoTierCache.claimEarlyRefresh(id);
+    }
+
+    /**
+     * Достает продукт из записи кэша; закэшированный null означает, что продукта нет в бд.
+     */
+    private static Product unwrap(Cache.ValueWrapper value) {
+        Product product = (Product) value.get();
+        if (product == null) {
+            throw new EntityNotFoundException("Product not found");
+        }
+        return product;
+    }
+
+    /**
+     * Записывает события о продуктах в outbox в текущей транзакции.
+     * Вызывается после flush, чтобы у продуктов уже были идентификаторы и временные метки.
+     *
+     * @param type Тип события.
+     * @param products Продукты, связанные с событием.
+     * Преобразует в ProductEvent для последующей десериализации и логировании в сервисе kafkaConsumer
+     */
+    private void writeOutbox(ProductEventType type, Collection<Product> products) {
+        List<OutboxEvent> events = new ArrayList<>(products.size());
+        for (Product product : products) {
+            ProductEvent event = new ProductEvent(type, product.getId(),
+                    product.getName(), product.getDescription(),
+                    product.getPrice(), product.getQuantity(),
+                    product.getCreatedAt(), product.getUpdatedAt());
+            event.setVersion(product.getVersion());
+            events.add(new OutboxEvent(PRODUCT_EVENTS_TOPIC, product.getId(), writeEvent(event)));
+        }
+        outboxEventRepository.saveAll(events);
+    }
+
+    /**
+     * Индексирует сохраненные продукты и сообщает о них остальным инстансам.
+     */
+    private void index(List<Product> products) {
+        productSearchIndex.index(products);
+        productChangeChannel.publish(products.stream().map(Product::getId).toList());
+    }
+
+    /**
+     * Удаляет продукты из индекса и сообщает об удалении остальным инстансам.
+     */
+    private void unindex(Collection<Integer> ids) {
+        productSearchIndex.delete(ids);
+        productChangeChannel.publish(ids);
+    }
+
+    private String writeEvent(ProductEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize " + event, e);
+        }
+    }
+
+    private static void checkVersion(Product product, Long expectedVersion) {
+        if (expectedVersion != null && product.getVersion() != expectedVersion) {
+            throw new OptimisticLockingFailureException("Product " + product.getId() + " has version "
+                    + product.getVersion() + ", expected " + expectedVersion);
+        }
+    }
+
+    /**
+     * Определяет, почему частичное изменение не затронуло ни одной строки.
+     */
+    private RuntimeException patchRejected(Integer id, ProductPatch patch, Long expectedVersion) {
+        Product current = productRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+        checkVersion(current, expectedVersion);
+        return new InsufficientStockException("Product " + id + " has quantity " + current.getQuantity()
+                + ", cannot apply " + patch.quantityDelta());
+    }
+
+    /**
+     * Читает продукты одним запросом и проверяет, что найдены все идентификаторы.
+     */
+    private Map<Integer, Product> findAllByIdOrThrow(List<Integer> ids) {
+        Map<Integer, Product> products = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        if (products.size() != new TreeSet<>(ids).size()) {
+            List<Integer> missing = ids.stream().filter(id -> !products.containsKey(id)).toList();
+            throw new EntityNotFoundException("Products not found: " + missing);
+        }
+        return products;
+    }
+
+    /**
+     * Возвращает блокировку, которая сериализует запись и загрузку в кэш для продуктов с этим идентификатором.
+     */
+    private ReentrantLock lockFor(Integer id) {
+        return locks[Math.floorMod(id, LOCK_STRIPES)];
+    }
+
+    /**
+     * Захватывает блокировки всех идентификаторов в порядке номеров полос,
+     * чтобы параллельные пакетные операции не попали во взаимную блокировку.
+     *
+     * @return Захваченные блокировки, которые нужно освободить после записи в кэш.
+     */
+    private List<ReentrantLock> lockAll(Collection<Integer> ids) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        ids.forEach(id -> stripes.add(Math.floorMod(id, LOCK_STRIPES)));
+
+        List<ReentrantLock> acquired = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            acquired.add(locks[stripe]);
+        }
+        return acquired;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+-- Начальная схема. Идемпотентна: применяется и к пустой бд, и к схеме, созданной раньше ddl-auto=update
+-- (тогда Flyway ставит базовую версию 0, см. spring.flyway.baseline-version).
+-- Шаг последовательностей равен allocationSize сущностей: Hibernate берет идентификаторы блоками по 100.
+
+create sequence if not exists product_seq start with 1 increment by 100;
+
+create sequence if not exists outbox_event_seq start with 1 increment by 100;
+
+create table if not exists product
+(
+    id          integer        not null primary key,
+    name        varchar(255)   not null,
+    description varchar(255),
+    price       numeric(38, 2) not null,
+    quantity    integer        not null,
+    created_at  timestamp(6)   not null,
+    updated_at  timestamp(6)   not null,
+    version     bigint default 0 not null
+);
+
+-- Версия появилась позже остальных столбцов
+alter table product add column if not exists version bigint default 0 not null;
+
+create table if not exists outbox_event
+(
+    id         bigint       not null primary key,
+    topic      varchar(255) not null,
+    product_id integer      not null,
+    payload    text         not null,
+    created_at timestamp(6) not null
+);
+
+-- В схеме, созданной раньше, строки могли вставляться мимо последовательностей, и те отстают от таблиц.
+-- Значение N последовательности закрепляет блок идентификаторов (N - 100, N], поэтому следующее значение
+-- должно быть не меньше max(id) + 100. Последовательность только догоняет таблицу и не откатывается назад,
+-- чтобы идентификаторы удаленных строк не выдавались повторно.
+select setval('product_seq', greatest(coalesce((select max(id) from product), 0) + 100,
+                                      (select case when is_called then last_value + 100 else last_value end
+                                       from product_seq)), false);
+
+select setval('outbox_event_seq', greatest(coalesce((select max(id) from outbox_event), 0) + 100,
+                                           (select case when is_called then last_value + 100 else last_value end
+                                            from outbox_event_seq)), false);
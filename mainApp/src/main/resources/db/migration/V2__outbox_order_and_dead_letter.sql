@@ -0,0 +1,29 @@
+-- Порядок отправки событий outbox. Идентификаторы событий инстансы берут из outbox_event_seq блоками по 100,
+-- поэтому порядок id не совпадает с порядком записи. Номер ordinal бд присваивает при вставке: событие продукта
+-- пишется после изменения строки продукта, а оно ждет фиксации предыдущего изменения, поэтому события
+-- одного продукта получают номера в порядке изменений.
+create sequence if not exists outbox_event_ordinal_seq;
+
+alter table outbox_event add column if not exists ordinal bigint default nextval('outbox_event_ordinal_seq') not null;
+
+alter sequence outbox_event_ordinal_seq owned by outbox_event.ordinal;
+
+create index if not exists outbox_event_ordinal_idx on outbox_event (ordinal);
+
+-- Сколько раз брокер отклонил событие (недоступность брокера не считается)
+alter table outbox_event add column if not exists attempts integer default 0 not null;
+
+-- События, которые не удалось отправить за outbox.relay.max-attempts попыток. Вернуть событие в отправку:
+-- insert into outbox_event (id, topic, product_id, payload, created_at)
+-- select id, topic, product_id, payload, created_at from outbox_event_dead_letter where id = ?
+create table if not exists outbox_event_dead_letter
+(
+    id         bigint       not null primary key,
+    topic      varchar(255) not null,
+    product_id integer      not null,
+    payload    text         not null,
+    created_at timestamp(6) not null,
+    attempts   integer      not null,
+    error      text,
+    failed_at  timestamp(6) default now() not null
+);
@@ -0,0 +1,94 @@
+package sia.pairschallenge.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Проверяет, что запрос сверх лимита одновременной обработки получает 503 с Retry-After,
+ * а чтения и записи ограничиваются отдельно.
+ */
+class LoadSheddingFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final LoadSheddingFilter filter = new LoadSheddingFilter(meterRegistry, true, "/api/**", 10, 1,
+            Duration.ofMillis(10), 20, 0.05);
+
+    @Test
+    void shedsWritesOverConcurrencyLimit() throws Exception {
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slowWrite = executor.submit(() -> {
+                filter.doFilter(new MockHttpServletRequest("POST", "/api/products"), new MockHttpServletResponse(),
+                        (request, response) -> {
+                            inside.countDown();
+                            await(release);
+                        });
+                return null;
+            });
+            inside.await();
+            assertEquals(1, meterRegistry.get("load.shedding.in.flight").tag("group", "write").gauge().value());
+
+            MockHttpServletResponse shedResponse = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("PUT", "/api/products/1"), shedResponse, new MockFilterChain());
+            MockFilterChain readChain = new MockFilterChain();
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/products/1"), new MockHttpServletResponse(),
+                    readChain);
+
+            assertEquals(503, shedResponse.getStatus());
+            assertEquals("1", shedResponse.getHeader("Retry-After"));
+            assertNotNull(readChain.getRequest());
+            release.countDown();
+            slowWrite.get();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertEquals(1, meterRegistry.get("load.shedding.requests").tag("group", "write").tag("result", "shed")
+                .counter().count());
+        assertEquals(1, meterRegistry.get("load.shedding.requests").tag("group", "write").tag("result", "admitted")
+                .counter().count());
+        assertEquals(0, meterRegistry.get("load.shedding.in.flight").tag("group", "write").gauge().value());
+    }
+
+    @Test
+    void derivesReadLimitFromConnectionsLeftByWrites() {
+        // (20 - 16) / 0.05: промахи 80 одновременных чтений в среднем занимают 4 свободных соединения
+        assertEquals(80, LoadSheddingFilter.readLimit(20, 16, 0.05));
+        assertEquals(20, LoadSheddingFilter.readLimit(10, 16, 0.05));
+        assertEquals(4, LoadSheddingFilter.readLimit(20, 16, 1.0));
+    }
+
+    @Test
+    void skipsRequestsOutsidePath() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals(0, meterRegistry.get("load.shedding.requests").tag("group", "read").tag("result", "admitted")
+                .counter().count());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package sia.pairschallenge.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.service.impl.InventoryServiceImpl;
+import sia.pairschallenge.service.impl.ProductImportServiceImpl;
+import sia.pairschallenge.service.impl.ProductServiceImpl;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет ETag, Cache-Control и ответ 304 на чтение продукта и страницы продуктов,
+ * а также ответ 400 на страницу недопустимого размера и на недопустимое частичное изменение.
+ */
+class MainControllerConditionalGetTest {
+
+    private final ProductServiceImpl productService = mock(ProductServiceImpl.class);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        MainController controller = new MainController(productService, mock(ProductImportServiceImpl.class),
+                mock(InventoryServiceImpl.class), new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(controller, "httpCacheMaxAge", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(controller, "pageMaxSize", 1000);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void productReadIsNotModifiedForCurrentVersion() throws Exception {
+        when(productService.findById(1)).thenReturn(product(1, 3));
+
+        mockMvc.perform(get("/api/products/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(header().string("Cache-Control", "max-age=5, must-revalidate, public"));
+        mockMvc.perform(get("/api/products/1").header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/products/1").header("If-None-Match", "\"2\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void pageETagChangesWithProductVersions() throws Exception {
+        when(productService.findAfter(anyInt(), anyInt())).thenReturn(List.of(product(1, 0), product(2, 0)));
+
+        MvcResult first = mockMvc.perform(get("/api/products").param("after", "0"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String eTag = first.getResponse().getHeader("ETag");
+        assertTrue(eTag.startsWith("W/\""));
+
+        mockMvc.perform(get("/api/products").param("after", "0").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        when(productService.findAfter(anyInt(), anyInt())).thenReturn(List.of(product(1, 0), product(2, 1)));
+        MvcResult changed = mockMvc.perform(get("/api/products").param("after", "0").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNotEquals(eTag, changed.getResponse().getHeader("ETag"));
+    }
+
+    @Test
+    void pageOfInvalidSizeIsRejected() throws Exception {
+        mockMvc.perform(get("/api/products").param("size", "1001"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/products").param("after", "0").param("size", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/products").param("page", "-1"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void patchWithNegativeQuantityIsRejected() throws Exception {
+        mockMvc.perform(patch("/api/products/1").contentType(APPLICATION_JSON).content("{\"quantity\": -5}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("quantity must not be negative"));
+        mockMvc.perform(patch("/api/products/1").contentType(APPLICATION_JSON)
+                        .content("{\"quantity\": 5, \"quantityDelta\": 1}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(productService);
+    }
+
+    private static Product product(int id, long version) {
+        Product product = new Product(id, "product " + id, "description", BigDecimal.TEN, 5, null, null);
+        product.setVersion(version);
+        return product;
+    }
+}
@@ -0,0 +1,151 @@
+package sia.pairschallenge.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import sia.pairschallenge.redis.RateLimiter;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет выбор маршрута и клиента, общую корзину маршрута, ответ 429 с Retry-After
+ * и пропуск запросов при недоступном Redis.
+ */
+class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RateLimiter rateLimiter = mock(RateLimiter.class);
+
+    private RateLimitProperties properties;
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.getTrustedProxies().add("10.0.0.254");
+        RateLimitProperties.Route writes = new RateLimitProperties.Route();
+        writes.setPath("/api/products/**");
+        writes.setMethods(Set.of("POST", "PUT"));
+        writes.setCapacity(20L);
+        writes.setRefillPerSecond(10.0);
+        RateLimitProperties.Limit importer = new RateLimitProperties.Limit();
+        importer.setRefillPerSecond(500.0);
+        writes.getClients().put("importer", importer);
+        properties.getRoutes().put("writes", writes);
+        filter = new RateLimitFilter(rateLimiter, properties, meterRegistry);
+    }
+
+    @Test
+    void limitsEachClientWithItsOwnBucket() throws Exception {
+        when(rateLimiter.tryAcquire(anyString(), anyLong(), anyDouble(), anyInt())).thenReturn(0L);
+
+        MockHttpServletRequest proxied = request("POST");
+        proxied.setRemoteAddr("10.0.0.254");
+        proxied.addHeader("X-Client-Id", "importer");
+        filter.doFilter(proxied, new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(request("POST"), new MockHttpServletResponse(), new MockFilterChain());
+
+        verify(rateLimiter).tryAcquire("writes::importer", 20, 500.0, 1);
+        verify(rateLimiter).tryAcquire("writes::10.0.0.1", 20, 10.0, 1);
+        assertEquals(2, meterRegistry.get("rate.limit.requests").tag("result", "admitted").counter().count());
+    }
+
+    @Test
+    void ignoresClientHeaderFromUntrustedAddress() throws Exception {
+        when(rateLimiter.tryAcquire(anyString(), anyLong(), anyDouble(), anyInt())).thenReturn(0L);
+
+        for (String client : new String[]{"importer", "random-1", "random-2"}) {
+            MockHttpServletRequest request = request("POST");
+            request.addHeader("X-Client-Id", client);
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        }
+
+        verify(rateLimiter, times(3)).tryAcquire("writes::10.0.0.1", 20, 10.0, 1);
+        verify(rateLimiter, never()).tryAcquire("writes::importer", 20, 500.0, 1);
+    }
+
+    @Test
+    void limitsAllClientsOfRouteWithGlobalBucket() throws Exception {
+        RateLimitProperties.Limit global = new RateLimitProperties.Limit();
+        global.setCapacity(100L);
+        global.setRefillPerSecond(50.0);
+        properties.getRoutes().get("writes").setGlobal(global);
+        filter = new RateLimitFilter(rateLimiter, properties, meterRegistry);
+        when(rateLimiter.tryAcquire("writes::10.0.0.1", 20, 10.0, 1)).thenReturn(0L);
+        when(rateLimiter.tryAcquire("writes::10.0.0.2", 20, 10.0, 1)).thenReturn(500L);
+        when(rateLimiter.tryAcquire("writes", 100, 50.0, 1)).thenReturn(2000L);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("POST"), response, new MockFilterChain());
+        MockHttpServletRequest limitedClient = request("POST");
+        limitedClient.setRemoteAddr("10.0.0.2");
+        filter.doFilter(limitedClient, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(429, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        // Запрос сверх корзины клиента не расходует общую корзину
+        verify(rateLimiter, times(1)).tryAcquire("writes", 100, 50.0, 1);
+    }
+
+    @Test
+    void rejectsWithRetryAfterInSeconds() throws Exception {
+        when(rateLimiter.tryAcquire(anyString(), anyLong(), anyDouble(), anyInt())).thenReturn(1500L);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("PUT"), response, chain);
+
+        assertEquals(429, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+        assertEquals(1, meterRegistry.get("rate.limit.requests").tag("result", "limited").counter().count());
+    }
+
+    @Test
+    void admitsRequestsWhenRedisIsUnavailable() throws Exception {
+        when(rateLimiter.tryAcquire(anyString(), anyLong(), anyDouble(), anyInt()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("POST"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals(1, meterRegistry.get("rate.limit.requests").tag("result", "failed-open").counter().count());
+    }
+
+    @Test
+    void skipsRequestsOutsideRoutes() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("GET"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        verifyNoInteractions(rateLimiter);
+    }
+
+    private static MockHttpServletRequest request(String method) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/products/1");
+        request.setRemoteAddr("10.0.0.1");
+        return request;
+    }
+}
@@ -0,0 +1,189 @@
+package sia.pairschallenge.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.service.impl.InventoryServiceImpl;
+import sia.pairschallenge.service.impl.ProductImportServiceImpl;
+import sia.pairschallenge.service.impl.ProductServiceImpl;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Нагрузочный стенд для сравнения платформенных и виртуальных потоков Tomcat.
+ * Поднимает только веб-слой с {@link MainController}, сервис продуктов заменен заглушкой,
+ * которая блокирует поток на время, сопоставимое с походом в Redis и Postgres.
+ * Для каждого режима (spring.threads.virtual.enabled) запускается CLIENTS одновременных клиентов,
+ * каждый в цикле запрашивает GET /api/products/{id}; печатаются запросы в секунду и перцентили задержки.
+ * <p>
+ * Запуск: mvn test -Pbenchmark -Dtest=VirtualThreadsLoadBenchmark
+ */
+@Tag("benchmark")
+class VirtualThreadsLoadBenchmark {
+
+    private static final int CLIENTS = 1_000;
+
+    private static final Duration BLOCKING_IO = Duration.ofMillis(20);
+
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+
+    private static final Duration MEASUREMENT = Duration.ofSeconds(15);
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        System.out.printf("%-18s %12s %10s %10s %10s %8s%n", "mode", "requests/sec", "p50 ms", "p99 ms", "p99.9 ms", "errors");
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WebLayer.class)
+                    .properties("server.port=0",
+                            "spring.threads.virtual.enabled=" + virtualThreads,
+                            "server.tomcat.max-connections=" + (CLIENTS * 2),
+                            "server.tomcat.accept-count=" + CLIENTS)
+                    .run()) {
+                int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+                run(port, WARMUP);
+                Result result = run(port, MEASUREMENT);
+                System.out.printf("%-18s %12.0f %10.2f %10.2f %10.2f %8d%n",
+                        virtualThreads ? "virtual threads" : "platform threads", result.requestsPerSecond,
+                        result.percentile(0.50), result.percentile(0.99), result.percentile(0.999), result.errors);
+            }
+        }
+    }
+
+    private static Result run(int port, Duration duration) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        long started = System.nanoTime();
+
+        List<Future<long[]>> clients = new ArrayList<>(CLIENTS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        int id = ThreadLocalRandom.current().nextInt(1, 100_000);
+                        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/products/" + id))
+                                .timeout(Duration.ofSeconds(30))
+                                .build();
+                        long sentAt = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - sentAt;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long[] all = new long[0];
+        for (Future<long[]> future : clients) {
+            long[] latencies = future.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+        }
+        Arrays.sort(all);
+        return new Result(all.length / seconds, all, errors.get());
+    }
+
+    private record Result(double requestsPerSecond, long[] sortedLatencies, long errors) {
+
+        double percentile(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+
+    /**
+     * Только веб-слой: без источника данных, Redis и Kafka.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({ServletWebServerFactoryAutoConfiguration.class,
+            EmbeddedWebServerFactoryCustomizerAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class,
+            JacksonAutoConfiguration.class, TaskExecutionAutoConfiguration.class})
+    @Import(MainController.class)
+    static class WebLayer {
+
+        @Bean
+        ProductServiceImpl productService() {
+            // stubOnly: заглушка не запоминает вызовы, иначе за прогон накопятся миллионы записей
+            ProductServiceImpl productService = mock(ProductServiceImpl.class, withSettings().stubOnly());
+            when(productService.findById(anyInt())).thenAnswer(invocation -> {
+                Thread.sleep(BLOCKING_IO);
+                LocalDateTime now = LocalDateTime.now();
+                return new Product(invocation.getArgument(0), "product", "description", BigDecimal.TEN, 1, now, now);
+            });
+            return productService;
+        }
+
+        @Bean
+        EntityManagerFactory entityManagerFactory() {
+            // Нужна только для внедрения @PersistenceContext в заглушки сервисов
+            return mock(EntityManagerFactory.class);
+        }
+
+        @Bean
+        ProductImportServiceImpl productImportService() {
+            return mock(ProductImportServiceImpl.class, withSettings().stubOnly());
+        }
+
+        @Bean
+        InventoryServiceImpl inventoryService() {
+            return mock(InventoryServiceImpl.class, withSettings().stubOnly());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package sia.pairschallenge.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sia.pairschallenge.repository.OutboxEvent;
+import sia.pairschallenge.repository.OutboxEventRepository;
+import sia.productevent.event.ProductEvent;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private final OutboxEventRepository outboxEventRepository = mock(OutboxEventRepository.class);
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, ProductEvent> kafkaTemplate = mock(KafkaTemplate.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new OutboxRelay(outboxEventRepository, kafkaTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new ObjectMapper(), meterRegistry);
+        ReflectionTestUtils.setField(relay, "batchSize", 2);
+        ReflectionTestUtils.setField(relay, "sendTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(relay, "maxAttempts", 3);
+        when(outboxEventRepository.tryLockRelay()).thenReturn(true);
+    }
+
+    @Test
+    void sendsBatchesInOrderAndDeletesThemAfterAcknowledgement() {
+        List<OutboxEvent> first = List.of(event(1), event(2));
+        List<OutboxEvent> second = List.of(event(3));
+        when(outboxEventRepository.lockNextBatch(anyInt())).thenReturn(first, second);
+        when(kafkaTemplate.send(eq("product-events"), anyString(), any(ProductEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+
+        verify(kafkaTemplate).send(eq("product-events"), eq("1"), any(ProductEvent.class));
+        verify(kafkaTemplate).send(eq("product-events"), eq("2"), any(ProductEvent.class));
+        verify(kafkaTemplate).send(eq("product-events"), eq("3"), any(ProductEvent.class));
+        verify(outboxEventRepository).deleteAllInBatch(first);
+        verify(outboxEventRepository).deleteAllInBatch(second);
+        assertEquals(3, meterRegistry.get("outbox.relay.events").tag("result", "sent").counter().count());
+    }
+
+    @Test
+    void keepsBatchWhenBrokerDoesNotAcknowledge() {
+        when(outboxEventRepository.lockNextBatch(anyInt())).thenReturn(List.of(event(1)));
+        when(kafkaTemplate.send(eq("product-events"), anyString(), any(ProductEvent.class)))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("broker down")));
+
+        relay.relay();
+
+        verify(outboxEventRepository, never()).deleteAllInBatch(anyList());
+        verify(outboxEventRepository, never()).incrementAttempts(anyLong());
+        assertEquals(1, meterRegistry.get("outbox.relay.events").tag("result", "failed").counter().count());
+    }
+
+    @Test
+    void skipsBatchWhileAnotherRelayHoldsLock() {
+        when(outboxEventRepository.tryLockRelay()).thenReturn(false);
+
+        relay.relay();
+
+        verify(outboxEventRepository, never()).lockNextBatch(anyInt());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void rejectedEventDoesNotBlockOthersAndIsDeadLetteredAfterMaxAttempts() {
+        OutboxEvent unreadable = new OutboxEvent("product-events", 1, "{not json");
+        OutboxEvent tooLarge = event(2);
+        ReflectionTestUtils.setField(tooLarge, "id", 2L);
+        ReflectionTestUtils.setField(tooLarge, "attempts", 2);
+        OutboxEvent fine = event(3);
+        ReflectionTestUtils.setField(unreadable, "id", 1L);
+        when(outboxEventRepository.lockNextBatch(anyInt())).thenReturn(List.of(unreadable, tooLarge, fine));
+        when(kafkaTemplate.send(eq("product-events"), eq("2"), any(ProductEvent.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RecordTooLargeException("too large")));
+        when(kafkaTemplate.send(eq("product-events"), eq("3"), any(ProductEvent.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+
+        verify(outboxEventRepository).deleteAllInBatch(List.of(fine));
+        verify(outboxEventRepository).incrementAttempts(1L);
+        verify(outboxEventRepository).moveToDeadLetter(eq(2L), anyString());
+        assertEquals(1, meterRegistry.get("outbox.relay.events").tag("result", "sent").counter().count());
+        assertEquals(2, meterRegistry.get("outbox.relay.events").tag("result", "failed").counter().count());
+        assertEquals(1, meterRegistry.get("outbox.relay.events").tag("result", "dead-lettered").counter().count());
+    }
+
+    private static OutboxEvent event(int productId) {
+        return new OutboxEvent("product-events", productId, "{\"id\":" + productId + ",\"type\":\"CREATED\"}");
+    }
+}
@@ -0,0 +1,119 @@
+package sia.pairschallenge.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.test.util.ReflectionTestUtils;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генератор нагрузки на продюсер Kafka со встроенным брокером.
+ * Для каждого набора настроек {@link KafkaProducerConfig} отправляет события с ключом по продукту
+ * и печатает события в секунду и перцентили задержки отправки (до подтверждения брокера).
+ * <p>
+ * Запуск: mvn test -Pbenchmark -Dtest=ProducerThroughputBenchmark
+ */
+@Tag("benchmark")
+class ProducerThroughputBenchmark {
+
+    private static final String TOPIC = "product-events";
+
+    private static final int EVENTS = 100_000;
+
+    private static final int WARMUP_EVENTS = 10_000;
+
+    private static final int PRODUCTS = 1_000;
+
+    private static EmbeddedKafkaKraftBroker broker;
+
+    @BeforeAll
+    static void startBroker() {
+        broker = new EmbeddedKafkaKraftBroker(1, 3, TOPIC);
+        broker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        broker.destroy();
+    }
+
+    @Test
+    void compareProducerSettings() throws Exception {
+        Map<String, Map<String, Object>> profiles = new LinkedHashMap<>();
+        profiles.put("client defaults", settings("1", false, 0, 16384, "none", 5));
+        profiles.put("acks=all, idempotent", settings("all", true, 0, 16384, "none", 5));
+        profiles.put("tuned, lz4", settings("all", true, 10, 65536, "lz4", 5));
+        profiles.put("tuned, zstd", settings("all", true, 10, 65536, "zstd", 5));
+        profiles.put("tuned, lz4, 1 in flight", settings("all", true, 10, 65536, "lz4", 1));
+
+        System.out.printf("%-26s %12s %10s %10s %10s%n", "profile", "events/sec", "p50 ms", "p99 ms", "p99.9 ms");
+        for (Map.Entry<String, Map<String, Object>> profile : profiles.entrySet()) {
+            KafkaProducerConfig config = new KafkaProducerConfig();
+            ReflectionTestUtils.setField(config, "bootstrapAddress", broker.getBrokersAsString());
+            ReflectionTestUtils.setField(config, "bufferMemory", 67108864L);
+            profile.getValue().forEach((field, value) -> ReflectionTestUtils.setField(config, field, value));
+
+            KafkaTemplate<String, ProductEvent> template = config.kafkaTemplate(config.producerFactory(new SimpleMeterRegistry()));
+            try {
+                run(template, WARMUP_EVENTS);
+                Result result = run(template, EVENTS);
+                System.out.printf("%-26s %12.0f %10.2f %10.2f %10.2f%n", profile.getKey(), result.eventsPerSecond,
+                        result.percentile(0.50), result.percentile(0.99), result.percentile(0.999));
+            } finally {
+                template.destroy();
+            }
+        }
+    }
+
+    private static Result run(KafkaTemplate<String, ProductEvent> template, int events) throws Exception {
+        long[] latencies = new long[events];
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[events];
+        long started = System.nanoTime();
+
+        for (int i = 0; i < events; i++) {
+            int productId = i % PRODUCTS;
+            int index = i;
+            long sentAt = System.nanoTime();
+            sends[i] = template.send(TOPIC, String.valueOf(productId), event(productId))
+                    .whenComplete((result, exception) -> latencies[index] = System.nanoTime() - sentAt);
+        }
+        CompletableFuture.allOf(sends).get(2, TimeUnit.MINUTES);
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        Arrays.sort(latencies);
+        return new Result(events / seconds, latencies);
+    }
+
+    private static ProductEvent event(int productId) {
+        LocalDateTime now = LocalDateTime.now();
+        return new ProductEvent(ProductEventType.UPDATED, productId, "product " + productId,
+                "description of product " + productId, BigDecimal.valueOf(productId, 2), productId, now, now);
+    }
+
+    private static Map<String, Object> settings(String acks, boolean idempotence, int lingerMs, int batchSize,
+                                                String compression, int maxInFlight) {
+        return Map.of("acks", acks, "enableIdempotence", idempotence, "lingerMs", lingerMs,
+                "batchSize", batchSize, "compressionType", compression, "maxInFlightRequests", maxInFlight);
+    }
+
+    private record Result(double eventsPerSecond, long[] sortedLatencies) {
+
+        double percentile(double percentile) {
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
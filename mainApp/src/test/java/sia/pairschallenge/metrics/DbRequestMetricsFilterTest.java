@@ -0,0 +1,53 @@
+package sia.pairschallenge.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DbRequestMetricsFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final DbRequestMetricsFilter filter = new DbRequestMetricsFilter(meterRegistry);
+
+    @Test
+    void recordsStatementsOfEachRequestByUriPattern() throws Exception {
+        JdbcStatementListener listener = new JdbcStatementListener();
+
+        filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+            listener.jdbcExecuteStatementStart();
+            listener.jdbcExecuteStatementEnd();
+            listener.jdbcExecuteBatchStart();
+            listener.jdbcExecuteBatchEnd();
+        });
+        filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> { });
+
+        DistributionSummary statements = meterRegistry.get("http.server.requests.db.statements")
+                .tag("uri", "/api/products/{id}")
+                .tag("method", "GET")
+                .summary();
+        assertEquals(2, statements.count());
+        assertEquals(2, statements.totalAmount());
+    }
+
+    @Test
+    void ignoresStatementsOutsideRequests() {
+        JdbcStatementListener listener = new JdbcStatementListener();
+        listener.jdbcExecuteStatementStart();
+        listener.jdbcExecuteStatementEnd();
+
+        JdbcStatementListener.startCollecting();
+        assertEquals(0, JdbcStatementListener.stopCollecting().getStatements());
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/products/{id}");
+        return request;
+    }
+}
@@ -0,0 +1,71 @@
+package sia.pairschallenge.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartupMetricsFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicLong uptime = new AtomicLong(1000);
+
+    private final StartupMetricsFilter filter = new StartupMetricsFilter(meterRegistry, "/actuator",
+            Duration.ofMillis(20), 10, uptime::get);
+
+    @Test
+    void recordsFirstRequestExceptActuator() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health/readiness"),
+                new MockHttpServletResponse(), (request, response) -> { });
+        assertTrue(Double.isNaN(gauge("application.first.request.time")));
+
+        uptime.set(1500);
+        filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> { });
+        uptime.set(1600);
+        filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> { });
+
+        assertEquals(1500, gauge("application.first.request.time"));
+    }
+
+    @Test
+    void becomesWarmAfterWindowWithP99BelowTarget() throws Exception {
+        uptime.set(2000);
+        for (int i = 0; i < 10; i++) {
+            filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> sleep(30));
+        }
+        assertTrue(Double.isNaN(gauge("application.warm.time")));
+
+        uptime.set(3000);
+        for (int i = 0; i < 10; i++) {
+            filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> { });
+        }
+        uptime.set(4000);
+        filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> sleep(30));
+
+        assertEquals(3000, gauge("application.warm.time"));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).timeGauge().value(TimeUnit.MILLISECONDS);
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/api/products/1");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
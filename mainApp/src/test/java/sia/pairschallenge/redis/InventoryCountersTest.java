@@ -0,0 +1,113 @@
+package sia.pairschallenge.redis;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет скрипты остатков на Redis: заполнение остатка отказывает, только если с чтения бд
+ * записывались изменения этого же продукта.
+ */
+class InventoryCountersTest {
+
+    private static final int FLUSHED = 1;
+
+    private static final int SEEDED = 2;
+
+    private static RedisServer server;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private static StringRedisTemplate redisTemplate;
+
+    private final InventoryCounters inventoryCounters = new InventoryCounters(redisTemplate, Duration.ofMinutes(1),
+            Duration.ofSeconds(30));
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new RedisServer(port);
+        server.start();
+        connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @BeforeEach
+    void flushAll() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+    }
+
+    @Test
+    void seedIsRejectedWhenSameProductWasFlushedSinceDatabaseRead() {
+        assertTrue(inventoryCounters.seed(FLUSHED, 10, inventoryCounters.generation(FLUSHED)));
+        assertEquals(9, inventoryCounters.change(FLUSHED, -1));
+        redisTemplate.delete("inventory::" + FLUSHED);
+
+        String generation = inventoryCounters.generation(FLUSHED);
+        // Бд прочитана до записи: остаток 10 без списания
+        assertEquals(Map.of(FLUSHED, -1L), inventoryCounters.takePending());
+        inventoryCounters.complete(FLUSHED);
+
+        assertFalse(inventoryCounters.seed(FLUSHED, 10, generation));
+        assertTrue(inventoryCounters.seed(FLUSHED, 9, inventoryCounters.generation(FLUSHED)));
+        assertEquals(8, inventoryCounters.change(FLUSHED, -1));
+    }
+
+    @Test
+    void seedSucceedsWhileAnotherProductIsFlushedAndReset() {
+        assertTrue(inventoryCounters.seed(FLUSHED, 1_000_000, inventoryCounters.generation(FLUSHED)));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger flushes = new AtomicInteger();
+        CompletableFuture<Void> flusher = CompletableFuture.runAsync(() -> {
+            while (running.get()) {
+                if (inventoryCounters.change(FLUSHED, -1) == InventoryCounters.MISSING) {
+                    inventoryCounters.seed(FLUSHED, 1_000_000, inventoryCounters.generation(FLUSHED));
+                }
+                inventoryCounters.takePending().keySet().forEach(inventoryCounters::complete);
+                inventoryCounters.reset(List.of(FLUSHED));
+                flushes.incrementAndGet();
+            }
+        });
+        try {
+            for (int i = 0; i < 200 || flushes.get() < 100; i++) {
+                String generation = inventoryCounters.generation(SEEDED);
+                assertTrue(inventoryCounters.seed(SEEDED, 10, generation), "seed " + i);
+                redisTemplate.delete("inventory::" + SEEDED);
+            }
+        } finally {
+            running.set(false);
+            flusher.join();
+        }
+    }
+}
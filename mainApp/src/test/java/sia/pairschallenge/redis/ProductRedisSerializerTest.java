@@ -0,0 +1,89 @@
+package sia.pairschallenge.redis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import sia.pairschallenge.repository.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет сериализатор продуктов для кэша и сравнивает размер записи с прежним JSON с метаданными типа.
+ */
+class ProductRedisSerializerTest {
+
+    private final ProductRedisSerializer serializer = new ProductRedisSerializer(512);
+
+    private final GenericJackson2JsonRedisSerializer jsonSerializer =
+            new GenericJackson2JsonRedisSerializer(new ObjectMapper().registerModule(new JavaTimeModule()));
+
+    @Test
+    void roundTripsProduct() {
+        Product product = product("Ноутбук", "описание товара");
+        product.setVersion(17);
+
+        Product decoded = serializer.deserialize(serializer.serialize(product));
+
+        assertEquals(product.getId(), decoded.getId());
+        assertEquals(product.getName(), decoded.getName());
+        assertEquals(product.getDescription(), decoded.getDescription());
+        assertEquals(product.getPrice(), decoded.getPrice());
+        assertEquals(product.getQuantity(), decoded.getQuantity());
+        assertEquals(product.getCreatedAt(), decoded.getCreatedAt());
+        assertEquals(product.getUpdatedAt(), decoded.getUpdatedAt());
+        assertEquals(product.getVersion(), decoded.getVersion());
+    }
+
+    @Test
+    void compressesOnlyLargeProducts() {
+        byte[] small = serializer.serialize(product("Ноутбук", "описание товара"));
+        Product large = product("Ноутбук", "Подробное описание товара. ".repeat(100));
+        byte[] compressed = serializer.serialize(large);
+
+        assertEquals(0, small[0]);
+        assertEquals(1, compressed[0]);
+        assertEquals(large.getDescription(), serializer.deserialize(compressed).getDescription());
+        assertTrue(compressed.length < large.getDescription().length());
+    }
+
+    @Test
+    void keepsNullAndRejectsUnknownEncoding() {
+        assertNull(serializer.deserialize(serializer.serialize(null)));
+        assertThrows(SerializationException.class, () -> serializer.deserialize(new byte[]{7, 1, 2}));
+    }
+
+    /**
+     * Отчет о размере записи productCache для оценки памяти Redis: прежний JSON против бинарного формата.
+     */
+    @Test
+    void reportsBytesPerCachedEntry() {
+        String[][] samples = {
+                {"typical", "Ноутбук", "Легкий ноутбук для работы и учебы"},
+                {"no description", "Кабель USB-C", null},
+                {"long description", "Ноутбук", "Легкий ноутбук для работы и учебы, 16 ГБ памяти. ".repeat(40)},
+        };
+
+        System.out.printf("%-18s %8s %8s %6s%n", "productCache", "json", "binary", "ratio");
+        for (String[] sample : samples) {
+            Product product = product(sample[1], sample[2]);
+            int json = jsonSerializer.serialize(product).length;
+            int binary = serializer.serialize(product).length;
+            System.out.printf("%-18s %8d %8d %5.1fx%n", sample[0], json, binary, (double) json / binary);
+
+            assertTrue(binary * 2 < json, sample[0] + ": " + binary + " vs " + json);
+        }
+    }
+
+    private static Product product(String name, String description) {
+        return new Product(123456, name, description, new BigDecimal("1999.99"), 42,
+                LocalDateTime.of(2024, 1, 2, 3, 4, 5, 6_000_000), LocalDateTime.of(2025, 6, 7, 8, 9, 10, 123_456_789));
+    }
+}
@@ -0,0 +1,53 @@
+package sia.pairschallenge.redis;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет локальный расход токенов, взятых из Redis заранее, и локальный отказ до появления токена.
+ */
+class RateLimiterTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+
+    @Test
+    void spendsPrefetchedTokensWithoutRedis() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(3L, 0L));
+        RateLimiter rateLimiter = new RateLimiter(redisTemplate, Duration.ofMinutes(1), 100);
+
+        for (int i = 0; i < 6; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("writes::client", 10, 5, 3));
+        }
+
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), eq(List.of("rate::writes::client")),
+                eq("10"), eq("5.0"), eq("3"));
+    }
+
+    @Test
+    void rejectsLocallyUntilTokenIsRefilled() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(0L, 60_000L));
+        RateLimiter rateLimiter = new RateLimiter(redisTemplate, Duration.ofSeconds(1), 100);
+
+        assertEquals(60_000, rateLimiter.tryAcquire("writes::client", 10, 5, 3));
+        long retryAfter = rateLimiter.tryAcquire("writes::client", 10, 5, 3);
+
+        assertTrue(retryAfter > 0 && retryAfter <= 60_000);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+}
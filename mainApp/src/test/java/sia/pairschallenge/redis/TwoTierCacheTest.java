@@ -0,0 +1,192 @@
+package sia.pairschallenge.redis;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TwoTierCacheTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ConcurrentMapCacheManager redis;
+
+    private TwoTierCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        redis = new ConcurrentMapCacheManager("productCache");
+        cacheManager = new TwoTierCacheManager(redis, redisTemplate, meterRegistry,
+                "cache-invalidation", 100, Duration.ofMinutes(1), Duration.ofSeconds(10), 1.0, Duration.ofMillis(50));
+    }
+
+    @Test
+    void remoteHitIsPromotedToLocalTier() {
+        redis.getCache("productCache").put(1, "product");
+        Cache cache = cacheManager.getCache("productCache");
+
+        assertEquals("product", cache.get(1).get());
+        redis.getCache("productCache").evict(1);
+        assertEquals("product", cache.get(1).get());
+
+        assertEquals(1, meterRegistry.counter("cache.tier.requests",
+                "cache", "productCache", "tier", "local", "result", "hit").count());
+        assertEquals(1, meterRegistry.counter("cache.tier.requests",
+                "cache", "productCache", "tier", "redis", "result", "hit").count());
+    }
+
+    @Test
+    void writesArePublishedToOtherInstances() {
+        Cache cache = cacheManager.getCache("productCache");
+
+        cache.put(1, "product");
+        cache.evict(2);
+
+        verify(redisTemplate).convertAndSend(eq("cache-invalidation"), endsWith("|productCache|1"));
+        verify(redisTemplate).convertAndSend(eq("cache-invalidation"), endsWith("|productCache|2"));
+    }
+
+    @Test
+    void invalidationFromAnotherInstanceEvictsOnlyLocalEntry() {
+        Cache cache = cacheManager.getCache("productCache");
+        cache.put(1, "stale");
+        ConcurrentMapCache remote = (ConcurrentMapCache) redis.getCache("productCache");
+        remote.put(1, "fresh");
+
+        cacheManager.onMessage(message("other-instance|productCache|1"), null);
+
+        assertEquals("fresh", cache.get(1).get());
+    }
+
+    @Test
+    void invalidationDuringRemoteReadKeepsReadValueOutOfLocalTier() {
+        TwoTierCache[] cache = new TwoTierCache[1];
+        ConcurrentMapCache remote = new ConcurrentMapCache("productCache") {
+            @Override
+            public ValueWrapper get(Object key) {
+                ValueWrapper value = super.get(key);
+                if ("stale".equals(value.get())) {
+                    // Другой инстанс записывает ключ, и его инвалидация приходит до заполнения L1
+                    put(key, "fresh");
+                    cache[0].evictLocal(String.valueOf(key));
+                }
+                return value;
+            }
+        };
+        remote.put(1, "stale");
+        cache[0] = new TwoTierCache(new ConcurrentMapCache("productCache"), remote, redisTemplate,
+                "cache-invalidation", "instance", meterRegistry, 100, 1.0, Duration.ofSeconds(1));
+
+        assertEquals("stale", cache[0].get(1).get());
+        assertEquals("fresh", cache[0].get(1).get());
+        assertEquals("fresh", cache[0].get(1).get());
+        assertEquals(1, meterRegistry.counter("cache.tier.requests",
+                "cache", "productCache", "tier", "local", "result", "hit").count());
+    }
+
+    @Test
+    void clearFromAnotherInstanceDropsWholeLocalTier() {
+        Cache cache = cacheManager.getCache("productCache");
+        cache.put(1, "stale");
+        cache.put(2, "stale");
+        redis.getCache("productCache").clear();
+
+        cacheManager.onMessage(message("other-instance|productCache|"), null);
+
+        assertNull(cache.get(1));
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void earlyRefreshIsClaimedOnceNearRemoteExpiry() {
+        RedisCache remote = mock(RedisCache.class);
+        when(remote.getName()).thenReturn("productCache");
+        when(remote.getCacheConfiguration())
+                .thenReturn(RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMillis(1)));
+        // GET и PTTL одним конвейером: значение и 1 мс до истечения
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class)))
+                .thenReturn(Arrays.asList(RedisSerializer.java().serialize("product"), 1L));
+        TwoTierCache cache = new TwoTierCache(new ConcurrentMapCache("productCache"), remote, redisTemplate,
+                "cache-invalidation", "instance", meterRegistry, 100, 1.0, Duration.ofSeconds(1));
+
+        assertFalse(cache.claimEarlyRefresh(1));
+        assertEquals("product", cache.get(1).get());
+
+        assertTrue(cache.claimEarlyRefresh(1));
+        assertFalse(cache.claimEarlyRefresh(1));
+        // Срок записи берется из TTL, с которым она записана, без PTTL
+        cache.put(1, "refreshed");
+        assertTrue(cache.claimEarlyRefresh(1));
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class), any(RedisSerializer.class));
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        verify(redisTemplate, never()).getExpire(any(), any(TimeUnit.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAllReadsLocalMissesWithOneMget() {
+        RedisCache remote = mock(RedisCache.class);
+        when(remote.getName()).thenReturn("productCache");
+        when(remote.getCacheConfiguration()).thenReturn(RedisCacheConfiguration.defaultCacheConfig());
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenReturn(Arrays.asList(RedisSerializer.java().serialize("remote"), null));
+        TwoTierCache cache = new TwoTierCache(new ConcurrentMapCache("productCache"), remote, redisTemplate,
+                "cache-invalidation", "instance", meterRegistry, 100, 1.0, Duration.ofSeconds(1));
+
+        Map<Object, Cache.ValueWrapper> first = cache.getAll(List.of(1, 2));
+        Map<Object, Cache.ValueWrapper> second = cache.getAll(List.of(1));
+
+        assertEquals("remote", first.get(1).get());
+        assertFalse(first.containsKey(2));
+        assertEquals("remote", second.get(1).get());
+        verify(redisTemplate, times(1)).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    void putAllWritesBothTiersAndPublishesInvalidation() {
+        Cache cache = cacheManager.getCache("productCache");
+
+        ((TwoTierCache) cache).putAll(Map.of(1, "product"));
+        redis.getCache("productCache").evict(1);
+
+        assertEquals("product", cache.get(1).get());
+        verify(redisTemplate).convertAndSend(eq("cache-invalidation"), endsWith("|productCache|1"));
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("cache-invalidation".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
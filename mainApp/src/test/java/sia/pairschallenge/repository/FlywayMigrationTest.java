@@ -0,0 +1,98 @@
+package sia.pairschallenge.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет миграции Flyway на схеме, созданной раньше через ddl-auto=update: у нее нет истории Flyway,
+ * столбца version и новых столбцов outbox, а последовательности отстают от строк, вставленных мимо них,
+ * или, наоборот, ушли вперед. После миграции новые строки должны получать свободные идентификаторы.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class FlywayMigrationTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void legacySchemaIsMigratedAndNewRowsDoNotCollideWithSeededOnes() {
+        // Старые строки получили новую версию по умолчанию
+        assertEquals(List.of(0L), jdbcTemplate.queryForList("select distinct version from product", Long.class));
+
+        List<Product> products = productRepository.saveAllAndFlush(List.of(product("new 1"), product("new 2")));
+        OutboxEvent event = outboxEventRepository.saveAndFlush(new OutboxEvent("product-events", 1, "{}"));
+
+        products.forEach(product -> assertTrue(product.getId() > 250, "product id " + product.getId()));
+        // Последовательность outbox была впереди таблицы и не откатилась назад
+        assertTrue(event.getId() > 1000, "outbox event id " + event.getId());
+        assertEquals(252, productRepository.count());
+    }
+
+    private static Product product(String name) {
+        return new Product(0, name, null, BigDecimal.ONE, 1, null, null);
+    }
+
+    @SpringBootApplication(scanBasePackages = "none")
+    @EntityScan("sia.pairschallenge.repository")
+    @EnableJpaRepositories("sia.pairschallenge.repository")
+    static class LegacySchema {
+
+        /**
+         * Postgres со схемой, как ее создавал Hibernate до Flyway.
+         */
+        @Bean
+        DataSource dataSource() throws IOException {
+            postgres = EmbeddedPostgres.start();
+            DataSource dataSource = postgres.getPostgresDatabase();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("create sequence product_seq start with 1 increment by 100");
+            jdbcTemplate.execute("create sequence outbox_event_seq start with 1 increment by 100");
+            jdbcTemplate.execute("""
+                    create table product (id integer not null primary key, name varchar(255) not null,
+                    description varchar(255), price numeric(38, 2) not null, quantity integer not null,
+                    created_at timestamp(6) not null, updated_at timestamp(6) not null)""");
+            jdbcTemplate.execute("""
+                    create table outbox_event (id bigint not null primary key, topic varchar(255) not null,
+                    product_id integer not null, payload text not null, created_at timestamp(6) not null)""");
+            // Строки, вставленные мимо последовательности
+            jdbcTemplate.update("""
+                    insert into product (id, name, price, quantity, created_at, updated_at)
+                    select g, 'legacy ' || g, 1, 1, now(), now() from generate_series(1, 250) g""");
+            // Последовательность outbox ушла вперед, события с большими идентификаторами уже удалены
+            jdbcTemplate.execute("select setval('outbox_event_seq', 1001)");
+            jdbcTemplate.update("insert into outbox_event values (5, 'product-events', 1, '{}', now())");
+            return dataSource;
+        }
+    }
+}
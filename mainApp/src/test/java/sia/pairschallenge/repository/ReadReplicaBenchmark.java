@@ -0,0 +1,134 @@
+package sia.pairschallenge.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import sia.pairschallenge.PairsChallengeApplication;
+import sia.pairschallenge.service.impl.ProductServiceImpl;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный стенд для записи под нагрузкой чтением: WRITERS потоков меняют количество своих продуктов
+ * через {@link ProductServiceImpl#adjustStock}, а READERS потоков читают страницы по PAGE_SIZE продуктов
+ * со смещением через {@link ProductServiceImpl#findAll}. Печатаются записи в секунду без чтений и с ними,
+ * когда все идет в основную бд и когда чтения идут на реплику.
+ * <p>
+ * Вместо реплики используется второй Postgres из compose.yaml (postgres-replica) без репликации:
+ * стенд сам создает в нем схему и заполняет обе бд ROWS продуктами. Нужны также Redis и Kafka из compose.yaml.
+ * <p>
+ * Запуск: mvn test -Pbenchmark -Dtest=ReadReplicaBenchmark
+ */
+@Tag("benchmark")
+class ReadReplicaBenchmark {
+
+    private static final String PRIMARY_URL = "jdbc:postgresql://localhost:5422/postgres";
+
+    private static final String REPLICA_URL = "jdbc:postgresql://localhost:5423/postgres";
+
+    private static final int ROWS = 200_000;
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static final int WRITERS = 8;
+
+    private static final int READERS = 32;
+
+    private static final Duration WARMUP = Duration.ofSeconds(3);
+
+    private static final Duration MEASUREMENT = Duration.ofSeconds(10);
+
+    @Test
+    void compareWritesUnderReadLoad() throws Exception {
+        seed(PRIMARY_URL);
+        seed(REPLICA_URL);
+
+        System.out.printf("%-14s %20s %20s %12s%n", "mode", "writes/sec idle", "writes/sec loaded", "reads/sec");
+        for (String replicaUrls : List.of("", REPLICA_URL)) {
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(PairsChallengeApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties("datasource.replicas.urls=" + replicaUrls)
+                    .run()) {
+                ProductServiceImpl productService = context.getBean(ProductServiceImpl.class);
+                List<Integer> ids = new ArrayList<>();
+                for (int i = 0; i < WRITERS; i++) {
+                    ids.add(productService.create(new Product(0, "writer " + i, "read replica benchmark",
+                            BigDecimal.TEN, 0, null, null)).getId());
+                }
+                Runnable write = () -> productService.adjustStock(
+                        ids.get(ThreadLocalRandom.current().nextInt(WRITERS)), 1);
+                Runnable read = () -> productService.findAll(
+                        PageRequest.of(ThreadLocalRandom.current().nextInt(ROWS / PAGE_SIZE), PAGE_SIZE));
+
+                run(write, null, WARMUP);
+                Result idle = run(write, null, MEASUREMENT);
+                run(write, read, WARMUP);
+                Result loaded = run(write, read, MEASUREMENT);
+                System.out.printf("%-14s %20.0f %20.0f %12.0f%n", replicaUrls.isEmpty() ? "primary only" : "replica",
+                        idle.writesPerSecond, loaded.writesPerSecond, loaded.readsPerSecond);
+                productService.deleteAllById(ids);
+            }
+        }
+    }
+
+    /**
+     * Создает схему и заполняет бд продуктами, если их меньше ROWS.
+     */
+    private static void seed(String url) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, "my_user", "secret");
+        Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("0").load().migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long missing = ROWS - jdbcTemplate.queryForObject("select count(*) from product", Long.class);
+        if (missing > 0) {
+            jdbcTemplate.update("""
+                    insert into product (id, name, description, price, quantity, created_at, updated_at, version)
+                    select nextval('product_seq'), 'product ' || g, 'read load', 1, 1, now(), now(), 0
+                    from generate_series(1, ?) g""", missing);
+        }
+    }
+
+    private static Result run(Runnable write, Runnable read, Duration duration) throws Exception {
+        AtomicLong writes = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITERS; i++) {
+            futures.add(executor.submit(() -> loop(write, writes, deadline)));
+        }
+        for (int i = 0; read != null && i < READERS; i++) {
+            futures.add(executor.submit(() -> loop(read, reads, deadline)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(writes.get() / seconds, reads.get() / seconds);
+    }
+
+    private static void loop(Runnable action, AtomicLong completed, long deadline) {
+        while (System.nanoTime() < deadline) {
+            action.run();
+            completed.incrementAndGet();
+        }
+    }
+
+    private record Result(double writesPerSecond, double readsPerSecond) {
+    }
+}
@@ -0,0 +1,126 @@
+package sia.pairschallenge.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет выбор между основной бд и репликами: запись в основную бд, чтение по кругу по репликам,
+ * пропуск отстающих и недоступных реплик, чтение без реплик и {@link ReplicaRoutingDataSource#onPrimary}.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Connection primaryConnection = mock(Connection.class);
+
+    private final Connection replica0Connection = mock(Connection.class);
+
+    private final Connection replica1Connection = mock(Connection.class);
+
+    private final ReplicaRoutingDataSource dataSource;
+
+    ReplicaRoutingDataSourceTest() throws SQLException {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", dataSource(replica0Connection));
+        replicas.put("replica-1", dataSource(replica1Connection));
+        dataSource = new ReplicaRoutingDataSource(dataSource(primaryConnection), replicas, Duration.ofSeconds(1),
+                meterRegistry);
+    }
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void sendsWritesToPrimaryAndSpreadsReadsOverReplicas() throws SQLException {
+        assertSame(primaryConnection, dataSource.getConnection());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(replica0Connection, dataSource.getConnection());
+        assertSame(replica1Connection, dataSource.getConnection());
+        assertSame(replica0Connection, dataSource.getConnection());
+        assertSame(primaryConnection, ReplicaRoutingDataSource.onPrimary(this::connection));
+        assertSame(replica1Connection, dataSource.getConnection());
+
+        assertEquals(2, routed("primary"));
+        assertEquals(4, routed("replica"));
+    }
+
+    @Test
+    void skipsLaggingAndUnavailableReplicas() throws SQLException {
+        lag(replica0Connection, 5.0);
+        when(replica1Connection.createStatement()).thenThrow(new SQLException("connection refused"));
+        dataSource.checkReplicas();
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(primaryConnection, dataSource.getConnection());
+        assertEquals(1, routed("primary-fallback"));
+
+        lag(replica0Connection, 0.2);
+        dataSource.checkReplicas();
+
+        assertSame(replica0Connection, dataSource.getConnection());
+        assertSame(replica0Connection, dataSource.getConnection());
+        assertEquals(0.2, meterRegistry.get("datasource.replica.lag").tag("replica", "replica-0").timeGauge()
+                .value(), 1e-9);
+        assertEquals(Double.NaN, meterRegistry.get("datasource.replica.lag").tag("replica", "replica-1").timeGauge()
+                .value());
+    }
+
+    @Test
+    void countsReadsAsPrimaryWithoutReplicas() throws SQLException {
+        ReplicaRoutingDataSource primaryOnly = new ReplicaRoutingDataSource(dataSource(primaryConnection), Map.of(),
+                Duration.ofSeconds(1), meterRegistry);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(primaryConnection, primaryOnly.getConnection());
+
+        assertEquals(1, routed("primary"));
+        assertEquals(0, routed("primary-fallback"));
+    }
+
+    private Connection connection() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double routed(String target) {
+        return meterRegistry.get("datasource.routed.connections").tag("target", target).counter().count();
+    }
+
+    private static DataSource dataSource(Connection connection) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    private static void lag(Connection connection, double seconds) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getDouble(1)).thenReturn(seconds);
+    }
+}
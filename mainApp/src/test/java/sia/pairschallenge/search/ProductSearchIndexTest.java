@@ -0,0 +1,91 @@
+package sia.pairschallenge.search;
+
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sia.pairschallenge.repository.Product;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = new ProductSearchIndex(new ByteBuffersDirectory());
+        index.index(List.of(
+                product(1, "Ноутбук игровой", "16 ГБ памяти", "1500.00", 3),
+                product(2, "Мышь беспроводная", "для ноутбука", "25.50", 40),
+                product(3, "Монитор", "27 дюймов", "300", 0)));
+        index.refresh();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    void matchesWordPrefixesInNameBeforeDescription() {
+        ProductSearchIndex.Hits hits = search("ноут", null, null, null, null);
+
+        assertEquals(2, hits.total());
+        assertEquals(List.of(1, 2), hits.ids());
+        assertEquals(List.of(2), search("мыш беспр", null, null, null, null).ids());
+    }
+
+    @Test
+    void filtersByPriceAndQuantityRanges() {
+        assertEquals(List.of(2, 3), sorted(search(null, "20", "300", null, null).ids()));
+        assertEquals(List.of(1, 2), sorted(search(null, null, null, 1, null).ids()));
+        assertEquals(List.of(1), search("ноут", "1000", null, null, 10).ids());
+    }
+
+    @Test
+    void reflectsUpdatesAndDeletesAfterRefresh() {
+        index.index(List.of(product(3, "Монитор игровой", "27 дюймов", "300", 0)));
+        index.delete(List.of(1));
+        index.refresh();
+
+        assertEquals(List.of(3), search("игров", null, null, null, null).ids());
+    }
+
+    @Test
+    void rebuildReplaysChangesMadeWhileReadingSource() {
+        long indexed = index.rebuild(action -> {
+            action.accept(product(1, "Ноутбук", null, "1000", 1));
+            action.accept(product(2, "Мышь", null, "20", 1));
+            // Изменения, сделанные параллельно с чтением таблицы, когда прочитанные версии уже устарели
+            index.index(List.of(product(1, "Ноутбук обновленный", null, "1000", 1)));
+            index.delete(List.of(2));
+        });
+
+        assertEquals(2, indexed);
+        assertEquals(List.of(1), search(null, null, null, null, null).ids());
+        assertEquals(List.of(1), search("обновл", null, null, null, null).ids());
+        assertTrue(search("монитор", null, null, null, null).ids().isEmpty());
+    }
+
+    private ProductSearchIndex.Hits search(String text, String minPrice, String maxPrice,
+                                           Integer minQuantity, Integer maxQuantity) {
+        return index.search(text, minPrice != null ? new BigDecimal(minPrice) : null,
+                maxPrice != null ? new BigDecimal(maxPrice) : null, minQuantity, maxQuantity, 10);
+    }
+
+    private static List<Integer> sorted(List<Integer> ids) {
+        return ids.stream().sorted().toList();
+    }
+
+    private static Product product(int id, String name, String description, String price, int quantity) {
+        return new Product(id, name, description, new BigDecimal(price), quantity,
+                LocalDateTime.now(), LocalDateTime.now());
+    }
+}
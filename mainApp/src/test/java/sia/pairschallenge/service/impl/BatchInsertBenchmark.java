@@ -0,0 +1,78 @@
+package sia.pairschallenge.service.impl;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import sia.pairschallenge.PairsChallengeApplication;
+import sia.pairschallenge.repository.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Нагрузочный стенд для вставки продуктов: BATCH продуктов одним {@link ProductServiceImpl#createAll}
+ * (одна транзакция, пакеты JDBC, идентификаторы блоками из последовательности) против BATCH вызовов
+ * {@link ProductServiceImpl#create} по одному (транзакция, запись в кэш и индекс на каждый продукт).
+ * Каждый способ повторяется ROUNDS раз после WARMUP_ROUNDS прогревочных; печатаются продукты в секунду.
+ * Созданные продукты удаляются после каждого повтора. Нужны Postgres, Redis и Kafka из compose.yaml.
+ * <p>
+ * Запуск: mvn test -Pbenchmark -Dtest=BatchInsertBenchmark
+ */
+@Tag("benchmark")
+class BatchInsertBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static final int ROUNDS = 10;
+
+    @Test
+    void compareBatchAndSingleInserts() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(PairsChallengeApplication.class)
+                .web(WebApplicationType.NONE)
+                .run()) {
+            ProductServiceImpl productService = context.getBean(ProductServiceImpl.class);
+
+            System.out.printf("%-10s %16s%n", "mode", "products/sec");
+            for (String mode : List.of("create", "createAll")) {
+                for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                    round(productService, mode);
+                }
+                long nanos = 0;
+                for (int i = 0; i < ROUNDS; i++) {
+                    nanos += round(productService, mode);
+                }
+                System.out.printf("%-10s %16.0f%n", mode, (double) BATCH * ROUNDS / (nanos / 1e9));
+            }
+        }
+    }
+
+    /**
+     * Вставляет BATCH продуктов выбранным способом и удаляет их.
+     *
+     * @return Время вставки, нс.
+     */
+    private static long round(ProductServiceImpl productService, String mode) {
+        List<Product> products = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            products.add(new Product(0, "product " + i, "batch insert benchmark", BigDecimal.TEN, 1, null, null));
+        }
+        long start = System.nanoTime();
+        List<Product> saved;
+        if (mode.equals("createAll")) {
+            saved = productService.createAll(products);
+        } else {
+            saved = new ArrayList<>(BATCH);
+            for (Product product : products) {
+                saved.add(productService.create(product));
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        productService.deleteAllById(saved.stream().map(Product::getId).toList());
+        return nanos;
+    }
+}
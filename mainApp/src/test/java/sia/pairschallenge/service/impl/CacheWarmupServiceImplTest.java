@@ -0,0 +1,83 @@
+package sia.pairschallenge.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import sia.pairschallenge.redis.HotKeyTracker;
+import sia.pairschallenge.repository.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет, что прогрев читает самые запрашиваемые продукты пачками и не останавливает запуск при ошибке.
+ */
+class CacheWarmupServiceImplTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private HotKeyTracker hotKeyTracker;
+
+    private ProductServiceImpl productService;
+
+    private CacheWarmupServiceImpl warmupService;
+
+    @BeforeEach
+    void setUp() {
+        hotKeyTracker = mock(HotKeyTracker.class);
+        productService = mock(ProductServiceImpl.class);
+        warmupService = new CacheWarmupServiceImpl(hotKeyTracker, productService, meterRegistry);
+        ReflectionTestUtils.setField(warmupService, "enabled", true);
+        ReflectionTestUtils.setField(warmupService, "topN", 5);
+        ReflectionTestUtils.setField(warmupService, "batchSize", 2);
+    }
+
+    @Test
+    void loadsHotProductsInBatches() {
+        when(hotKeyTracker.top(5)).thenReturn(List.of(5, 4, 3, 2, 1));
+        when(productService.findAllById(anyList())).thenAnswer(invocation -> {
+            List<Integer> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id != 3).map(CacheWarmupServiceImplTest::product).toList();
+        });
+
+        assertEquals(4, warmupService.warmUp());
+
+        verify(productService).findAllById(List.of(5, 4));
+        verify(productService).findAllById(List.of(3, 2));
+        verify(productService).findAllById(List.of(1));
+        assertEquals(4, meterRegistry.get("cache.warmup.products").gauge().value());
+        assertEquals(1, meterRegistry.get("cache.warmup.time").timer().count());
+    }
+
+    @Test
+    void startsWithColdCacheWhenWarmupFails() {
+        when(hotKeyTracker.top(5)).thenThrow(new RedisConnectionFailureException("down"));
+
+        warmupService.run(new DefaultApplicationArguments());
+
+        verify(productService, never()).findAllById(anyList());
+    }
+
+    @Test
+    void skipsWarmupWhenDisabled() {
+        ReflectionTestUtils.setField(warmupService, "enabled", false);
+
+        warmupService.run(new DefaultApplicationArguments());
+
+        verify(hotKeyTracker, never()).top(5);
+    }
+
+    private static Product product(int id) {
+        return new Product(id, "product " + id, null, BigDecimal.ONE, 1, null, null);
+    }
+}
@@ -0,0 +1,101 @@
+package sia.pairschallenge.service.impl;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import sia.pairschallenge.PairsChallengeApplication;
+import sia.pairschallenge.repository.Product;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный стенд для списаний одного "горячего" продукта из THREADS потоков.
+ * Сравниваются три способа уменьшить количество на 1:
+ * <ul>
+ *     <li>update - прочитать продукт и записать его целиком через {@link ProductServiceImpl#update}
+ *     (как раньше делали клиенты; параллельные списания к тому же теряются);</li>
+ *     <li>adjustStock - атомарный update quantity = quantity + delta в Postgres;</li>
+ *     <li>reserve - скрипт Redis в {@link InventoryServiceImpl}, в бд изменения пишутся пачками.</li>
+ * </ul>
+ * Печатаются списания в секунду и ошибки. Нужны Postgres, Redis и Kafka из compose.yaml.
+ * <p>
+ * Запуск: mvn test -Pbenchmark -Dtest=InventoryContentionBenchmark
+ */
+@Tag("benchmark")
+class InventoryContentionBenchmark {
+
+    private static final int THREADS = 32;
+
+    private static final Duration WARMUP = Duration.ofSeconds(3);
+
+    private static final Duration MEASUREMENT = Duration.ofSeconds(10);
+
+    @Test
+    void compareDecrementsOfHotProduct() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(PairsChallengeApplication.class)
+                .web(WebApplicationType.NONE)
+                .run()) {
+            ProductServiceImpl productService = context.getBean(ProductServiceImpl.class);
+            InventoryServiceImpl inventoryService = context.getBean(InventoryServiceImpl.class);
+
+            System.out.printf("%-12s %16s %8s%n", "mode", "decrements/sec", "errors");
+            for (String mode : List.of("update", "adjustStock", "reserve")) {
+                int id = productService.create(new Product(0, "hot product", "flash sale", BigDecimal.TEN,
+                        Integer.MAX_VALUE, null, null)).getId();
+                Runnable decrement = switch (mode) {
+                    case "update" -> () -> {
+                        Product product = productService.findById(id);
+                        product.setQuantity(product.getQuantity() - 1);
+                        productService.update(id, product);
+                    };
+                    case "adjustStock" -> () -> productService.adjustStock(id, -1);
+                    default -> () -> inventoryService.reserve(id, 1);
+                };
+                run(decrement, WARMUP);
+                Result result = run(decrement, MEASUREMENT);
+                System.out.printf("%-12s %16.0f %8d%n", mode, result.perSecond, result.errors);
+                inventoryService.flush();
+                productService.deleteById(id);
+            }
+        }
+    }
+
+    private static Result run(Runnable decrement, Duration duration) throws Exception {
+        AtomicLong completed = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    try {
+                        decrement.run();
+                        completed.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(completed.get() / seconds, errors.get());
+    }
+
+    private record Result(double perSecond, long errors) {
+    }
+}
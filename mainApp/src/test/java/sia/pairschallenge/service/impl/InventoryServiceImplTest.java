@@ -0,0 +1,133 @@
+package sia.pairschallenge.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+import sia.pairschallenge.redis.InventoryCounters;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.repository.ProductRepository;
+import sia.pairschallenge.service.InsufficientStockException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет заполнение остатков из бд, отказ при нехватке и запись накопленных изменений в бд.
+ */
+class InventoryServiceImplTest {
+
+    private static final int PRODUCT_ID = 1;
+
+    private InventoryCounters inventoryCounters;
+
+    private ProductRepository productRepository;
+
+    private ProductServiceImpl productService;
+
+    private InventoryServiceImpl inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        inventoryCounters = mock(InventoryCounters.class);
+        productRepository = mock(ProductRepository.class);
+        productService = mock(ProductServiceImpl.class);
+        inventoryService = new InventoryServiceImpl(inventoryCounters, productRepository, productService,
+                new SimpleMeterRegistry());
+
+        when(inventoryCounters.generation(PRODUCT_ID)).thenReturn("7");
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(new Product(PRODUCT_ID, "product",
+                "description", BigDecimal.TEN, 10, LocalDateTime.now(), LocalDateTime.now())));
+    }
+
+    @Test
+    void seedsMissingCounterFromDatabaseAndRetries() {
+        when(inventoryCounters.change(PRODUCT_ID, -3)).thenReturn(InventoryCounters.MISSING, 7L);
+        when(inventoryCounters.seed(PRODUCT_ID, 10, "7")).thenReturn(true);
+
+        assertEquals(7, inventoryService.reserve(PRODUCT_ID, 3));
+
+        var order = inOrder(inventoryCounters, productRepository);
+        order.verify(inventoryCounters).generation(PRODUCT_ID);
+        order.verify(productRepository).findById(PRODUCT_ID);
+        order.verify(inventoryCounters).seed(PRODUCT_ID, 10, "7");
+    }
+
+    @Test
+    void rejectsReservationBeyondStock() {
+        when(inventoryCounters.change(PRODUCT_ID, -11)).thenReturn(InventoryCounters.INSUFFICIENT);
+
+        assertThrows(InsufficientStockException.class, () -> inventoryService.reserve(PRODUCT_ID, 11));
+        verify(productService, never()).adjustStock(anyInt(), anyInt());
+    }
+
+    @Test
+    void doesNotFallBackToDatabaseWhileFlushIsRunning() {
+        when(inventoryCounters.change(PRODUCT_ID, -1)).thenReturn(InventoryCounters.MISSING);
+        when(inventoryCounters.seed(PRODUCT_ID, 10, "7")).thenReturn(false);
+
+        assertThrows(ConcurrencyFailureException.class, () -> inventoryService.reserve(PRODUCT_ID, 1));
+        verify(productService, never()).adjustStock(anyInt(), anyInt());
+    }
+
+    @Test
+    void missingProductIsNotSeeded() {
+        when(inventoryCounters.change(404, 1)).thenReturn(InventoryCounters.MISSING);
+
+        assertThrows(EntityNotFoundException.class, () -> inventoryService.release(404, 1));
+        verify(inventoryCounters, never()).seed(anyInt(), anyLong(), anyString());
+    }
+
+    @Test
+    void flushAppliesCoalescedChangesAndDropsRejectedOnes() {
+        Map<Integer, Long> pending = new TreeMap<>(Map.of(1, -250L, 2, 5L, 3, -1L));
+        when(inventoryCounters.tryAcquireFlush()).thenReturn("lease");
+        when(inventoryCounters.takePending()).thenReturn(pending);
+        when(productService.adjustStock(3, -1)).thenThrow(new InsufficientStockException("no stock"));
+
+        assertEquals(3, inventoryService.flush());
+
+        verify(productService).adjustStock(1, -250);
+        verify(productService).adjustStock(2, 5);
+        verify(inventoryCounters).complete(1);
+        verify(inventoryCounters).complete(2);
+        verify(inventoryCounters).complete(3);
+        verify(inventoryCounters).releaseFlush("lease");
+    }
+
+    @Test
+    void failedFlushKeepsRemainingChanges() {
+        when(inventoryCounters.tryAcquireFlush()).thenReturn("lease");
+        when(inventoryCounters.takePending()).thenReturn(new TreeMap<>(Map.of(1, -1L, 2, -1L)));
+        when(productService.adjustStock(1, -1)).thenThrow(new IllegalStateException("database is down"));
+
+        assertEquals(0, inventoryService.flush());
+
+        verify(inventoryCounters, never()).complete(anyInt());
+        verify(productService, never()).adjustStock(2, -1);
+        verify(inventoryCounters).releaseFlush("lease");
+    }
+
+    @Test
+    void flushIsSkippedWhenAnotherInstanceHoldsTheLease() {
+        when(inventoryCounters.tryAcquireFlush()).thenReturn(null);
+
+        assertEquals(0, inventoryService.flush());
+        verify(inventoryCounters, never()).takePending();
+    }
+}
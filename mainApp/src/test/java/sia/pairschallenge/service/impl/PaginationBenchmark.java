@@ -0,0 +1,71 @@
+package sia.pairschallenge.service.impl;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import sia.pairschallenge.PairsChallengeApplication;
+
+import java.util.function.Supplier;
+
+/**
+ * Нагрузочный стенд для пагинации: время чтения страниц 0 и DEEP_PAGE (нумерация с нуля, как в page)
+ * по PAGE_SIZE продуктов со смещением ({@link ProductServiceImpl#findAll}) и по курсору ({@link ProductServiceImpl#findAfter}).
+ * Курсор для глубокой страницы - идентификатор последнего продукта предыдущей страницы.
+ * Если продуктов меньше, чем нужно для глубокой страницы, стенд добавляет недостающие одним insert.
+ * Печатается среднее время страницы за ITERATIONS чтений после WARMUP прогревочных.
+ * Нужны Postgres, Redis и Kafka из compose.yaml.
+ * <p>
+ * Запуск: mvn test -Pbenchmark -Dtest=PaginationBenchmark
+ */
+@Tag("benchmark")
+class PaginationBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final int DEEP_PAGE = 100_000;
+
+    private static final int WARMUP = 10;
+
+    private static final int ITERATIONS = 50;
+
+    @Test
+    void compareOffsetAndKeysetPages() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(PairsChallengeApplication.class)
+                .web(WebApplicationType.NONE)
+                .run()) {
+            ProductServiceImpl productService = context.getBean(ProductServiceImpl.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            long rows = (long) (DEEP_PAGE + 1) * PAGE_SIZE;
+            long missing = rows - jdbcTemplate.queryForObject("select count(*) from product", Long.class);
+            if (missing > 0) {
+                jdbcTemplate.update("""
+                        insert into product (id, name, description, price, quantity, created_at, updated_at, version)
+                        select nextval('product_seq'), 'product ' || g, 'pagination', 1, 1, now(), now(), 0
+                        from generate_series(1, ?) g""", missing);
+            }
+            int deepAfter = jdbcTemplate.queryForObject("select id from product order by id offset ? limit 1",
+                    Integer.class, (long) DEEP_PAGE * PAGE_SIZE - 1);
+
+            System.out.printf("%-8s %10s %14s%n", "mode", "page", "ms/page");
+            print("offset", 0, () -> productService.findAll(PageRequest.of(0, PAGE_SIZE)));
+            print("offset", DEEP_PAGE, () -> productService.findAll(PageRequest.of(DEEP_PAGE, PAGE_SIZE)));
+            print("keyset", 0, () -> productService.findAfter(0, PAGE_SIZE));
+            print("keyset", DEEP_PAGE, () -> productService.findAfter(deepAfter, PAGE_SIZE));
+        }
+    }
+
+    private static void print(String mode, int page, Supplier<?> read) {
+        for (int i = 0; i < WARMUP; i++) {
+            read.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            read.get();
+        }
+        System.out.printf("%-8s %10d %14.3f%n", mode, page, (System.nanoTime() - start) / 1e6 / ITERATIONS);
+    }
+}
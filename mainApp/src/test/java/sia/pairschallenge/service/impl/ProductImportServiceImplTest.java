@@ -0,0 +1,42 @@
+package sia.pairschallenge.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import sia.pairschallenge.service.ProductImportService.ImportResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ProductImportServiceImplTest {
+
+    @Test
+    void savesNdjsonInFixedSizeChunksAndClearsPersistenceContext() throws Exception {
+        ProductServiceImpl productService = mock(ProductServiceImpl.class);
+        EntityManager entityManager = mock(EntityManager.class);
+        ProductImportServiceImpl importService = new ProductImportServiceImpl(productService, new ObjectMapper());
+        ReflectionTestUtils.setField(importService, "entityManager", entityManager);
+        ReflectionTestUtils.setField(importService, "chunkSize", 100);
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            body.append("{\"name\":\"product ").append(i).append("\",\"price\":10.5,\"quantity\":").append(i).append("}\n");
+        }
+
+        ImportResult result = importService.importProducts(
+                new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(250, result.imported());
+        assertEquals(3, result.chunks().size());
+        assertEquals(50, result.chunks().get(2).size());
+        verify(productService, times(3)).createAll(anyList());
+        verify(entityManager, times(3)).clear();
+    }
+}
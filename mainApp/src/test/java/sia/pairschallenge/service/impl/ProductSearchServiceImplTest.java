@@ -0,0 +1,189 @@
+package sia.pairschallenge.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sia.pairschallenge.redis.CacheLoadLease;
+import sia.pairschallenge.redis.HotKeyTracker;
+import sia.pairschallenge.redis.InventoryCounters;
+import sia.pairschallenge.redis.ProductChangeChannel;
+import sia.pairschallenge.repository.OutboxEventRepository;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.repository.ProductRepository;
+import sia.pairschallenge.search.ProductSearchIndex;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет переиндексацию продуктов, измененных другими инстансами и реактивным приложением.
+ */
+class ProductSearchServiceImplTest {
+
+    private final List<ProductSearchIndex> indexes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (ProductSearchIndex index : indexes) {
+            index.close();
+        }
+    }
+
+    @Test
+    void changeMessageReindexesUpdatedAndRemovesDeletedProducts() throws IOException {
+        ProductSearchIndex index = index();
+        ProductRepository productRepository = mock(ProductRepository.class);
+        ProductSearchServiceImpl searchService = new ProductSearchServiceImpl(index, mock(ProductServiceImpl.class),
+                productRepository, new ProductChangeChannel(mock(StringRedisTemplate.class), "product-changes"));
+        index.index(List.of(product(1, "Ноутбук"), product(2, "Мышь")));
+        when(productRepository.findAllById(List.of(1, 2))).thenReturn(List.of(product(1, "Ноутбук игровой")));
+
+        searchService.onMessage(message("reactive-1|1,2"), null);
+        index.refresh();
+
+        assertEquals(List.of(1), index.search(null, null, null, null, null, 10).ids());
+        assertEquals(List.of(1), index.search("игров", null, null, null, null, 10).ids());
+    }
+
+    @Test
+    void malformedChangeMessageIsIgnored() throws IOException {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        ProductSearchServiceImpl searchService = new ProductSearchServiceImpl(index(), mock(ProductServiceImpl.class),
+                productRepository, new ProductChangeChannel(mock(StringRedisTemplate.class), "product-changes"));
+
+        searchService.onMessage(message("reactive-1|1,x"), null);
+
+        verify(productRepository, never()).findAllById(anyIterable());
+    }
+
+    @Test
+    void changesOnOneInstanceReachSearchIndexOfAnother() throws IOException {
+        Map<Integer, Product> database = new ConcurrentHashMap<>();
+        ProductRepository productRepository = repository(database);
+        SharedChannelTemplate channel = new SharedChannelTemplate();
+        Instance first = new Instance(productRepository, channel);
+        Instance second = new Instance(productRepository, channel);
+
+        Product created = first.productService.create(product(0, "Ноутбук"));
+        second.index.refresh();
+        assertEquals(List.of(created.getId()), second.index.search("ноут", null, null, null, null, 10).ids());
+
+        Product repriced = product(created.getId(), "Ноутбук");
+        repriced.setPrice(BigDecimal.valueOf(500));
+        first.productService.update(created.getId(), repriced);
+        second.index.refresh();
+        assertEquals(List.of(created.getId()),
+                second.index.search(null, BigDecimal.valueOf(400), null, null, null, 10).ids());
+
+        first.productService.deleteById(created.getId());
+        second.index.refresh();
+        assertEquals(0, second.index.search(null, null, null, null, null, 10).total());
+
+        // Инстанс-автор пропускает свои сообщения: бд читает только второй инстанс, по разу на изменение
+        verify(productRepository, times(3)).findAllById(anyIterable());
+    }
+
+    private ProductSearchIndex index() throws IOException {
+        ProductSearchIndex index = new ProductSearchIndex(new ByteBuffersDirectory());
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Инстанс основного приложения: свои индекс, кэш и канал изменений поверх общих бд и канала Redis.
+     */
+    private class Instance {
+
+        private final ProductSearchIndex index;
+
+        private final ProductServiceImpl productService;
+
+        Instance(ProductRepository productRepository, SharedChannelTemplate channel) throws IOException {
+            index = index();
+            ProductChangeChannel productChangeChannel = new ProductChangeChannel(channel, "product-changes");
+            CacheLoadLease cacheLoadLease = mock(CacheLoadLease.class);
+            when(cacheLoadLease.tryAcquire(any(), any())).thenReturn("lease");
+            productService = new ProductServiceImpl(productRepository, mock(OutboxEventRepository.class),
+                    new ObjectMapper().findAndRegisterModules(), new ConcurrentMapCacheManager(),
+                    new TransactionTemplate(mock(PlatformTransactionManager.class)), cacheLoadLease, index,
+                    mock(InventoryCounters.class), mock(HotKeyTracker.class), productChangeChannel);
+            channel.subscribers.add(new ProductSearchServiceImpl(index, productService, productRepository,
+                    productChangeChannel));
+        }
+    }
+
+    /**
+     * Канал Redis, доставляющий каждое сообщение всем подписчикам, в том числе отправителю.
+     */
+    private static class SharedChannelTemplate extends StringRedisTemplate {
+
+        private final List<ProductSearchServiceImpl> subscribers = new ArrayList<>();
+
+        @Override
+        public Long convertAndSend(String channel, Object message) {
+            subscribers.forEach(subscriber -> subscriber.onMessage(new DefaultMessage(
+                    channel.getBytes(StandardCharsets.UTF_8),
+                    String.valueOf(message).getBytes(StandardCharsets.UTF_8)), null));
+            return (long) subscribers.size();
+        }
+    }
+
+    private static ProductRepository repository(Map<Integer, Product> database) {
+        AtomicInteger sequence = new AtomicInteger();
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findById(anyInt())).thenAnswer(invocation ->
+                Optional.ofNullable(database.get(invocation.<Integer>getArgument(0))));
+        when(productRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Product> found = new ArrayList<>();
+            for (Integer id : invocation.<Iterable<Integer>>getArgument(0)) {
+                Optional.ofNullable(database.get(id)).ifPresent(found::add);
+            }
+            return found;
+        });
+        when(productRepository.saveAndFlush(any(Product.class))).thenAnswer(invocation -> {
+            Product product = invocation.getArgument(0);
+            if (product.getId() == 0) {
+                product.setId(sequence.incrementAndGet());
+            }
+            database.put(product.getId(), product);
+            return product;
+        });
+        doAnswer(invocation -> database.remove(invocation.<Product>getArgument(0).getId()))
+                .when(productRepository).delete(any(Product.class));
+        return productRepository;
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("product-changes".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Product product(int id, String name) {
+        return new Product(id, name, null, BigDecimal.ONE, 1, LocalDateTime.now(), LocalDateTime.now());
+    }
+}
@@ -0,0 +1,321 @@
+package sia.pairschallenge.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sia.pairschallenge.redis.CacheLoadLease;
+import sia.pairschallenge.redis.HotKeyTracker;
+import sia.pairschallenge.redis.InventoryCounters;
+import sia.pairschallenge.redis.ProductChangeChannel;
+import sia.pairschallenge.redis.TwoTierCacheManager;
+import sia.pairschallenge.repository.OutboxEventRepository;
+import sia.pairschallenge.repository.Product;
+import sia.pairschallenge.repository.ProductPatch;
+import sia.pairschallenge.repository.ProductRepository;
+import sia.pairschallenge.repository.ReplicaRoutingDataSource;
+import sia.pairschallenge.search.ProductSearchIndex;
+import sia.pairschallenge.service.InsufficientStockException;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет, что при гонке обновлений и чтений в productCache не остается устаревшее значение,
+ * а параллельные промахи по одному ключу загружают продукт из бд один раз.
+ * Заменитель репозитория проверяет и увеличивает версию продукта так же, как update ... where version = ?.
+ */
+class ProductServiceImplConcurrencyTest {
+
+    private static final int PRODUCT_ID = 1;
+
+    private final Map<Integer, Product> database = new ConcurrentHashMap<>();
+
+    private ProductServiceImpl productService;
+
+    private Cache productCache;
+
+    private ProductRepository productRepository;
+
+    private CacheLoadLease cacheLoadLease;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findById(anyInt())).thenAnswer(invocation -> {
+            Product stored = database.get(invocation.<Integer>getArgument(0));
+            // Расширяет окно между чтением из бд и записью в кэш
+            Thread.sleep(0, ThreadLocalRandom.current().nextInt(100_000));
+            return Optional.ofNullable(stored).map(ProductServiceImplConcurrencyTest::copy);
+        });
+        when(productRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Product> found = new ArrayList<>();
+            for (Integer id : invocation.<Iterable<Integer>>getArgument(0)) {
+                Optional.ofNullable(database.get(id)).map(ProductServiceImplConcurrencyTest::copy).ifPresent(found::add);
+            }
+            return found;
+        });
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> {
+            Product product = copy(invocation.getArgument(0));
+            Product stored = database.get(product.getId());
+            if (stored != null && stored.getVersion() != product.getVersion()) {
+                throw new ObjectOptimisticLockingFailureException(Product.class, product.getId());
+            }
+            product.setVersion(product.getVersion() + 1);
+            product.setUpdatedAt(LocalDateTime.now());
+            database.put(product.getId(), product);
+            return copy(product);
+        });
+
+        when(productRepository.saveAndFlush(any(Product.class))).thenAnswer(invocation ->
+                productRepository.save(invocation.getArgument(0)));
+
+        TwoTierCacheManager cacheManager = new TwoTierCacheManager(new ConcurrentMapCacheManager(),
+                mock(StringRedisTemplate.class), new SimpleMeterRegistry(), "cache-invalidation",
+                100, Duration.ofMinutes(1), Duration.ofSeconds(10), 1.0, Duration.ofMillis(50));
+
+        cacheLoadLease = mock(CacheLoadLease.class);
+        when(cacheLoadLease.tryAcquire(any(), any())).thenReturn("lease");
+
+        productService = new ProductServiceImpl(productRepository, mock(OutboxEventRepository.class),
+                new ObjectMapper().findAndRegisterModules(), cacheManager,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), cacheLoadLease,
+                mock(ProductSearchIndex.class), mock(InventoryCounters.class),
+                mock(HotKeyTracker.class), mock(ProductChangeChannel.class));
+        productCache = cacheManager.getCache(ProductServiceImpl.PRODUCT_CACHE);
+
+        database.put(PRODUCT_ID, product(0));
+    }
+
+    @RepeatedTest(5)
+    void racingUpdatesAndReadsNeverLeaveStaleValueInCache() throws Exception {
+        int writers = 4;
+        int readers = 4;
+        int updatesPerWriter = 200;
+        AtomicInteger quantity = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writersDone = new CountDownLatch(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < writers; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < updatesPerWriter; j++) {
+                    productService.update(PRODUCT_ID, product(quantity.incrementAndGet()));
+                }
+                writersDone.countDown();
+                return null;
+            }));
+        }
+        for (int i = 0; i < readers; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                while (writersDone.getCount() > 0) {
+                    // Имитирует истечение записи, чтобы чтения регулярно шли в бд
+                    if (ThreadLocalRandom.current().nextInt(4) == 0) {
+                        productCache.evict(PRODUCT_ID);
+                    }
+                    productService.findById(PRODUCT_ID);
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Product stored = database.get(PRODUCT_ID);
+        Product cached = productCache.get(PRODUCT_ID, Product.class);
+        if (cached != null) {
+            assertEquals(stored.getQuantity(), cached.getQuantity());
+            assertEquals(stored.getUpdatedAt(), cached.getUpdatedAt());
+        }
+        assertEquals(stored.getQuantity(), productService.findById(PRODUCT_ID).getQuantity());
+    }
+
+    @Test
+    void findByIdIsServedFromCacheRightAfterWrite() {
+        Product updated = productService.update(PRODUCT_ID, product(42));
+
+        database.clear();
+
+        assertSame(updated, productService.findById(PRODUCT_ID));
+    }
+
+    @Test
+    void concurrentMissesLoadFromDatabaseOnce() throws Exception {
+        int readers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        List<Future<Product>> futures = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return productService.findById(PRODUCT_ID);
+            }));
+        }
+
+        start.countDown();
+        for (Future<Product> future : futures) {
+            assertEquals(0, future.get(30, TimeUnit.SECONDS).getQuantity());
+        }
+        executor.shutdown();
+
+        verify(productRepository, times(1)).findById(PRODUCT_ID);
+    }
+
+    @Test
+    void missingProductIsCachedAsNotFound() {
+        int missingId = 404;
+
+        assertThrows(EntityNotFoundException.class, () -> productService.findById(missingId));
+        assertThrows(EntityNotFoundException.class, () -> productService.findById(missingId));
+
+        verify(productRepository, times(1)).findById(missingId);
+    }
+
+    @Test
+    void missWaitsForValueLoadedByLeaseHolder() {
+        Product loadedElsewhere = product(7);
+        when(cacheLoadLease.tryAcquire(any(), any())).thenReturn(null);
+        when(cacheLoadLease.await(any())).thenAnswer(invocation -> {
+            // Другой инстанс, владеющий арендой, кладет значение в общий кэш
+            productCache.put(PRODUCT_ID, loadedElsewhere);
+            return invocation.<Supplier<?>>getArgument(0).get();
+        });
+
+        assertSame(loadedElsewhere, productService.findById(PRODUCT_ID));
+        verify(productRepository, never()).findById(anyInt());
+    }
+
+    @Test
+    void findAllByIdLoadsOnlyMissesWithOneQueryAndCachesThem() {
+        database.put(2, new Product(2, "second", "description", BigDecimal.ONE, 2,
+                LocalDateTime.now(), LocalDateTime.now()));
+        productService.findById(PRODUCT_ID);
+
+        List<Product> products = productService.findAllById(List.of(2, 404, PRODUCT_ID, 2));
+
+        assertEquals(List.of(2, PRODUCT_ID), products.stream().map(Product::getId).toList());
+        verify(productRepository, times(1)).findAllById(List.of(2, 404));
+
+        database.clear();
+        assertEquals(2, productService.findAllById(List.of(PRODUCT_ID, 2, 404)).size());
+        verify(productRepository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void cacheFillsReadPrimaryEvenInsideReadOnlyTransaction() throws SQLException {
+        Connection primary = mock(Connection.class);
+        Connection replica = mock(Connection.class);
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(dataSource(primary),
+                Map.of("replica-0", dataSource(replica)), Duration.ofSeconds(1), new SimpleMeterRegistry());
+        List<Connection> used = new ArrayList<>();
+        doAnswer(invocation -> {
+            used.add(dataSource.getConnection());
+            return Optional.of(product(0));
+        }).when(productRepository).findById(anyInt());
+        doAnswer(invocation -> {
+            used.add(dataSource.getConnection());
+            return List.of(product(0));
+        }).when(productRepository).findAllById(any());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            productService.findById(PRODUCT_ID);
+            productService.findAllById(List.of(2));
+            assertSame(replica, dataSource.getConnection());
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+
+        assertEquals(List.of(primary, primary), used);
+    }
+
+    @Test
+    void updateWithStaleVersionIsRejected() {
+        Product first = productService.update(PRODUCT_ID, product(1), 0L);
+
+        assertEquals(1, first.getVersion());
+        assertThrows(OptimisticLockingFailureException.class, () -> productService.update(PRODUCT_ID, product(2), 0L));
+        assertEquals(1, database.get(PRODUCT_ID).getQuantity());
+        assertEquals(2, productService.update(PRODUCT_ID, product(3), null).getVersion());
+    }
+
+    @Test
+    void patchPutsResultIntoCacheAndExplainsRejection() {
+        Product patched = product(5);
+        patched.setVersion(1);
+        when(productRepository.patch(PRODUCT_ID, ProductPatch.quantityDelta(5), null)).thenReturn(Optional.of(patched));
+
+        assertSame(patched, productService.adjustStock(PRODUCT_ID, 5));
+        assertSame(patched, productCache.get(PRODUCT_ID, Product.class));
+
+        when(productRepository.patch(anyInt(), any(), any())).thenReturn(Optional.empty());
+        assertThrows(InsufficientStockException.class, () -> productService.adjustStock(PRODUCT_ID, -1));
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> productService.patch(PRODUCT_ID, new ProductPatch("name", null, null, null, null), 3L));
+        assertThrows(EntityNotFoundException.class, () -> productService.adjustStock(404, 1));
+    }
+
+    private static DataSource dataSource(Connection connection) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    private static Product product(int quantity) {
+        return new Product(PRODUCT_ID, "product", "description", BigDecimal.TEN, quantity,
+                LocalDateTime.now(), LocalDateTime.now());
+    }
+
+    private static Product copy(Product product) {
+        Product copy = new Product(product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                product.getQuantity(), product.getCreatedAt(), product.getUpdatedAt());
+        copy.setVersion(product.getVersion());
+        return copy;
+    }
+}
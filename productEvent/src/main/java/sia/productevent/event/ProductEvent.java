@@ -1,14 +1,18 @@
 package sia.productevent.event;
 
-import org.hibernate.annotations.CreationTimestamp;
-import org.hibernate.annotations.UpdateTimestamp;
-
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Objects;
 
+/**
+ * Событие об изменении продукта, которое mainApp публикует в топик "product-events".
+ * В Kafka передается в бинарном формате {@link sia.productevent.serialization.ProductEventSerializer}.
+ */
 public class ProductEvent implements Serializable{
 
+        private ProductEventType type;
+
         private int id;
 
         private String name;
@@ -19,15 +23,19 @@ public class ProductEvent implements Serializable{
 
         private Integer quantity;
 
-        @CreationTimestamp
         private LocalDateTime createdAt;
 
-        @UpdateTimestamp
         private LocalDateTime updatedAt;
 
-        private String message;
+        private LocalDateTime occurredAt;
+
+        /**
+         * Версия продукта для оптимистической блокировки; null в событиях, записанных до ее появления.
+         */
+        private Long version;
 
-        public ProductEvent(String message, int id, String name, String description, BigDecimal price, Integer quantity, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        public ProductEvent(ProductEventType type, int id, String name, String description, BigDecimal price, Integer quantity, LocalDateTime createdAt, LocalDateTime updatedAt) {
+                this.type = type;
                 this.id = id;
                 this.name = name;
                 this.description = description;
@@ -35,11 +43,15 @@ public class ProductEvent implements Serializable{
                 this.quantity = quantity;
                 this.createdAt = createdAt;
                 this.updatedAt = updatedAt;
-                this.message = message + " Message Time: " + LocalDateTime.now();
+                this.occurredAt = LocalDateTime.now();
         }
 
         public ProductEvent() {}
 
+        public ProductEventType getType() {
+                return type;
+        }
+
         public int getId() {
                 return id;
         }
@@ -68,8 +80,12 @@ public class ProductEvent implements Serializable{
                 return updatedAt;
         }
 
-        public String getMessage() {
-                return message;
+        public LocalDateTime getOccurredAt() {
+                return occurredAt;
+        }
+
+        public void setType(ProductEventType type) {
+                this.type = type;
         }
 
         public void setId(int id) {
@@ -100,21 +116,56 @@ public class ProductEvent implements Serializable{
                 this.updatedAt = updatedAt;
         }
 
-        public void setMessage(String message) {
-                this.message = message;
+        public void setOccurredAt(LocalDateTime occurredAt) {
+                this.occurredAt = occurredAt;
+        }
+
+        public Long getVersion() {
+                return version;
+        }
+
+        public void setVersion(Long version) {
+                this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+                if (this == o) {
+                        return true;
+                }
+                if (!(o instanceof ProductEvent that)) {
+                        return false;
+                }
+                return id == that.id
+                        && type == that.type
+                        && Objects.equals(name, that.name)
+                        && Objects.equals(description, that.description)
+                        && Objects.equals(price, that.price)
+                        && Objects.equals(quantity, that.quantity)
+                        && Objects.equals(createdAt, that.createdAt)
+                        && Objects.equals(updatedAt, that.updatedAt)
+                        && Objects.equals(occurredAt, that.occurredAt)
+                        && Objects.equals(version, that.version);
+        }
+
+        @Override
+        public int hashCode() {
+                return Objects.hash(type, id, updatedAt);
         }
 
         @Override
         public String toString() {
                 return "ProductEvent{" +
-                        "id=" + id +
+                        "type=" + type +
+                        ", id=" + id +
                         ", name='" + name + '\'' +
                         ", description='" + description + '\'' +
                         ", price=" + price +
                         ", quantity=" + quantity +
                         ", createdAt=" + createdAt +
                         ", updatedAt=" + updatedAt +
-                        ", message='" + message + '\'' +
+                        ", occurredAt=" + occurredAt +
+                        ", version=" + version +
                         '}';
         }
 }
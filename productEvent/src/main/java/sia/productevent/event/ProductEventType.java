@@ -0,0 +1,31 @@
+package sia.productevent.event;
+
+/**
+ * Тип события с продуктом.
+ * Код типа передается в бинарном формате события, поэтому коды существующих типов менять нельзя.
+ */
+public enum ProductEventType {
+
+        CREATED(1),
+        UPDATED(2),
+        DELETED(3);
+
+        private final byte code;
+
+        ProductEventType(int code) {
+                this.code = (byte) code;
+        }
+
+        public byte getCode() {
+                return code;
+        }
+
+        public static ProductEventType fromCode(byte code) {
+                for (ProductEventType type : values()) {
+                        if (type.code == code) {
+                                return type;
+                        }
+                }
+                throw new IllegalArgumentException("Unknown product event type code: " + code);
+        }
+}
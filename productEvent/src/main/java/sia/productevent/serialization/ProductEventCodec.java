@@ -0,0 +1,254 @@
+package sia.productevent.serialization;
+
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Компактный бинарный формат {@link ProductEvent}.
+ * <p>
+ * Версия 1:
+ * <pre>
+ * byte    версия формата
+ * byte    код {@link ProductEventType}
+ * byte    битовая маска заполненных полей (name, description, price, quantity, createdAt, updatedAt, occurredAt)
+ * varint  id
+ * string  name, description      - varint длина + UTF-8
+ * decimal price                  - varint scale + varint длина + байты unscaled value
+ * varint  quantity
+ * time    createdAt, updatedAt, occurredAt - varlong секунды эпохи + varint наносекунды
+ * </pre>
+ * Все целые числа записываются в zigzag varint, отсутствующие поля не занимают места.
+ * <p>
+ * Версия 2 добавляет к маске бит 7 и после occurredAt:
+ * <pre>
+ * varlong version                - версия продукта для оптимистической блокировки
+ * </pre>
+ * Событие без version пишется в версии 1, поэтому его могут прочитать и потребители, которые знают только ее.
+ * Новые поля добавляются только с новой версией формата, чтение старых версий должно сохраняться.
+ */
+public final class ProductEventCodec {
+
+    public static final byte VERSION = 2;
+
+    private static final byte VERSION_1 = 1;
+
+    private static final int NAME = 1;
+    private static final int DESCRIPTION = 1 << 1;
+    private static final int PRICE = 1 << 2;
+    private static final int QUANTITY = 1 << 3;
+    private static final int CREATED_AT = 1 << 4;
+    private static final int UPDATED_AT = 1 << 5;
+    private static final int OCCURRED_AT = 1 << 6;
+    private static final int PRODUCT_VERSION = 1 << 7;
+
+    private ProductEventCodec() {
+    }
+
+    public static byte[] encode(ProductEvent event) {
+        int flags = (event.getName() != null ? NAME : 0)
+                | (event.getDescription() != null ? DESCRIPTION : 0)
+                | (event.getPrice() != null ? PRICE : 0)
+                | (event.getQuantity() != null ? QUANTITY : 0)
+                | (event.getCreatedAt() != null ? CREATED_AT : 0)
+                | (event.getUpdatedAt() != null ? UPDATED_AT : 0)
+                | (event.getOccurredAt() != null ? OCCURRED_AT : 0)
+                | (event.getVersion() != null ? PRODUCT_VERSION : 0);
+
+        Writer out = new Writer(64 + length(event.getName()) + length(event.getDescription()));
+        out.writeByte((flags & PRODUCT_VERSION) != 0 ? VERSION : VERSION_1);
+        out.writeByte(event.getType().getCode());
+        out.writeByte(flags);
+        out.writeVarLong(event.getId());
+        if ((flags & NAME) != 0) {
+            out.writeString(event.getName());
+        }
+        if ((flags & DESCRIPTION) != 0) {
+            out.writeString(event.getDescription());
+        }
+        if ((flags & PRICE) != 0) {
+            out.writeDecimal(event.getPrice());
+        }
+        if ((flags & QUANTITY) != 0) {
+            out.writeVarLong(event.getQuantity());
+        }
+        if ((flags & CREATED_AT) != 0) {
+            out.writeTime(event.getCreatedAt());
+        }
+        if ((flags & UPDATED_AT) != 0) {
+            out.writeTime(event.getUpdatedAt());
+        }
+        if ((flags & OCCURRED_AT) != 0) {
+            out.writeTime(event.getOccurredAt());
+        }
+        if ((flags & PRODUCT_VERSION) != 0) {
+            out.writeVarLong(event.getVersion());
+        }
+        return out.toByteArray();
+    }
+
+    public static ProductEvent decode(byte[] data) {
+        Reader in = new Reader(data);
+        byte version = in.readByte();
+        if (version != VERSION && version != VERSION_1) {
+            throw new IllegalArgumentException("Unsupported product event format version: " + version);
+        }
+
+        ProductEvent event = new ProductEvent();
+        event.setType(ProductEventType.fromCode(in.readByte()));
+        int flags = in.readByte() & 0xFF;
+        if (version == VERSION_1 && (flags & PRODUCT_VERSION) != 0) {
+            throw new IllegalArgumentException("Product version field in format version 1");
+        }
+        event.setId((int) in.readVarLong());
+        if ((flags & NAME) != 0) {
+            event.setName(in.readString());
+        }
+        if ((flags & DESCRIPTION) != 0) {
+            event.setDescription(in.readString());
+        }
+        if ((flags & PRICE) != 0) {
+            event.setPrice(in.readDecimal());
+        }
+        if ((flags & QUANTITY) != 0) {
+            event.setQuantity((int) in.readVarLong());
+        }
+        if ((flags & CREATED_AT) != 0) {
+            event.setCreatedAt(in.readTime());
+        }
+        if ((flags & UPDATED_AT) != 0) {
+            event.setUpdatedAt(in.readTime());
+        }
+        if ((flags & OCCURRED_AT) != 0) {
+            event.setOccurredAt(in.readTime());
+        }
+        if ((flags & PRODUCT_VERSION) != 0) {
+            event.setVersion(in.readVarLong());
+        }
+        return event;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length() * 3;
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer;
+
+        private int position;
+
+        Writer(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                writeByte((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            writeByte((int) zigzag);
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeDecimal(BigDecimal value) {
+            writeVarLong(value.scale());
+            writeBytes(value.unscaledValue().toByteArray());
+        }
+
+        void writeTime(LocalDateTime value) {
+            writeVarLong(value.toEpochSecond(ZoneOffset.UTC));
+            writeVarLong(value.getNano());
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (position + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additional));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        byte readByte() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated product event at byte " + position);
+            }
+            return data[position++];
+        }
+
+        byte[] readBytes() {
+            int length = (int) readVarLong();
+            if (length < 0 || position + length > data.length) {
+                throw new IllegalArgumentException("Truncated product event at byte " + position);
+            }
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            int shift = 0;
+            byte current;
+            do {
+                if (shift > 63) {
+                    throw new IllegalArgumentException("Malformed varint at byte " + position);
+                }
+                current = readByte();
+                zigzag |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        String readString() {
+            return new String(readBytes(), StandardCharsets.UTF_8);
+        }
+
+        BigDecimal readDecimal() {
+            int scale = (int) readVarLong();
+            return new BigDecimal(new BigInteger(readBytes()), scale);
+        }
+
+        LocalDateTime readTime() {
+            long epochSecond = readVarLong();
+            int nano = (int) readVarLong();
+            return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+        }
+    }
+}
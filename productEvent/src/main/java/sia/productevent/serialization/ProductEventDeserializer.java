@@ -0,0 +1,23 @@
+package sia.productevent.serialization;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import sia.productevent.event.ProductEvent;
+
+/**
+ * Десериализатор Kafka для {@link ProductEvent} из бинарного формата {@link ProductEventCodec}.
+ */
+public class ProductEventDeserializer implements Deserializer<ProductEvent> {
+
+    @Override
+    public ProductEvent deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return ProductEventCodec.decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Unable to deserialize product event from topic " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package sia.productevent.serialization;
+
+import org.apache.kafka.common.serialization.Serializer;
+import sia.productevent.event.ProductEvent;
+
+/**
+ * Сериализатор Kafka для {@link ProductEvent} в бинарный формат {@link ProductEventCodec}.
+ */
+public class ProductEventSerializer implements Serializer<ProductEvent> {
+
+    @Override
+    public byte[] serialize(String topic, ProductEvent event) {
+        return event == null ? null : ProductEventCodec.encode(event);
+    }
+}
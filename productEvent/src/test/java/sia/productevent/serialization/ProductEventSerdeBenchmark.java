@@ -0,0 +1,94 @@
+package sia.productevent.serialization;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение бинарного формата {@link ProductEventCodec} с прежним JSON-форматом
+ * (JsonSerializer/JsonDeserializer из spring-kafka): ns/op на сериализацию и десериализацию.
+ * Размер события в байтах для обоих форматов печатается при запуске.
+ * <p>
+ * Запуск после mvn test-compile:
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)"
+ * org.openjdk.jmh.Main ProductEventSerdeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductEventSerdeBenchmark {
+
+    private static final String TOPIC = "product-events";
+
+    private final ProductEventSerializer binarySerializer = new ProductEventSerializer();
+
+    private final ProductEventDeserializer binaryDeserializer = new ProductEventDeserializer();
+
+    private JsonSerializer<ProductEvent> jsonSerializer;
+
+    private JsonDeserializer<ProductEvent> jsonDeserializer;
+
+    private ProductEvent event;
+
+    private byte[] binary;
+
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jsonSerializer = new JsonSerializer<>();
+        jsonDeserializer = new JsonDeserializer<>(ProductEvent.class, false);
+        event = new ProductEvent(ProductEventType.UPDATED, 104_729, "Беспроводные наушники",
+                "Активное шумоподавление, до 30 часов работы, зарядный кейс с USB-C",
+                new BigDecimal("12990.00"), 250, LocalDateTime.now().minusDays(30), LocalDateTime.now());
+        binary = binarySerializer.serialize(TOPIC, event);
+        json = jsonSerializer.serialize(TOPIC, event);
+        System.out.printf("%nbytes per event: binary=%d, json=%d%n", binary.length, json.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jsonSerializer.close();
+        jsonDeserializer.close();
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return binarySerializer.serialize(TOPIC, event);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() {
+        return jsonSerializer.serialize(TOPIC, event);
+    }
+
+    @Benchmark
+    public ProductEvent deserializeBinary() {
+        return binaryDeserializer.deserialize(TOPIC, binary);
+    }
+
+    @Benchmark
+    public ProductEvent deserializeJson() {
+        return jsonDeserializer.deserialize(TOPIC, json);
+    }
+}
@@ -0,0 +1,91 @@
+package sia.productevent.serialization;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductEventSerializerTest {
+
+    private final ProductEventSerializer serializer = new ProductEventSerializer();
+
+    private final ProductEventDeserializer deserializer = new ProductEventDeserializer();
+
+    @Test
+    void roundTripsAllFields() {
+        ProductEvent event = new ProductEvent(ProductEventType.UPDATED, 123456, "Ноутбук", "описание товара",
+                new BigDecimal("-1999.990"), 42,
+                LocalDateTime.of(2024, 1, 2, 3, 4, 5, 6_000_000), LocalDateTime.of(2025, 6, 7, 8, 9, 10, 123_456_789));
+
+        ProductEvent decoded = deserializer.deserialize("product-events", serializer.serialize("product-events", event));
+
+        assertEquals(event, decoded);
+        assertEquals(new BigDecimal("-1999.990").scale(), decoded.getPrice().scale());
+    }
+
+    @Test
+    void keepsAbsentFieldsAbsent() {
+        ProductEvent event = new ProductEvent();
+        event.setType(ProductEventType.DELETED);
+        event.setId(-7);
+
+        ProductEvent decoded = deserializer.deserialize("product-events", serializer.serialize("product-events", event));
+
+        assertEquals(ProductEventType.DELETED, decoded.getType());
+        assertEquals(-7, decoded.getId());
+        assertNull(decoded.getName());
+        assertNull(decoded.getPrice());
+        assertNull(decoded.getQuantity());
+        assertNull(decoded.getOccurredAt());
+    }
+
+    @Test
+    void roundTripsProductVersionAndKeepsFormatVersion1WithoutIt() {
+        ProductEvent event = new ProductEvent(ProductEventType.UPDATED, 5, "name", null, BigDecimal.TEN, 3,
+                LocalDateTime.now(), LocalDateTime.now());
+
+        byte[] withoutVersion = serializer.serialize("product-events", event);
+        assertEquals(1, withoutVersion[0]);
+        assertNull(deserializer.deserialize("product-events", withoutVersion).getVersion());
+
+        event.setVersion(300L);
+        byte[] withVersion = serializer.serialize("product-events", event);
+        assertEquals(ProductEventCodec.VERSION, withVersion[0]);
+        assertEquals(event, deserializer.deserialize("product-events", withVersion));
+    }
+
+    @Test
+    void rejectsUnknownVersionAndTruncatedData() {
+        byte[] data = serializer.serialize("product-events", new ProductEvent(ProductEventType.CREATED, 1, "name",
+                null, BigDecimal.ONE, 1, LocalDateTime.now(), LocalDateTime.now()));
+
+        byte[] unknownVersion = data.clone();
+        unknownVersion[0] = 99;
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("product-events", unknownVersion));
+
+        byte[] truncated = java.util.Arrays.copyOf(data, data.length - 3);
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("product-events", truncated));
+    }
+
+    @Test
+    void isSmallerThanJson() {
+        ProductEvent event = new ProductEvent(ProductEventType.CREATED, 1001, "Смартфон", "Экран 6.1, 128 ГБ",
+                new BigDecimal("79990.00"), 15, LocalDateTime.now(), LocalDateTime.now());
+
+        try (JsonSerializer<ProductEvent> json = new JsonSerializer<>()) {
+            int jsonSize = json.serialize("product-events", event).length;
+            int binarySize = serializer.serialize("product-events", event).length;
+
+            assertTrue(binarySize * 2 < jsonSize, "binary " + binarySize + " bytes vs json " + jsonSize + " bytes");
+        }
+    }
+}
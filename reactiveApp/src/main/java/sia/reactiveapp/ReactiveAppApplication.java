@@ -0,0 +1,15 @@
+package sia.reactiveapp;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@SpringBootApplication
+@EnableScheduling
+public class ReactiveAppApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveAppApplication.class, args);
+    }
+
+}
@@ -0,0 +1,219 @@
+package sia.reactiveapp.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import sia.reactiveapp.repository.Product;
+import sia.reactiveapp.service.ReactiveProductImportService.ImportResult;
+import sia.reactiveapp.service.impl.ReactiveProductImportServiceImpl;
+import sia.reactiveapp.service.impl.ReactiveProductServiceImpl;
+
+import java.util.List;
+
+/**
+ * Неблокирующий контроллер продуктов.
+ * Пути, параметры и тела ответов совпадают с MainController основного приложения,
+ * поэтому клиенты могут переключаться между стеками без изменений.
+ */
+@RestController
+@RequestMapping("/api/products")
+public class ReactiveProductController {
+
+    private final ReactiveProductServiceImpl productService;
+
+    private final ReactiveProductImportServiceImpl productImportService;
+
+    @Value("${products.batch.max-size:10000}")
+    private int batchMaxSize;
+
+    @Value("${products.page.max-size:1000}")
+    private int pageMaxSize;
+
+    /**
+     * Конструктор для инициализации контроллера с сервисом продуктов.
+     *
+     * @param productService Сервис для работы с продуктами.
+     * @param productImportService Сервис потокового импорта продуктов.
+     */
+    public ReactiveProductController(ReactiveProductServiceImpl productService,
+                                     ReactiveProductImportServiceImpl productImportService) {
+        this.productService = productService;
+        this.productImportService = productImportService;
+    }
+
+    /**
+     * Создает новый продукт.
+     *
+     * @param product Объект продукта, который нужно создать в бд.
+     * @return Ответ с сообщением о создании продукта.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<String>> createNewProduct(@RequestBody Product product) {
+        return productService.create(product)
+                .map(createdProduct -> ResponseEntity.ok("Product created with id " + createdProduct.getId()));
+    }
+
+    /**
+     * Получает продукт по его идентификатору.
+     *
+     * @param id Идентификатор продукта.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Product>> getProduct(@PathVariable Integer id) {
+        return productService.findById(id).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Получает продукты по списку идентификаторов одним запросом.
+     *
+     * @param ids Идентификаторы продуктов через запятую.
+     * @return Ответ с найденными продуктами в порядке запроса; ненайденные пропускаются.
+     */
+    @GetMapping(params = "ids")
+    public Mono<ResponseEntity<List<Product>>> getProductsByIds(@RequestParam List<Integer> ids) {
+        checkBatchSize(ids.size());
+        return productService.findAllById(ids).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Получает продукты по списку идентификаторов из тела запроса.
+     *
+     * @param ids Идентификаторы продуктов.
+     * @return Ответ с найденными продуктами в порядке запроса; ненайденные пропускаются.
+     */
+    @PostMapping("/lookup")
+    public Mono<ResponseEntity<List<Product>>> lookupProducts(@RequestBody List<Integer> ids) {
+        checkBatchSize(ids.size());
+        return productService.findAllById(ids).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Получает список продуктов с поддержкой пагинации.
+     * Если передан курсор after, страница выбирается по условию id > after без смещения.
+     *
+     * @param page Номер страницы (по умолчанию 0), не используется вместе с after.
+     * @param size Размер страницы (по умолчанию 10, не больше products.page.max-size).
+     * @param after Идентификатор последнего продукта предыдущей страницы.
+     * @return Ответ со списком продуктов.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<List<Product>>> getProducts(
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) Integer after) {
+        checkPage(page, size);
+        Flux<Product> products = after != null
+                ? productService.findAfter(after, size)
+                : productService.findAll(PageRequest.of(page, size));
+        return products.collectList().map(ResponseEntity::ok);
+    }
+
+    /**
+     * Выгружает все продукты в формате NDJSON (один продукт на строку).
+     * Продукты пишутся в ответ по мере чтения из бд с учетом скорости клиента.
+     *
+     * @return Поток всех продуктов.
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public Flux<Product> exportProducts() {
+        return productService.findAllOrdered();
+    }
+
+    /**
+     * Обновляет существующий продукт.
+     *
+     * @param id Идентификатор продукта, который нужно обновить.
+     * @param product Объект продукта с новыми данными.
+     * @return Ответ с сообщением об успешном обновлении продукта.
+     */
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<String>> updateProduct(@PathVariable Integer id, @RequestBody Product product) {
+        return productService.update(id, product)
+                .thenReturn(ResponseEntity.ok("Product updated with id " + id));
+    }
+
+    /**
+     * Удаляет продукт по его идентификатору.
+     *
+     * @param id Идентификатор продукта, который нужно удалить.
+     * @return Ответ с сообщением об успешном удалении продукта.
+     */
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<String>> deleteProduct(@PathVariable Integer id) {
+        return productService.deleteById(id)
+                .thenReturn(ResponseEntity.ok("Product deleted with id: " + id));
+    }
+
+    /**
+     * Создает продукты пакетом в одной транзакции.
+     *
+     * @param products Продукты, которые нужно создать в бд.
+     * @return Ответ с идентификаторами созданных продуктов в порядке запроса.
+     */
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<List<Integer>>> createProducts(@RequestBody List<Product> products) {
+        checkBatchSize(products.size());
+        return productService.createAll(products)
+                .map(saved -> ResponseEntity.ok(saved.stream().map(Product::getId).toList()));
+    }
+
+    /**
+     * Обновляет продукты пакетом в одной транзакции.
+     *
+     * @param products Продукты с новыми данными, у каждого должен быть указан идентификатор.
+     * @return Ответ с сообщением об успешном обновлении продуктов.
+     */
+    @PutMapping("/batch")
+    public Mono<ResponseEntity<String>> updateProducts(@RequestBody List<Product> products) {
+        checkBatchSize(products.size());
+        return productService.updateAll(products)
+                .thenReturn(ResponseEntity.ok("Products updated: " + products.size()));
+    }
+
+    /**
+     * Удаляет продукты пакетом в одной транзакции.
+     *
+     * @param ids Идентификаторы продуктов, которые нужно удалить.
+     * @return Ответ с сообщением об успешном удалении продуктов.
+     */
+    @DeleteMapping("/batch")
+    public Mono<ResponseEntity<String>> deleteProducts(@RequestBody List<Integer> ids) {
+        checkBatchSize(ids.size());
+        return productService.deleteAllById(ids)
+                .thenReturn(ResponseEntity.ok("Products deleted: " + ids.size()));
+    }
+
+    /**
+     * Импортирует продукты из тела запроса в формате NDJSON (один продукт на строку).
+     * Тело разбирается по мере поступления и сохраняется блоками; некорректная запись дает 400.
+     *
+     * @param products Поток продуктов из тела запроса.
+     * @return Ответ с количеством импортированных продуктов и прогрессом по блокам.
+     */
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public Mono<ResponseEntity<ImportResult>> importProducts(@RequestBody Flux<Product> products) {
+        return productImportService.importProducts(products).map(ResponseEntity::ok);
+    }
+
+    private void checkPage(int page, int size) {
+        if (page < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page must not be negative");
+        }
+        if (size <= 0 || size > pageMaxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Page size must be between 1 and " + pageMaxSize);
+        }
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > batchMaxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch size " + size + " exceeds limit " + batchMaxSize);
+        }
+    }
+}
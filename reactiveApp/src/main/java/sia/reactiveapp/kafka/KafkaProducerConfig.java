@@ -0,0 +1,90 @@
+package sia.reactiveapp.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import sia.productevent.event.ProductEvent;
+import org.apache.kafka.common.serialization.StringSerializer;
+import sia.productevent.serialization.ProductEventSerializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Конфигурация для настройки Kafka Producer.
+ * Этот класс настраивает ProducerFactory и KafkaTemplate для отправки сообщений в Kafka.
+ * Параметры пропускной способности (linger, размер пакета, сжатие, буфер, число запросов в полете)
+ * задаются свойствами kafka.producer.*; идемпотентность сохраняет порядок сообщений
+ * одной партиции при повторных отправках.
+ */
+@Configuration
+public class KafkaProducerConfig {
+
+    @Value(value = "${spring.kafka.bootstrap-servers}")
+    private String bootstrapAddress;
+
+    @Value("${kafka.producer.acks:all}")
+    private String acks;
+
+    @Value("${kafka.producer.enable-idempotence:true}")
+    private boolean enableIdempotence;
+
+    @Value("${kafka.producer.linger-ms:10}")
+    private int lingerMs;
+
+    @Value("${kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
+    @Value("${kafka.producer.buffer-memory:67108864}")
+    private long bufferMemory;
+
+    @Value("${kafka.producer.max-in-flight-requests:5}")
+    private int maxInFlightRequests;
+
+    /**
+     * Создает и настраивает ProducerFactory для отправки сообщений в Kafka.
+     *
+     * @return Настроенный ProducerFactory для работы с ProductEvent.
+     */
+    @Bean
+    public ProducerFactory<String, ProductEvent> producerFactory() {
+        return new DefaultKafkaProducerFactory<>(producerConfigs());
+    }
+
+    /**
+     * Создает и настраивает KafkaTemplate для отправки сообщений в Kafka.
+     *
+     * @return Настроенный KafkaTemplate для работы с ProductEvent.
+     */
+    @Bean
+    public KafkaTemplate<String, ProductEvent> kafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory());
+    }
+
+    /**
+     * Конфигурация параметров для ProducerFactory.
+     *
+     * @return Карта с параметрами конфигурации для Kafka Producer.
+     */
+    private Map<String, Object> producerConfigs() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
+        configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ProductEventSerializer.class);
+        configs.put(ProducerConfig.ACKS_CONFIG, acks);
+        configs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        configs.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configs.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        configs.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+        configs.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlightRequests);
+        return configs;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,217 @@
+package sia.reactiveapp.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.InvalidRecordException;
+import org.apache.kafka.common.errors.InvalidTopicException;
+import org.apache.kafka.common.errors.RecordBatchTooLargeException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import sia.productevent.event.ProductEvent;
+import sia.reactiveapp.repository.OutboxEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Неблокирующий ретранслятор событий из таблицы outbox в Kafka.
+ * Работает так же, как OutboxRelay основного приложения: захватывает общую с ним advisory-блокировку,
+ * поэтому порцию отправляет один ретранслятор за раз, блокирует порцию событий в порядке записи (ordinal),
+ * отправляет ее целиком, дожидается подтверждения брокера и только после этого удаляет отправленные события.
+ * Отклоненные брокером события повторяются до outbox.relay.max-attempts раз и переносятся
+ * в outbox_event_dead_letter, не задерживая остальные.
+ * Ожидание подтверждения не занимает поток: CompletableFuture отправки превращается в Mono.
+ */
+@Component
+public class ReactiveOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveOutboxRelay.class);
+
+    /**
+     * Ключ advisory-блокировки ретранслятора, тот же, что у OutboxEventRepository основного приложения.
+     */
+    private static final long RELAY_LOCK_KEY = 0x6f7574626f78L;
+
+    private final DatabaseClient databaseClient;
+
+    private final KafkaTemplate<String, ProductEvent> kafkaTemplate;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${outbox.relay.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${outbox.relay.max-attempts:10}")
+    private int maxAttempts;
+
+    /**
+     * Конструктор ретранслятора.
+     *
+     * @param databaseClient Клиент бд для чтения и удаления событий.
+     * @param kafkaTemplate Шаблон для отправки сообщений в Kafka.
+     * @param transactionManager Менеджер транзакций, в которых порция блокируется и удаляется.
+     * @param objectMapper ObjectMapper для чтения сохраненных событий.
+     */
+    public ReactiveOutboxRelay(DatabaseClient databaseClient, KafkaTemplate<String, ProductEvent> kafkaTemplate,
+                               ReactiveTransactionManager transactionManager, ObjectMapper objectMapper) {
+        this.databaseClient = databaseClient;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Отправляет накопленные события порциями, пока outbox не опустеет
+     * или пока очередная порция не завершится ошибкой или отказом брокера принять событие.
+     * Следующий запуск планируется после завершения возвращаемого Mono.
+     *
+     * @return Сигнал завершения обхода outbox.
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.poll-interval-ms:500}")
+    public Mono<Void> relay() {
+        return relayBatch()
+                .expand(sent -> sent == batchSize ? relayBatch() : Mono.empty())
+                .then()
+                .onErrorResume(e -> {
+                    log.error("Outbox relay failed, events will be retried", e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Integer> relayBatch() {
+        return tryLockRelay()
+                .flatMap(locked -> locked ? lockNextBatch() : Mono.just(List.<OutboxEvent>of()))
+                .flatMap(batch -> batch.isEmpty() ? Mono.just(0) : relay(batch))
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<Boolean> tryLockRelay() {
+        return databaseClient.sql("select pg_try_advisory_xact_lock(" + RELAY_LOCK_KEY + ") as locked")
+                .map(row -> row.get("locked", Boolean.class))
+                .one();
+    }
+
+    private Mono<List<OutboxEvent>> lockNextBatch() {
+        return databaseClient.sql("select id, topic, product_id, payload, created_at, attempts from outbox_event "
+                        + "order by ordinal limit :limit for update")
+                .bind("limit", batchSize)
+                .map(row -> new OutboxEvent(row.get("id", Long.class), row.get("topic", String.class),
+                        row.get("product_id", Integer.class), row.get("payload", String.class), null,
+                        row.get("attempts", Integer.class)))
+                .all()
+                .collectList();
+    }
+
+    /**
+     * Отправляет порцию, удаляет подтвержденные события и учитывает отклоненные.
+     *
+     * @return Число отправленных событий.
+     */
+    private Mono<Integer> relay(List<OutboxEvent> batch) {
+        return Mono.defer(() -> {
+            // Отправки ставятся в очередь продюсера сразу и по порядку, ключ по продукту сохраняет порядок в партиции
+            List<CompletableFuture<?>> sends = batch.stream().<CompletableFuture<?>>map(this::send).toList();
+            return Mono.fromFuture(CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)))
+                    .onErrorResume(e -> Mono.empty())
+                    .timeout(Duration.ofMillis(sendTimeoutMs))
+                    .then(Mono.defer(() -> settle(batch, sends)));
+        });
+    }
+
+    private Mono<Integer> settle(List<OutboxEvent> batch, List<CompletableFuture<?>> sends) {
+        List<OutboxEvent> sent = new ArrayList<>(batch.size());
+        Map<OutboxEvent, Throwable> rejected = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            CompletableFuture<?> send = sends.get(i);
+            if (!send.isCompletedExceptionally()) {
+                sent.add(batch.get(i));
+            } else if (isRejected(send.exceptionNow())) {
+                rejected.put(batch.get(i), send.exceptionNow());
+            } else {
+                return Mono.error(new IllegalStateException("Outbox batch of " + batch.size()
+                        + " events was not acknowledged", send.exceptionNow()));
+            }
+        }
+        return deleteAll(sent)
+                .thenMany(Flux.fromIterable(rejected.entrySet()))
+                .concatMap(entry -> reject(entry.getKey(), entry.getValue()))
+                .then(Mono.just(sent.size()));
+    }
+
+    private CompletableFuture<?> send(OutboxEvent event) {
+        try {
+            ProductEvent payload = objectMapper.readValue(event.getPayload(), ProductEvent.class);
+            return kafkaTemplate.send(event.getTopic(), String.valueOf(event.getProductId()), payload);
+        } catch (JsonProcessingException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Mono<Void> deleteAll(List<OutboxEvent> sent) {
+        if (sent.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql("delete from outbox_event where id in (:ids)")
+                .bind("ids", sent.stream().map(OutboxEvent::getId).toList())
+                .then();
+    }
+
+    /**
+     * Отклонено ли событие само по себе, как в OutboxRelay основного приложения:
+     * повторная отправка того же события закончится так же.
+     */
+    private static boolean isRejected(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonProcessingException
+                    || cause instanceof SerializationException
+                    || cause instanceof RecordTooLargeException
+                    || cause instanceof RecordBatchTooLargeException
+                    || cause instanceof InvalidRecordException
+                    || cause instanceof InvalidTopicException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Учитывает отклоненную попытку; после maxAttempts попыток переносит событие в outbox_event_dead_letter.
+     */
+    private Mono<Void> reject(OutboxEvent event, Throwable failure) {
+        int attempt = event.getAttempts() + 1;
+        if (attempt >= maxAttempts) {
+            log.error("Outbox event {} rejected {} times, moved to outbox_event_dead_letter", event, attempt, failure);
+            return databaseClient.sql("""
+                            with moved as (delete from outbox_event where id = :id returning *)
+                            insert into outbox_event_dead_letter (id, topic, product_id, payload, created_at, attempts, error)
+                            select id, topic, product_id, payload, created_at, attempts + 1, :error from moved""")
+                    .bind("id", event.getId())
+                    .bind("error", failure.toString())
+                    .then();
+        }
+        log.warn("Outbox event {} rejected, attempt {} of {}", event, attempt, maxAttempts, failure);
+        return databaseClient.sql("update outbox_event set attempts = attempts + 1 where id = :id")
+                .bind("id", event.getId())
+                .then();
+    }
+}
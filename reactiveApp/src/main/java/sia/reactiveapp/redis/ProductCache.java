@@ -0,0 +1,237 @@
+package sia.reactiveapp.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import sia.reactiveapp.repository.Product;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш продуктов в Redis поверх {@link ReactiveRedisTemplate}.
+ * <p>
+ * Записи хранятся в собственном пространстве ключей (cache.key-prefix) с TTL:
+ * формат значения основного приложения привязан к классу его JPA-сущности.
+ * Инвалидация работает в обе стороны:
+ * <ul>
+ *     <li>каждое изменение продукта здесь удаляет его запись в productCache основного приложения
+ *     (в том числе закэшированное отсутствие продукта) и его остаток inventory::{id}, публикует сообщение
+ *     в канал инвалидации, по которому основное приложение сбрасывает локальный кэш, и идентификаторы
+ *     в формате "instanceId|id,id,..." в канал products.change-channel, по которому оно обновляет поисковый индекс;</li>
+ *     <li>кэш подписан на канал инвалидации и удаляет свою запись продукта, когда его меняет
+ *     основное приложение. Сообщения реактивных инстансов пропускаются: они уже записали свежую версию.</li>
+ * </ul>
+ */
+@Component
+public class ProductCache implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCache.class);
+
+    private static final String SHARED_CACHE = "productCache";
+
+    private static final String INSTANCE_PREFIX = "reactive-";
+
+    private static final String INVENTORY_PREFIX = "inventory::";
+
+    /**
+     * Тот же сброс, что InventoryCounters.reset основного приложения: номера изменения продуктов (ARGV)
+     * увеличиваются, чтобы заполнение остатка, прочитавшее бд до изменения, не вернуло старый остаток.
+     * Здесь же удаляются записи productCache.
+     */
+    private static final RedisScript<Long> RESET_SCRIPT = new DefaultRedisScript<>("""
+            for i = 1, #ARGV do redis.call('hincrby', KEYS[1], ARGV[i], 1) end
+            for i = 2, #KEYS do redis.call('del', KEYS[i]) end
+            return 1
+            """, Long.class);
+
+    private final ReactiveRedisTemplate<String, Product> redisTemplate;
+
+    private final ReactiveStringRedisTemplate stringRedisTemplate;
+
+    private final ReactiveRedisMessageListenerContainer listenerContainer;
+
+    private final String instanceId = INSTANCE_PREFIX + UUID.randomUUID();
+
+    @Value("${cache.key-prefix:reactive::productCache::}")
+    private String keyPrefix;
+
+    @Value("${cache.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${cache.invalidation-channel:cache-invalidation}")
+    private String invalidationChannel;
+
+    /**
+     * Префикс ключей productCache основного приложения: его cache.redis.key-prefix и имя кэша.
+     */
+    @Value("${cache.shared-key-prefix:productCache::}")
+    private String sharedKeyPrefix;
+
+    @Value("${products.change-channel:product-changes}")
+    private String changeChannel;
+
+    /**
+     * @param redisTemplate Шаблон для значений кэша.
+     * @param stringRedisTemplate Шаблон для общих ключей и каналов.
+     * @param listenerContainer Контейнер подписок для канала инвалидации.
+     */
+    public ProductCache(@Qualifier("productRedisTemplate") ReactiveRedisTemplate<String, Product> redisTemplate,
+                        ReactiveStringRedisTemplate stringRedisTemplate,
+                        ReactiveRedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    /**
+     * Подписывается на канал инвалидации. Подписка закрывается вместе с контейнером при остановке.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        listenerContainer.receive(ChannelTopic.of(invalidationChannel))
+                .concatMap(message -> onInvalidation(message.getMessage())
+                        .onErrorResume(e -> {
+                            log.warn("Unable to apply cache invalidation {}", message.getMessage(), e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    /**
+     * @param id Идентификатор продукта.
+     * @return Продукт из кэша, или пусто при промахе.
+     */
+    public Mono<Product> get(int id) {
+        return redisTemplate.opsForValue().get(keyPrefix + id);
+    }
+
+    /**
+     * Читает несколько продуктов одной командой MGET.
+     *
+     * @param ids Идентификаторы продуктов.
+     * @return Найденные в кэше продукты по идентификаторам; промахов в результате нет.
+     */
+    public Mono<Map<Integer, Product>> getAll(List<Integer> ids) {
+        return redisTemplate.opsForValue().multiGet(ids.stream().map(id -> keyPrefix + id).toList())
+                .map(values -> {
+                    Map<Integer, Product> found = new HashMap<>();
+                    for (int i = 0; i < ids.size(); i++) {
+                        if (values.get(i) != null) {
+                            found.put(ids.get(i), values.get(i));
+                        }
+                    }
+                    return found;
+                });
+    }
+
+    /**
+     * Кладет продукты, загруженные при промахах, через SET NX, как {@link #putIfAbsent}.
+     * Команды уходят в одно соединение без ожидания ответов по одной.
+     *
+     * @param products Продукты, прочитанные из бд.
+     * @return Сигнал завершения.
+     */
+    public Mono<Void> putAllIfAbsent(Collection<Product> products) {
+        return Flux.fromIterable(products)
+                .flatMap(product -> redisTemplate.opsForValue().setIfAbsent(keyPrefix + product.getId(), product, ttl))
+                .then();
+    }
+
+    /**
+     * Кладет продукт, загруженный при промахе, только если ключа еще нет (SET NX).
+     * Значение, записанное параллельным изменением, не перетирается устаревшей версией из бд.
+     *
+     * @param product Продукт, прочитанный из бд.
+     * @return Сигнал завершения.
+     */
+    public Mono<Void> putIfAbsent(Product product) {
+        return redisTemplate.opsForValue().setIfAbsent(keyPrefix + product.getId(), product, ttl).then();
+    }
+
+    /**
+     * Записывает сохраненные версии продуктов после фиксации транзакции.
+     *
+     * @param products Сохраненные продукты.
+     * @return Сигнал завершения.
+     */
+    public Mono<Void> putAll(Collection<Product> products) {
+        return Flux.fromIterable(products)
+                .flatMap(product -> redisTemplate.opsForValue().set(keyPrefix + product.getId(), product, ttl))
+                .then(evictShared(products.stream().map(Product::getId).toList()));
+    }
+
+    /**
+     * Удаляет продукты из кэша после фиксации транзакции.
+     *
+     * @param ids Идентификаторы удаленных продуктов.
+     * @return Сигнал завершения.
+     */
+    public Mono<Void> evictAll(Collection<Integer> ids) {
+        return redisTemplate.delete(Flux.fromIterable(ids).map(id -> keyPrefix + id))
+                .then(evictShared(ids));
+    }
+
+    /**
+     * Сбрасывает состояние основного приложения по продуктам после фиксации транзакции:
+     * записи productCache и остатки одним скриптом, затем сообщения об инвалидации и об изменении продуктов.
+     * Вызывается из {@link #putAll} и {@link #evictAll}, а для созданных продуктов, которые не кладутся в кэш, напрямую.
+     *
+     * @param ids Идентификаторы измененных продуктов.
+     * @return Сигнал завершения.
+     */
+    public Mono<Void> evictShared(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        List<String> keys = new ArrayList<>(ids.size() * 2 + 1);
+        keys.add(INVENTORY_PREFIX + "generations");
+        ids.forEach(id -> keys.add(sharedKeyPrefix + id));
+        ids.forEach(id -> keys.add(INVENTORY_PREFIX + id));
+        return stringRedisTemplate.execute(RESET_SCRIPT, keys, ids.stream().map(String::valueOf).toList())
+                .thenMany(Flux.fromIterable(ids).concatMap(id -> stringRedisTemplate.convertAndSend(
+                        invalidationChannel, instanceId + '|' + SHARED_CACHE + '|' + id)))
+                .then(stringRedisTemplate.convertAndSend(changeChannel,
+                        instanceId + '|' + ids.stream().map(String::valueOf).collect(Collectors.joining(","))))
+                .then();
+    }
+
+    /**
+     * Обрабатывает сообщение об инвалидации в формате "instanceId|cacheName|key",
+     * как TwoTierCacheManager основного приложения. Пустой ключ означает очистку всего кэша.
+     */
+    Mono<Void> onInvalidation(String message) {
+        String[] parts = message.split("\\|", 3);
+        if (parts.length != 3) {
+            log.warn("Malformed cache invalidation message: {}", message);
+            return Mono.empty();
+        }
+        if (parts[0].startsWith(INSTANCE_PREFIX) || !SHARED_CACHE.equals(parts[1])) {
+            return Mono.empty();
+        }
+        if (parts[2].isEmpty()) {
+            return redisTemplate.delete(redisTemplate.scan(ScanOptions.scanOptions().match(keyPrefix + "*").build()))
+                    .then();
+        }
+        return redisTemplate.delete(keyPrefix + parts[2]).then();
+    }
+}
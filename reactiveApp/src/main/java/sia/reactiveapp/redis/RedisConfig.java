@@ -0,0 +1,48 @@
+package sia.reactiveapp.redis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import sia.reactiveapp.repository.Product;
+
+/**
+ * Конфигурация реактивного клиента Redis для кэша продуктов.
+ */
+@Configuration
+public class RedisConfig {
+
+    /**
+     * Создает ReactiveRedisTemplate со строковыми ключами и продуктами в JSON.
+     *
+     * @param connectionFactory Фабрика реактивных соединений Redis.
+     * @param objectMapper ObjectMapper приложения.
+     * @return Настроенный ReactiveRedisTemplate для работы с Product.
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, Product> productRedisTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                                                       ObjectMapper objectMapper) {
+        RedisSerializationContext<String, Product> context = RedisSerializationContext
+                .<String, Product>newSerializationContext(new StringRedisSerializer())
+                .value(new Jackson2JsonRedisSerializer<>(objectMapper, Product.class))
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, context);
+    }
+
+    /**
+     * Создает контейнер подписок Redis, через который кэш продуктов слушает канал инвалидации.
+     *
+     * @param connectionFactory Фабрика реактивных соединений Redis.
+     * @return Контейнер подписок, закрывается при остановке контекста.
+     */
+    @Bean(destroyMethod = "destroy")
+    public ReactiveRedisMessageListenerContainer cacheInvalidationListenerContainer(
+            ReactiveRedisConnectionFactory connectionFactory) {
+        return new ReactiveRedisMessageListenerContainer(connectionFactory);
+    }
+}
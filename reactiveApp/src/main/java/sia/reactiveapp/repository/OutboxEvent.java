@@ -0,0 +1,82 @@
+package sia.reactiveapp.repository;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Класс OutboxEvent представляет событие, ожидающее отправки в Kafka, в таблице outbox_event,
+ * общей с основным приложением. Записывается в той же транзакции, что и изменение продукта.
+ */
+@Table("outbox_event")
+public class OutboxEvent {
+
+    @Id
+    private Long id;
+
+    private String topic;
+
+    private int productId;
+
+    private String payload;
+
+    private LocalDateTime createdAt;
+
+    /**
+     * Сколько раз брокер отклонил событие; при вставке не пишется, бд ставит 0.
+     */
+    @ReadOnlyProperty
+    private int attempts;
+
+    public OutboxEvent(Long id, String topic, int productId, String payload, LocalDateTime createdAt) {
+        this.id = id;
+        this.topic = topic;
+        this.productId = productId;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+
+    public OutboxEvent(Long id, String topic, int productId, String payload, LocalDateTime createdAt, int attempts) {
+        this(id, topic, productId, payload, createdAt);
+        this.attempts = attempts;
+    }
+
+    public OutboxEvent() {}
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEvent{" +
+                "id=" + id +
+                ", topic='" + topic + '\'' +
+                ", productId=" + productId +
+                ", createdAt=" + createdAt +
+                ", attempts=" + attempts +
+                '}';
+    }
+}
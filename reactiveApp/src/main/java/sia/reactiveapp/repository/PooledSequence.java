@@ -0,0 +1,71 @@
+package sia.reactiveapp.repository;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Выдает идентификаторы из последовательности бд блоками, как pooled-оптимизатор Hibernate
+ * в основном приложении: значение N последовательности (шаг allocationSize) закрепляет
+ * за вызывающим диапазон (N - allocationSize, N]. Поэтому идентификаторы, выданные здесь
+ * и в JPA-сущностях основного приложения, не пересекаются, а запрос к бд нужен раз на блок.
+ * <p>
+ * Без блокировок: если несколько подписчиков одновременно исчерпали блок, каждый получает свой блок,
+ * и лишние идентификаторы остаются в очереди для следующих вызовов.
+ */
+public class PooledSequence {
+
+    private final DatabaseClient databaseClient;
+
+    private final String sequenceName;
+
+    private final int allocationSize;
+
+    private final Queue<Long> available = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param databaseClient Клиент бд.
+     * @param sequenceName Имя последовательности.
+     * @param allocationSize Шаг последовательности, должен совпадать с allocationSize в JPA-сущности.
+     */
+    public PooledSequence(DatabaseClient databaseClient, String sequenceName, int allocationSize) {
+        this.databaseClient = databaseClient;
+        this.sequenceName = sequenceName;
+        this.allocationSize = allocationSize;
+    }
+
+    /**
+     * @return Следующий свободный идентификатор.
+     */
+    public Mono<Long> next() {
+        return Mono.defer(() -> {
+            Long id = available.poll();
+            return id != null ? Mono.just(id) : allocate();
+        });
+    }
+
+    /**
+     * @param count Количество идентификаторов.
+     * @return Указанное количество свободных идентификаторов.
+     */
+    public Flux<Long> next(int count) {
+        return Flux.range(0, count).concatMap(i -> next());
+    }
+
+    private Mono<Long> allocate() {
+        return databaseClient.sql("select nextval('" + sequenceName + "')")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .map(hi -> {
+                    // Первое значение новой последовательности меньше шага: блок начинается с 1, как и в Hibernate
+                    long from = Math.max(1, hi - allocationSize + 1);
+                    for (long id = from + 1; id <= hi; id++) {
+                        available.add(id);
+                    }
+                    return from;
+                });
+    }
+}
@@ -0,0 +1,27 @@
+package sia.reactiveapp.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface ProductRepository extends R2dbcRepository<Product, Integer> {
+
+    /**
+     * Страница продуктов со смещением без запроса count(*).
+     */
+    Flux<Product> findAllBy(Pageable pageable);
+
+    /**
+     * Страница продуктов по курсору: where id > ? order by id limit ?.
+     */
+    Flux<Product> findByIdGreaterThanOrderByIdAsc(int id, Limit limit);
+
+    /**
+     * Все продукты по порядку идентификаторов. Строки приходят по мере чтения с учетом backpressure,
+     * порциями по spring.r2dbc.properties.fetchSize, если запрос выполняется в транзакции.
+     */
+    Flux<Product> findAllByOrderById();
+}
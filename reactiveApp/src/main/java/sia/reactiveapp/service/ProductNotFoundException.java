@@ -0,0 +1,11 @@
+package sia.reactiveapp.service;
+
+/**
+ * Продукт с указанным идентификатором не найден.
+ */
+public class ProductNotFoundException extends RuntimeException {
+
+    public ProductNotFoundException(String message) {
+        super(message);
+    }
+}
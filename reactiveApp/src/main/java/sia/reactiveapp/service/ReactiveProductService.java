@@ -0,0 +1,37 @@
+package sia.reactiveapp.service;
+
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import sia.reactiveapp.repository.Product;
+
+import java.util.List;
+
+/**
+ * Неблокирующий вариант сервиса продуктов с тем же набором операций, что и ProductService основного приложения.
+ * Ошибка "не найден" передается сигналом {@link ProductNotFoundException}.
+ */
+public interface ReactiveProductService {
+
+    Mono<Product> update(Integer id, Product product);
+
+    Mono<Product> findById(Integer id);
+
+    Mono<List<Product>> findAllById(List<Integer> ids);
+
+    Mono<Void> deleteById(Integer id);
+
+    Mono<Product> create(Product product);
+
+    Flux<Product> findAll(Pageable pageable);
+
+    Flux<Product> findAfter(int afterId, int size);
+
+    Flux<Product> findAllOrdered();
+
+    Mono<List<Product>> createAll(List<Product> products);
+
+    Mono<List<Product>> updateAll(List<Product> products);
+
+    Mono<Void> deleteAllById(List<Integer> ids);
+}
@@ -0,0 +1,71 @@
+package sia.reactiveapp.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import sia.reactiveapp.repository.Product;
+import sia.reactiveapp.service.ReactiveProductImportService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковый импорт продуктов. Записи приходят из тела запроса по мере разбора,
+ * сохраняются блоками фиксированного размера по одному блоку за раз, поэтому
+ * чтение тела приостанавливается (backpressure), пока блок пишется в бд.
+ */
+@Service
+public class ReactiveProductImportServiceImpl implements ReactiveProductImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveProductImportServiceImpl.class);
+
+    private final ReactiveProductServiceImpl productService;
+
+    @Value("${products.import.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Конструктор для инициализации сервиса импорта.
+     *
+     * @param productService Сервис продуктов, через который сохраняется каждый блок.
+     */
+    public ReactiveProductImportServiceImpl(ReactiveProductServiceImpl productService) {
+        this.productService = productService;
+    }
+
+    /**
+     * Импортирует продукты из потока записей.
+     * Каждый блок сохраняется в своей транзакции, поэтому при ошибке разбора
+     * уже сохраненные блоки остаются в бд.
+     *
+     * @param products Поток продуктов из тела запроса.
+     * @return Итог импорта с прогрессом по блокам.
+     */
+    @Override
+    public Mono<ImportResult> importProducts(Flux<Product> products) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            List<ChunkProgress> progress = new ArrayList<>();
+            long[] imported = new long[1];
+
+            return products.buffer(chunkSize)
+                    .concatMap(chunk -> {
+                        long chunkStarted = System.nanoTime();
+                        return productService.createAll(chunk).map(saved -> {
+                            imported[0] += saved.size();
+                            ChunkProgress chunkProgress = new ChunkProgress(progress.size() + 1, saved.size(),
+                                    imported[0], (System.nanoTime() - chunkStarted) / 1_000_000);
+                            progress.add(chunkProgress);
+                            log.info("Import chunk {} saved: {} products, {} total",
+                                    chunkProgress.chunk(), saved.size(), imported[0]);
+                            return chunkProgress;
+                        });
+                    })
+                    .then(Mono.fromSupplier(() ->
+                            new ImportResult(imported[0], (System.nanoTime() - started) / 1_000_000, progress)));
+        });
+    }
+}
@@ -0,0 +1,338 @@
+package sia.reactiveapp.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import sia.productevent.event.ProductEvent;
+import sia.productevent.event.ProductEventType;
+import sia.reactiveapp.redis.ProductCache;
+import sia.reactiveapp.repository.OutboxEvent;
+import sia.reactiveapp.repository.PooledSequence;
+import sia.reactiveapp.repository.Product;
+import sia.reactiveapp.repository.ProductRepository;
+import sia.reactiveapp.service.ProductNotFoundException;
+import sia.reactiveapp.service.ReactiveProductService;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Неблокирующая реализация сервиса продуктов на R2DBC.
+ * Поведение совпадает с ProductServiceImpl основного приложения:
+ * <ul>
+ *     <li>изменение продукта и событие для Kafka записываются в outbox одной транзакцией,
+ *     события отправляет {@link sia.reactiveapp.kafka.ReactiveOutboxRelay} (или ретранслятор основного приложения);</li>
+ *     <li>после фиксации транзакции сохраненная версия кладется в кэш, удаленные продукты из него убираются,
+ *     а кэш, остатки и поисковый индекс основного приложения сбрасываются (см. {@link ProductCache});</li>
+ *     <li>промах кэша загружается из бд и кладется в кэш через SET NX, поэтому не перетирает значение,
+ *     записанное параллельным изменением.</li>
+ * </ul>
+ * Блокировок по идентификатору нет: гонка двух параллельных изменений одного продукта
+ * может оставить в кэше предпоследнюю версию, ее время жизни ограничено TTL кэша.
+ */
+@Service
+public class ReactiveProductServiceImpl implements ReactiveProductService {
+
+    public static final String PRODUCT_EVENTS_TOPIC = "product-events";
+
+    private final ProductRepository productRepository;
+
+    private final R2dbcEntityTemplate entityTemplate;
+
+    private final ProductCache productCache;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final TransactionalOperator readOnlyTransactionalOperator;
+
+    private final PooledSequence productSequence;
+
+    private final PooledSequence outboxSequence;
+
+    /**
+     * Конструктор для инициализации сервиса.
+     *
+     * @param productRepository Репозиторий для чтения продуктов.
+     * @param entityTemplate Шаблон R2DBC для вставки и обновления с заданным идентификатором.
+     * @param databaseClient Клиент бд для последовательностей.
+     * @param productCache Кэш продуктов в Redis.
+     * @param objectMapper ObjectMapper для сохранения событий в outbox.
+     * @param transactionManager Менеджер реактивных транзакций.
+     * @param allocationSize Шаг последовательностей product_seq и outbox_event_seq.
+     */
+    public ReactiveProductServiceImpl(ProductRepository productRepository, R2dbcEntityTemplate entityTemplate,
+                                      DatabaseClient databaseClient, ProductCache productCache,
+                                      ObjectMapper objectMapper, ReactiveTransactionManager transactionManager,
+                                      @Value("${products.sequence.allocation-size:100}") int allocationSize) {
+        this.productRepository = productRepository;
+        this.entityTemplate = entityTemplate;
+        this.productCache = productCache;
+        this.objectMapper = objectMapper;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        DefaultTransactionDefinition readOnly = new DefaultTransactionDefinition();
+        readOnly.setReadOnly(true);
+        this.readOnlyTransactionalOperator = TransactionalOperator.create(transactionManager, readOnly);
+        this.productSequence = new PooledSequence(databaseClient, "product_seq", allocationSize);
+        this.outboxSequence = new PooledSequence(databaseClient, "outbox_event_seq", allocationSize);
+    }
+
+    /**
+     * Обновляет существующий продукт и кладет сохраненную версию в кэш.
+     *
+     * @param id Идентификатор продукта, который нужно обновить.
+     * @param product Объект продукта с новыми данными.
+     * @return Сохраненный продукт, или ошибка {@link ProductNotFoundException}.
+     */
+    @Override
+    public Mono<Product> update(Integer id, Product product) {
+        return productRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ProductNotFoundException("Product not found")))
+                .flatMap(productFromMainDB -> {
+                    product.setId(id);
+                    product.setCreatedAt(productFromMainDB.getCreatedAt());
+                    product.setUpdatedAt(LocalDateTime.now());
+                    product.setVersion(productFromMainDB.getVersion());
+                    return entityTemplate.update(product);
+                })
+                .flatMap(saved -> writeOutbox(ProductEventType.UPDATED, List.of(saved)).thenReturn(saved))
+                .as(transactionalOperator::transactional)
+                .flatMap(saved -> productCache.putAll(List.of(saved)).thenReturn(saved));
+    }
+
+    /**
+     * Находит продукт по его идентификатору, при промахе кэша читает из бд и кладет в кэш.
+     *
+     * @param id Идентификатор продукта.
+     * @return Найденный продукт, или ошибка {@link ProductNotFoundException}.
+     */
+    @Override
+    public Mono<Product> findById(Integer id) {
+        return productCache.get(id)
+                .switchIfEmpty(Mono.defer(() -> productRepository.findById(id)
+                        .switchIfEmpty(Mono.error(() -> new ProductNotFoundException("Product not found")))
+                        .flatMap(product -> productCache.putIfAbsent(product).thenReturn(product))));
+    }
+
+    /**
+     * Находит продукты по списку идентификаторов: одно чтение из кэша (MGET),
+     * один запрос в бд за промахами и запись промахов в кэш через SET NX.
+     *
+     * @param ids Идентификаторы продуктов.
+     * @return Найденные продукты в порядке запроса, без повторов; ненайденные пропускаются.
+     */
+    @Override
+    public Mono<List<Product>> findAllById(List<Integer> ids) {
+        List<Integer> distinctIds = List.copyOf(new LinkedHashSet<>(ids));
+        return productCache.getAll(distinctIds).flatMap(cached -> {
+            List<Integer> misses = distinctIds.stream().filter(id -> !cached.containsKey(id)).toList();
+            Mono<Map<Integer, Product>> loaded = misses.isEmpty()
+                    ? Mono.just(Map.of())
+                    : productRepository.findAllById(misses).collectMap(Product::getId)
+                            .flatMap(products -> productCache.putAllIfAbsent(products.values()).thenReturn(products));
+            return loaded.map(products -> distinctIds.stream()
+                    .map(id -> cached.containsKey(id) ? cached.get(id) : products.get(id))
+                    .filter(Objects::nonNull)
+                    .toList());
+        });
+    }
+
+    /**
+     * Удаляет продукт по его идентификатору.
+     *
+     * @param id Идентификатор продукта, который нужно удалить.
+     * @return Сигнал завершения, или ошибка {@link ProductNotFoundException}.
+     */
+    @Override
+    public Mono<Void> deleteById(Integer id) {
+        return productRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ProductNotFoundException("Product not found")))
+                .flatMap(product -> productRepository.deleteById(id)
+                        .then(writeOutbox(ProductEventType.DELETED, List.of(product))))
+                .as(transactionalOperator::transactional)
+                .then(Mono.defer(() -> productCache.evictAll(List.of(id))));
+    }
+
+    /**
+     * Создает новый продукт и кладет его в кэш.
+     *
+     * @param product Объект продукта, который нужно создать.
+     * @return Сохраненный продукт.
+     */
+    @Override
+    public Mono<Product> create(Product product) {
+        return insertAll(List.of(product))
+                .as(transactionalOperator::transactional)
+                .flatMap(saved -> productCache.putAll(saved).thenReturn(saved.get(0)));
+    }
+
+    /**
+     * Находит продукты с поддержкой пагинации.
+     *
+     * @param pageable Параметры пагинации.
+     * @return Продукты страницы.
+     */
+    @Override
+    public Flux<Product> findAll(Pageable pageable) {
+        return productRepository.findAllBy(pageable);
+    }
+
+    /**
+     * Находит страницу продуктов по курсору: продукты с идентификатором больше указанного.
+     *
+     * @param afterId Идентификатор последнего продукта предыдущей страницы.
+     * @param size Размер страницы.
+     * @return Продукты, упорядоченные по идентификатору.
+     */
+    @Override
+    public Flux<Product> findAfter(int afterId, int size) {
+        return productRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size));
+    }
+
+    /**
+     * Передает все продукты по порядку идентификаторов в читающей транзакции,
+     * чтобы драйвер читал строки порциями курсора, а не всю таблицу сразу.
+     *
+     * @return Все продукты.
+     */
+    @Override
+    public Flux<Product> findAllOrdered() {
+        return productRepository.findAllByOrderById()
+                .as(readOnlyTransactionalOperator::transactional);
+    }
+
+    /**
+     * Создает продукты одной транзакцией. Новые продукты не кладутся в кэш, но основное приложение
+     * узнает о них: его закэшированное отсутствие этих продуктов сбрасывается, а поисковый индекс обновляется.
+     *
+     * @param products Продукты, которые нужно создать.
+     * @return Сохраненные продукты.
+     */
+    @Override
+    public Mono<List<Product>> createAll(List<Product> products) {
+        return insertAll(products)
+                .as(transactionalOperator::transactional)
+                .flatMap(saved -> productCache.evictShared(saved.stream().map(Product::getId).toList())
+                        .thenReturn(saved));
+    }
+
+    /**
+     * Обновляет продукты одной транзакцией и кладет сохраненные версии в кэш.
+     *
+     * @param products Продукты с новыми данными, у каждого должен быть указан идентификатор.
+     * @return Сохраненные продукты, или ошибка {@link ProductNotFoundException}, если хотя бы один не найден.
+     */
+    @Override
+    public Mono<List<Product>> updateAll(List<Product> products) {
+        List<Integer> ids = products.stream().map(Product::getId).toList();
+        return findAllByIdOrError(ids)
+                .flatMap(productsFromMainDB -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    for (Product product : products) {
+                        Product productFromMainDB = productsFromMainDB.get(product.getId());
+                        product.setCreatedAt(productFromMainDB.getCreatedAt());
+                        product.setUpdatedAt(now);
+                        product.setVersion(productFromMainDB.getVersion());
+                    }
+                    return Flux.fromIterable(products).concatMap(entityTemplate::update).collectList();
+                })
+                .flatMap(saved -> writeOutbox(ProductEventType.UPDATED, saved).thenReturn(saved))
+                .as(transactionalOperator::transactional)
+                .flatMap(saved -> productCache.putAll(saved).thenReturn(saved));
+    }
+
+    /**
+     * Удаляет продукты одной транзакцией одним запросом delete ... where id in (...).
+     *
+     * @param ids Идентификаторы продуктов, которые нужно удалить.
+     * @return Сигнал завершения, или ошибка {@link ProductNotFoundException}, если хотя бы один не найден.
+     */
+    @Override
+    public Mono<Void> deleteAllById(List<Integer> ids) {
+        return findAllByIdOrError(ids)
+                .flatMap(productsFromMainDB -> entityTemplate
+                        .delete(Query.query(Criteria.where("id").in(productsFromMainDB.keySet())), Product.class)
+                        .then(writeOutbox(ProductEventType.DELETED, productsFromMainDB.values())))
+                .as(transactionalOperator::transactional)
+                .then(Mono.defer(() -> productCache.evictAll(ids)));
+    }
+
+    /**
+     * Присваивает продуктам идентификаторы из последовательности, вставляет их и пишет события в outbox.
+     * Должен выполняться в транзакции.
+     */
+    private Mono<List<Product>> insertAll(List<Product> products) {
+        LocalDateTime now = LocalDateTime.now();
+        return productSequence.next(products.size())
+                .zipWithIterable(products, (id, product) -> {
+                    product.setId(id.intValue());
+                    product.setCreatedAt(now);
+                    product.setUpdatedAt(now);
+                    product.setVersion(null);
+                    return product;
+                })
+                .concatMap(entityTemplate::insert)
+                .collectList()
+                .flatMap(saved -> writeOutbox(ProductEventType.CREATED, saved).thenReturn(saved));
+    }
+
+    /**
+     * Записывает события о продуктах в outbox в текущей транзакции.
+     * Формат payload совпадает с основным приложением, поэтому события может отправить любой из ретрансляторов.
+     */
+    private Mono<Void> writeOutbox(ProductEventType type, Collection<Product> products) {
+        LocalDateTime now = LocalDateTime.now();
+        return outboxSequence.next(products.size())
+                .zipWithIterable(products, (id, product) -> {
+                    ProductEvent event = new ProductEvent(type, product.getId(),
+                            product.getName(), product.getDescription(),
+                            product.getPrice(), product.getQuantity(),
+                            product.getCreatedAt(), product.getUpdatedAt());
+                    event.setVersion(product.getVersion());
+                    return new OutboxEvent(id, PRODUCT_EVENTS_TOPIC, product.getId(), writeEvent(event), now);
+                })
+                .concatMap(entityTemplate::insert)
+                .then();
+    }
+
+    private String writeEvent(ProductEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize " + event, e);
+        }
+    }
+
+    /**
+     * Читает продукты одним запросом и проверяет, что найдены все идентификаторы.
+     */
+    private Mono<Map<Integer, Product>> findAllByIdOrError(List<Integer> ids) {
+        return productRepository.findAllById(ids)
+                .collectMap(Product::getId, Function.identity())
+                .flatMap(products -> {
+                    if (products.size() != new LinkedHashSet<>(ids).size()) {
+                        List<Integer> missing = ids.stream().filter(id -> !products.containsKey(id)).toList();
+                        return Mono.error(new ProductNotFoundException("Products not found: " + missing));
+                    }
+                    return Mono.just(products);
+                });
+    }
+}
@@ -0,0 +1,171 @@
+package sia.reactiveapp.controller;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.codec.CodecsAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.HttpHandlerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.ReactiveWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import reactor.core.publisher.Mono;
+import sia.reactiveapp.repository.Product;
+import sia.reactiveapp.service.impl.ReactiveProductImportServiceImpl;
+import sia.reactiveapp.service.impl.ReactiveProductServiceImpl;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Нагрузочный стенд реактивного стека, парный к VirtualThreadsLoadBenchmark основного приложения:
+ * тот же сценарий (CLIENTS одновременных клиентов в цикле запрашивают GET /api/products/{id}),
+ * та же задержка "похода в Redis и Postgres", но ожидание не занимает поток (Mono.delay).
+ * Печатает запросы в секунду, перцентили задержки и число потоков сервера в конце прогона.
+ * <p>
+ * Запуск: mvn test -Pbenchmark -Dtest=ReactiveLoadBenchmark
+ */
+@Tag("benchmark")
+class ReactiveLoadBenchmark {
+
+    private static final int CLIENTS = 1_000;
+
+    private static final Duration NON_BLOCKING_IO = Duration.ofMillis(20);
+
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+
+    private static final Duration MEASUREMENT = Duration.ofSeconds(15);
+
+    @Test
+    void measureReactiveStack() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WebLayer.class)
+                .web(WebApplicationType.REACTIVE)
+                .properties("server.port=0")
+                .run()) {
+            int port = ((ReactiveWebServerApplicationContext) context).getWebServer().getPort();
+            run(port, WARMUP);
+            Result result = run(port, MEASUREMENT);
+            long serverThreads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("reactor-http")).count();
+            System.out.printf("%-18s %12s %10s %10s %10s %8s %8s%n",
+                    "mode", "requests/sec", "p50 ms", "p99 ms", "p99.9 ms", "errors", "threads");
+            System.out.printf("%-18s %12.0f %10.2f %10.2f %10.2f %8d %8d%n", "webflux", result.requestsPerSecond,
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(0.999), result.errors,
+                    serverThreads);
+        }
+    }
+
+    private static Result run(int port, Duration duration) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        long started = System.nanoTime();
+
+        List<Future<long[]>> clients = new ArrayList<>(CLIENTS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        int id = ThreadLocalRandom.current().nextInt(1, 100_000);
+                        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/products/" + id))
+                                .timeout(Duration.ofSeconds(30))
+                                .build();
+                        long sentAt = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - sentAt;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long[] all = new long[0];
+        for (Future<long[]> future : clients) {
+            long[] latencies = future.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+        }
+        Arrays.sort(all);
+        return new Result(all.length / seconds, all, errors.get());
+    }
+
+    private record Result(double requestsPerSecond, long[] sortedLatencies, long errors) {
+
+        double percentile(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+
+    /**
+     * Только веб-слой: без бд, Redis и Kafka.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({ReactiveWebServerFactoryAutoConfiguration.class, HttpHandlerAutoConfiguration.class,
+            WebFluxAutoConfiguration.class, CodecsAutoConfiguration.class, JacksonAutoConfiguration.class})
+    @Import(ReactiveProductController.class)
+    static class WebLayer {
+
+        @Bean
+        ReactiveProductServiceImpl productService() {
+            // stubOnly: заглушка не запоминает вызовы, иначе за прогон накопятся миллионы записей
+            ReactiveProductServiceImpl productService = mock(ReactiveProductServiceImpl.class, withSettings().stubOnly());
+            when(productService.findById(anyInt())).thenAnswer(invocation -> Mono.delay(NON_BLOCKING_IO).map(tick -> {
+                LocalDateTime now = LocalDateTime.now();
+                return new Product(invocation.getArgument(0), "product", "description", BigDecimal.TEN, 1, now, now);
+            }));
+            return productService;
+        }
+
+        @Bean
+        ReactiveProductImportServiceImpl productImportService() {
+            return mock(ReactiveProductImportServiceImpl.class, withSettings().stubOnly());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package sia.reactiveapp.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import sia.reactiveapp.repository.Product;
+import sia.reactiveapp.service.ReactiveProductImportService.ImportResult;
+import sia.reactiveapp.service.impl.ReactiveProductImportServiceImpl;
+import sia.reactiveapp.service.impl.ReactiveProductServiceImpl;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(value = ReactiveProductController.class, properties = "products.batch.max-size=2")
+class ReactiveProductControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockitoBean
+    private ReactiveProductServiceImpl productService;
+
+    @MockitoBean
+    private ReactiveProductImportServiceImpl productImportService;
+
+    @Test
+    void servesSameRoutesAndBodiesAsMainController() {
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+        Product product = new Product(7, "name", "description", BigDecimal.TEN, 3, now, now);
+        when(productService.findById(7)).thenReturn(Mono.just(product));
+        when(productService.create(any())).thenReturn(Mono.just(product));
+        when(productService.findAllOrdered()).thenReturn(Flux.just(product, product));
+
+        webTestClient.get().uri("/api/products/7").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(7)
+                .jsonPath("$.name").isEqualTo("name");
+
+        webTestClient.post().uri("/api/products").bodyValue(product).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("Product created with id 7");
+
+        webTestClient.get().uri("/api/products/export").exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Product.class).hasSize(2);
+    }
+
+    @Test
+    void rejectsPageOfInvalidSize() {
+        webTestClient.get().uri("/api/products?size=1001").exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/api/products?after=0&size=0").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void rejectsOversizedBatchAndMalformedImport() {
+        webTestClient.post().uri("/api/products/batch").bodyValue(List.of(new Product(), new Product(), new Product()))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        when(productImportService.importProducts(any())).thenAnswer(invocation -> invocation.<Flux<Product>>getArgument(0)
+                .then(Mono.just(new ImportResult(0, 0, Collections.emptyList()))));
+        webTestClient.post().uri("/api/products/import").contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"ok\"}\n{not json}\n")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
@@ -0,0 +1,75 @@
+package sia.reactiveapp.redis;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import sia.reactiveapp.repository.Product;
+
+import java.util.List;
+
+import static org.mockito.AdditionalMatchers.and;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет инвалидацию между реактивным и основным приложением.
+ */
+class ProductCacheTest {
+
+    @SuppressWarnings("unchecked")
+    private final ReactiveRedisTemplate<String, Product> redisTemplate = mock(ReactiveRedisTemplate.class);
+
+    private final ReactiveStringRedisTemplate stringRedisTemplate = mock(ReactiveStringRedisTemplate.class);
+
+    private final ProductCache productCache = new ProductCache(redisTemplate, stringRedisTemplate,
+            mock(ReactiveRedisMessageListenerContainer.class));
+
+    ProductCacheTest() {
+        ReflectionTestUtils.setField(productCache, "keyPrefix", "reactive::productCache::");
+        ReflectionTestUtils.setField(productCache, "sharedKeyPrefix", "productCache::");
+        ReflectionTestUtils.setField(productCache, "invalidationChannel", "cache-invalidation");
+        ReflectionTestUtils.setField(productCache, "changeChannel", "product-changes");
+    }
+
+    @Test
+    void evictsOwnKeyWhenMainAppChangesProduct() {
+        when(redisTemplate.delete(any(String[].class))).thenReturn(Mono.just(1L));
+
+        productCache.onInvalidation("main-instance|productCache|7").block();
+        productCache.onInvalidation("reactive-other|productCache|8").block();
+        productCache.onInvalidation("main-instance|otherCache|9").block();
+
+        verify(redisTemplate).delete("reactive::productCache::7");
+        verify(redisTemplate, never()).delete("reactive::productCache::8");
+        verify(redisTemplate, never()).delete("reactive::productCache::9");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictSharedResetsMainAppCacheAndInventoryAndReportsChangedProducts() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.just(1L));
+        when(stringRedisTemplate.convertAndSend(anyString(), anyString())).thenReturn(Mono.just(1L));
+
+        productCache.evictShared(List.of(1, 2)).block();
+
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(List.of("inventory::generations",
+                "productCache::1", "productCache::2", "inventory::1", "inventory::2")), eq(List.of("1", "2")));
+        verify(stringRedisTemplate).convertAndSend(eq("cache-invalidation"), and(startsWith("reactive-"),
+                endsWith("|productCache|1")));
+        verify(stringRedisTemplate).convertAndSend(eq("cache-invalidation"), endsWith("|productCache|2"));
+        verify(stringRedisTemplate).convertAndSend(eq("product-changes"), and(startsWith("reactive-"), endsWith("|1,2")));
+    }
+}
@@ -0,0 +1,485 @@
+package sia.reactiveapp.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import sia.pairschallenge.redis.CacheLoadLease;
+import sia.pairschallenge.redis.HotKeyTracker;
+import sia.pairschallenge.redis.InventoryCounters;
+import sia.pairschallenge.redis.ProductChangeChannel;
+import sia.pairschallenge.search.ProductSearchIndex;
+import sia.pairschallenge.service.impl.ProductServiceImpl;
+import sia.productevent.event.ProductEvent;
+import sia.reactiveapp.redis.ProductCache;
+import sia.reactiveapp.repository.Product;
+import sia.reactiveapp.repository.ProductRepository;
+import sia.reactiveapp.service.ProductNotFoundException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверяет, что реактивный сервис ведет себя так же, как ProductServiceImpl основного приложения.
+ * Оба сервиса работают с одной бд H2 (блокирующий через JPA, реактивный через R2DBC),
+ * выполняют один и тот же сценарий, и его наблюдаемый результат сравнивается:
+ * возвращаемые продукты, ошибки "не найден", итоговое содержимое таблицы product и события в outbox.
+ * Идентификаторы заменяются порядковыми именами, так как последовательность общая.
+ */
+class ReactiveProductServiceEquivalenceTest {
+
+    private static final String DATABASE = "equivalence";
+
+    private static final String OPTIONS = "MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static ConfigurableApplicationContext blockingContext;
+
+    private static ProductServiceImpl blockingService;
+
+    private static ReactiveProductServiceImpl reactiveService;
+
+    private static JdbcTemplate jdbcTemplate;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @BeforeAll
+    static void startStacks() {
+        blockingContext = new SpringApplicationBuilder(BlockingStack.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:" + DATABASE + ";" + OPTIONS,
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.main.banner-mode=off")
+                .run();
+        blockingService = blockingContext.getBean(ProductServiceImpl.class);
+        jdbcTemplate = blockingContext.getBean(JdbcTemplate.class);
+
+        ConnectionFactory connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions
+                .parse("r2dbc:h2:mem:///" + DATABASE + "?options=" + OPTIONS).mutate()
+                .option(ConnectionFactoryOptions.USER, "sa")
+                .option(ConnectionFactoryOptions.PASSWORD, "")
+                .build());
+        R2dbcEntityTemplate entityTemplate = new R2dbcEntityTemplate(connectionFactory);
+        ProductRepository productRepository = new R2dbcRepositoryFactory(entityTemplate)
+                .getRepository(ProductRepository.class);
+        ProductCache productCache = mock(ProductCache.class);
+        when(productCache.get(anyInt())).thenReturn(Mono.empty());
+        when(productCache.putIfAbsent(any())).thenReturn(Mono.empty());
+        when(productCache.getAll(anyList())).thenReturn(Mono.just(Map.of()));
+        when(productCache.putAllIfAbsent(anyCollection())).thenReturn(Mono.empty());
+        when(productCache.putAll(anyCollection())).thenReturn(Mono.empty());
+        when(productCache.evictAll(anyCollection())).thenReturn(Mono.empty());
+        when(productCache.evictShared(anyCollection())).thenReturn(Mono.empty());
+        reactiveService = new ReactiveProductServiceImpl(productRepository, entityTemplate,
+                DatabaseClient.create(connectionFactory), productCache, objectMapper,
+                new R2dbcTransactionManager(connectionFactory), 100);
+    }
+
+    @AfterAll
+    static void stopStacks() {
+        blockingContext.close();
+    }
+
+    @BeforeEach
+    void cleanTables() {
+        jdbcTemplate.update("delete from outbox_event");
+        jdbcTemplate.update("delete from product");
+    }
+
+    @Test
+    void reactiveServiceProducesSameObservableResultsAsBlockingService() {
+        List<String> blocking = runScenario(new BlockingStackAdapter());
+        cleanTables();
+        List<String> reactive = runScenario(new ReactiveStackAdapter());
+
+        assertFalse(blocking.isEmpty());
+        assertEquals(blocking, reactive);
+    }
+
+    /**
+     * Сценарий CRUD и пакетных операций. Каждый шаг добавляет в трассу свой наблюдаемый результат.
+     */
+    private List<String> runScenario(Stack stack) {
+        Trace trace = new Trace();
+
+        View a = stack.create(input(null, "a", "first", "10.50", 1));
+        trace.add("create", a);
+        List<View> batch = stack.createAll(List.of(input(null, "b", null, "2", 2), input(null, "c", "third", "3.3", 3)));
+        batch.forEach(view -> trace.add("createAll", view));
+
+        View updated = stack.update(a.id(), input(null, "a2", "first updated", "11", 5));
+        trace.add("update", updated);
+        // Бд хранит метки с точностью до микросекунд
+        trace.check("update keeps createdAt",
+                Duration.between(a.createdAt(), updated.createdAt()).abs().toMillis() < 1);
+        trace.add("findById", stack.findById(a.id()));
+        stack.findAllById(List.of(batch.get(1).id(), Integer.MAX_VALUE, a.id(), batch.get(1).id()))
+                .forEach(view -> trace.add("findAllById", view));
+        stack.findAfter(0, 10).forEach(view -> trace.add("findAfter", view));
+        stack.findAfter(batch.get(0).id(), 10).forEach(view -> trace.add("findAfter b", view));
+        stack.findPage(0, 2).forEach(view -> trace.add("findAll page 0", view));
+        stack.findPage(1, 2).forEach(view -> trace.add("findAll page 1", view));
+
+        stack.updateAll(List.of(input(batch.get(0).id(), "b2", "second", "20", 20),
+                input(batch.get(1).id(), "c2", null, "30", 30))).forEach(view -> trace.add("updateAll", view));
+        trace.outcome("updateAll with missing id", () -> stack.updateAll(
+                List.of(input(batch.get(0).id(), "b3", null, "1", 1), input(Integer.MAX_VALUE, "x", null, "1", 1))));
+        trace.outcome("update missing", () -> stack.update(Integer.MAX_VALUE, input(null, "x", null, "1", 1)));
+        trace.outcome("findById missing", () -> stack.findById(Integer.MAX_VALUE));
+        trace.outcome("deleteAllById with missing id", () -> {
+            stack.deleteAllById(List.of(batch.get(1).id(), Integer.MAX_VALUE));
+            return null;
+        });
+
+        stack.deleteAllById(List.of(batch.get(0).id(), batch.get(1).id()));
+        stack.deleteById(a.id());
+        trace.outcome("findById deleted", () -> stack.findById(a.id()));
+        trace.outcome("deleteById deleted", () -> {
+            stack.deleteById(a.id());
+            return null;
+        });
+
+        trace.add("remaining products", jdbcTemplate.queryForObject("select count(*) from product", Long.class));
+        for (String payload : jdbcTemplate.queryForList("select payload from outbox_event order by id", String.class)) {
+            ProductEvent event = readEvent(payload);
+            trace.add("outbox " + event.getType(), trace.alias(event.getId()) + " " + event.getName()
+                    + " " + event.getQuantity() + " " + (event.getUpdatedAt() != null));
+        }
+        return trace.entries;
+    }
+
+    private static View input(Integer id, String name, String description, String price, int quantity) {
+        return new View(id, name, description, new BigDecimal(price), quantity, null, null);
+    }
+
+    private static ProductEvent readEvent(String payload) {
+        try {
+            return objectMapper.readValue(payload, ProductEvent.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Продукт в виде, не зависящем от стека.
+     */
+    private record View(Integer id, String name, String description, BigDecimal price, Integer quantity,
+                        LocalDateTime createdAt, LocalDateTime updatedAt) {
+    }
+
+    /**
+     * Операции сервиса продуктов, общие для обоих стеков. Ошибка "не найден" - {@link NotFound}.
+     */
+    private interface Stack {
+
+        View create(View product);
+
+        List<View> createAll(List<View> products);
+
+        View update(int id, View product);
+
+        List<View> updateAll(List<View> products);
+
+        View findById(int id);
+
+        List<View> findAllById(List<Integer> ids);
+
+        List<View> findAfter(int afterId, int size);
+
+        List<View> findPage(int page, int size);
+
+        void deleteById(int id);
+
+        void deleteAllById(List<Integer> ids);
+    }
+
+    private static class NotFound extends RuntimeException {
+    }
+
+    private static class BlockingStackAdapter implements Stack {
+
+        @Override
+        public View create(View product) {
+            return view(blockingService.create(entity(product)));
+        }
+
+        @Override
+        public List<View> createAll(List<View> products) {
+            return blockingService.createAll(products.stream().map(this::entity).toList()).stream().map(this::view).toList();
+        }
+
+        @Override
+        public View update(int id, View product) {
+            return call(() -> view(blockingService.update(id, entity(product))));
+        }
+
+        @Override
+        public List<View> updateAll(List<View> products) {
+            return call(() -> blockingService.updateAll(products.stream().map(this::entity).toList())
+                    .stream().map(this::view).toList());
+        }
+
+        @Override
+        public View findById(int id) {
+            return call(() -> view(blockingService.findById(id)));
+        }
+
+        @Override
+        public List<View> findAllById(List<Integer> ids) {
+            return blockingService.findAllById(ids).stream().map(this::view).toList();
+        }
+
+        @Override
+        public List<View> findAfter(int afterId, int size) {
+            return blockingService.findAfter(afterId, size).stream().map(this::view).toList();
+        }
+
+        @Override
+        public List<View> findPage(int page, int size) {
+            return blockingService.findAll(PageRequest.of(page, size)).stream().map(this::view).toList();
+        }
+
+        @Override
+        public void deleteById(int id) {
+            call(() -> {
+                blockingService.deleteById(id);
+                return null;
+            });
+        }
+
+        @Override
+        public void deleteAllById(List<Integer> ids) {
+            call(() -> {
+                blockingService.deleteAllById(ids);
+                return null;
+            });
+        }
+
+        private <T> T call(Supplier<T> action) {
+            try {
+                return action.get();
+            } catch (EntityNotFoundException e) {
+                throw new NotFound();
+            }
+        }
+
+        private sia.pairschallenge.repository.Product entity(View view) {
+            sia.pairschallenge.repository.Product product = new sia.pairschallenge.repository.Product();
+            if (view.id() != null) {
+                product.setId(view.id());
+            }
+            product.setName(view.name());
+            product.setDescription(view.description());
+            product.setPrice(view.price());
+            product.setQuantity(view.quantity());
+            return product;
+        }
+
+        private View view(sia.pairschallenge.repository.Product product) {
+            return new View(product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                    product.getQuantity(), product.getCreatedAt(), product.getUpdatedAt());
+        }
+    }
+
+    private static class ReactiveStackAdapter implements Stack {
+
+        @Override
+        public View create(View product) {
+            return view(block(reactiveService.create(entity(product))));
+        }
+
+        @Override
+        public List<View> createAll(List<View> products) {
+            return block(reactiveService.createAll(products.stream().map(this::entity).toList()))
+                    .stream().map(this::view).toList();
+        }
+
+        @Override
+        public View update(int id, View product) {
+            return view(block(reactiveService.update(id, entity(product))));
+        }
+
+        @Override
+        public List<View> updateAll(List<View> products) {
+            return block(reactiveService.updateAll(products.stream().map(this::entity).toList()))
+                    .stream().map(this::view).toList();
+        }
+
+        @Override
+        public View findById(int id) {
+            return view(block(reactiveService.findById(id)));
+        }
+
+        @Override
+        public List<View> findAllById(List<Integer> ids) {
+            return block(reactiveService.findAllById(ids)).stream().map(this::view).toList();
+        }
+
+        @Override
+        public List<View> findAfter(int afterId, int size) {
+            return block(reactiveService.findAfter(afterId, size).collectList()).stream().map(this::view).toList();
+        }
+
+        @Override
+        public List<View> findPage(int page, int size) {
+            return block(reactiveService.findAll(PageRequest.of(page, size)).collectList())
+                    .stream().map(this::view).toList();
+        }
+
+        @Override
+        public void deleteById(int id) {
+            block(reactiveService.deleteById(id));
+        }
+
+        @Override
+        public void deleteAllById(List<Integer> ids) {
+            block(reactiveService.deleteAllById(ids));
+        }
+
+        private <T> T block(Mono<T> mono) {
+            return mono.onErrorMap(ProductNotFoundException.class, e -> new NotFound()).block();
+        }
+
+        private Product entity(View view) {
+            return new Product(view.id(), view.name(), view.description(), view.price(), view.quantity(), null, null);
+        }
+
+        private View view(Product product) {
+            return new View(product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                    product.getQuantity(), product.getCreatedAt(), product.getUpdatedAt());
+        }
+    }
+
+    /**
+     * Трасса сценария. Идентификаторы заменяются порядковыми именами (#1, #2, ...) в порядке первого появления,
+     * цены приводятся к виду без незначащих нулей.
+     */
+    private static class Trace {
+
+        private final List<String> entries = new ArrayList<>();
+
+        private final Map<Integer, String> aliases = new HashMap<>();
+
+        void add(String step, View view) {
+            entries.add(step + ": " + alias(view.id()) + " " + view.name() + " " + view.description() + " "
+                    + view.price().stripTrailingZeros().toPlainString() + " " + view.quantity()
+                    + " timestamps=" + (view.createdAt() != null && view.updatedAt() != null
+                    && !view.updatedAt().isBefore(view.createdAt())));
+        }
+
+        void add(String step, Object value) {
+            entries.add(step + ": " + value);
+        }
+
+        void check(String step, boolean condition) {
+            assertTrue(condition, step);
+            entries.add(step);
+        }
+
+        void outcome(String step, Supplier<?> action) {
+            try {
+                Object result = action.get();
+                entries.add(step + ": ok " + (result instanceof View view ? alias(view.id()) : ""));
+            } catch (NotFound e) {
+                entries.add(step + ": not found");
+            }
+        }
+
+        String alias(Integer id) {
+            return aliases.computeIfAbsent(id, key -> "#" + (aliases.size() + 1));
+        }
+    }
+
+    /**
+     * Блокирующий стек основного приложения без веб-слоя, Redis и Kafka: JPA поверх H2 и ProductServiceImpl.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class, JacksonAutoConfiguration.class})
+    @EntityScan(basePackageClasses = sia.pairschallenge.repository.Product.class)
+    @EnableJpaRepositories(basePackageClasses = sia.pairschallenge.repository.ProductRepository.class)
+    @Import(ProductServiceImpl.class)
+    static class BlockingStack {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager(ProductServiceImpl.PRODUCT_CACHE);
+        }
+
+        @Bean
+        ProductSearchIndex productSearchIndex() throws IOException {
+            return new ProductSearchIndex(new ByteBuffersDirectory());
+        }
+
+        @Bean
+        CacheLoadLease cacheLoadLease() {
+            CacheLoadLease lease = mock(CacheLoadLease.class);
+            when(lease.tryAcquire(any(), any())).thenReturn("lease");
+            return lease;
+        }
+
+        @Bean
+        InventoryCounters inventoryCounters() {
+            return mock(InventoryCounters.class);
+        }
+
+        @Bean
+        HotKeyTracker hotKeyTracker() {
+            return mock(HotKeyTracker.class);
+        }
+
+        @Bean
+        ProductChangeChannel productChangeChannel() {
+            return mock(ProductChangeChannel.class);
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(javax.sql.DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+    }
+}